@@ -0,0 +1,68 @@
+package com.example.demo.utils;
+
+import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*  String field validation of a fully filled Vehicle (~70 String fields),
+ *  uncached scan (how validate() used to do it) vs FieldReflectionUtils with cached fields */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldReflectionUtilsBenchmark {
+
+    private Vehicle vehicle;
+
+
+    @Setup
+    public void setUp() {
+        vehicle = new Vehicle();
+
+        for (Field field : Vehicle.class.getDeclaredFields()) {
+            if (field.getType().equals(String.class) && !Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                ReflectionUtils.setField(field, vehicle, "value");
+            }
+        }
+    }
+
+
+    @Benchmark
+    public ValidationResponse uncachedValidateStringFields() {
+        List<Field> stringFields = new ArrayList<>();
+
+        for (Field field : vehicle.getClass().getDeclaredFields()) {
+            if (field.getType().equals(String.class)) {
+                stringFields.add(field);
+            }
+        }
+
+        for (Field field : stringFields) {
+            field.setAccessible(true);
+            Object fieldParameter = ReflectionUtils.getField(field, vehicle);
+
+            if (fieldParameter instanceof String && ((String) fieldParameter).length() <= 0) {
+                return new ValidationResponse(false, "'" + field.getName() + "' cannot be empty");
+            }
+        }
+
+        return new ValidationResponse(true, "validation successful");
+    }
+
+    @Benchmark
+    public ValidationResponse cachedValidateStringFields() {
+        return FieldReflectionUtils.validateStringFields(vehicle);
+    }
+
+    @Benchmark
+    public String cachedFindEmptyStringField() {
+        return FieldReflectionUtils.findEmptyStringField(vehicle);
+    }
+}
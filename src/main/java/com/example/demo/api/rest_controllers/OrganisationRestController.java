@@ -5,22 +5,30 @@ import com.example.demo.database.models.Organisation;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.UsageBucket;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
+import com.example.demo.database.services.vehicle.UsageRollupService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
+import com.example.demo.utils.UsageReportUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +46,15 @@ public class OrganisationRestController {
 	@Autowired
 	private final OrganisationService organisationService;
 
+	@Autowired
+	private final UsageRollupService usageRollupService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -51,10 +68,14 @@ public class OrganisationRestController {
 
 		List<RestResponse<Organisation>> responseList = new ArrayList<>();
 
+		List<Organisation> validOrganisations = new ArrayList<>();
+		List<RestResponse<Organisation>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (Organisation organisation : organisations) {
 			RestResponse<Organisation> restResponse = new RestResponse<>();
 			restResponse.setBody(organisation);
-			
+
 			ValidationResponse response = organisationService.validate(organisation, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -63,23 +84,54 @@ public class OrganisationRestController {
 
 				errorOccurred = true;
 			} else {
-				Organisation organisationFromDatabase = organisationService.save(organisation);
+				validOrganisations.add(organisation);
+				validResponses.add(restResponse);
+			}
 
-				if (organisationFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<Organisation> organisationsFromDatabase;
+
+		try {
+			organisationsFromDatabase = organisationService.saveAll(validOrganisations);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			organisationsFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<Organisation> restResponse = validResponses.get(i);
+			Organisation organisationFromDatabase;
+
+			if (organisationsFromDatabase != null) {
+				organisationFromDatabase = organisationsFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validOrganisations.get(i).setId(null);
+					organisationFromDatabase = organisationService.save(validOrganisations.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(organisationFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addOrganisationLog("create " + ENTITY, ENTITY + " created:\n" + organisationFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (organisationFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(organisationFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addOrganisationLog("create " + ENTITY, ENTITY + " created:\n" + organisationFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -130,8 +182,14 @@ public class OrganisationRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Organisation> getAll() {
-		return organisationService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, organisationService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, organisationService.getPage(after, pageable), pageable, Organisation::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -145,6 +203,20 @@ public class OrganisationRestController {
 		return organisationFromDatabase;
 	}
 
+	@GetMapping(value = "/{id}/usage", produces = MediaType.APPLICATION_JSON_VALUE)
+	public List<UsageBucket> getUsageByID(@PathVariable Long id, @RequestParam(required = false) String bucket,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		if (organisationService.getById(id) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		UsageBucket.Size size = UsageReportUtils.getSize(bucket);
+		LocalDate end = UsageReportUtils.getTo(to);
+
+		return usageRollupService.getByOrganisationId(id, size, UsageReportUtils.getFrom(from, end), end);
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -170,7 +242,7 @@ public class OrganisationRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldOrganisationFromDatabase = organisationService.getById(organisation.getId()).toString();
+				AuditSnapshot oldOrganisationFromDatabase = AuditSnapshot.of(organisationService.getById(organisation.getId()));
 				Organisation organisationFromDatabase = organisationService.save(organisation);
 
 				if (organisationFromDatabase == null) {
@@ -183,7 +255,7 @@ public class OrganisationRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addOrganisationLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldOrganisationFromDatabase + "\nto:\n" + organisationFromDatabase);
+					eventHistoryLogService.addOrganisationLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldOrganisationFromDatabase.diff(organisationFromDatabase));
 				}
 			}
 
@@ -211,7 +283,7 @@ public class OrganisationRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldOrganisationFromDatabase = organisationService.getById(organisation.getId()).toString();
+		AuditSnapshot oldOrganisationFromDatabase = AuditSnapshot.of(organisationService.getById(organisation.getId()));
 		Organisation organisationFromDatabase = organisationService.save(organisation);
 
 		if (organisationFromDatabase == null) {
@@ -224,7 +296,7 @@ public class OrganisationRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addOrganisationLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldOrganisationFromDatabase + "\nto:\n" + organisationFromDatabase);
+			eventHistoryLogService.addOrganisationLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldOrganisationFromDatabase.diff(organisationFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -276,7 +348,7 @@ public class OrganisationRestController {
 					changes.remove("id");
 					long idLong = (long) ((Integer) idObj);
 
-					String oldOrganisationFromDatabase = organisationService.getById(idLong).toString();
+					AuditSnapshot oldOrganisationFromDatabase = AuditSnapshot.of(organisationService.getById(idLong));
 					Organisation organisationFromDatabase;
 
 					try {
@@ -312,7 +384,7 @@ public class OrganisationRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addOrganisationLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldOrganisationFromDatabase + "\nto:\n" + updatedOrganisationFromDatabase);
+							eventHistoryLogService.addOrganisationLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldOrganisationFromDatabase.diff(updatedOrganisationFromDatabase));
 						}
 					}
 
@@ -341,7 +413,7 @@ public class OrganisationRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldOrganisation = organisationFromDatabase.toString();
+		AuditSnapshot oldOrganisation = AuditSnapshot.of(organisationFromDatabase);
 
 		changes.remove("id");
 
@@ -380,7 +452,7 @@ public class OrganisationRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addOrganisationLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldOrganisation + "\nto:\n" + patchedOrganisation);
+			eventHistoryLogService.addOrganisationLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldOrganisation.diff(patchedOrganisation));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -412,8 +484,7 @@ public class OrganisationRestController {
 				errorOccurred = true;
 			} else {
 				try {
-					organisationService.delete(organisation);
-
+					restResponse.setAffected_rows(organisationService.delete(organisation));
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " deleted successfully");
 
@@ -450,8 +521,10 @@ public class OrganisationRestController {
 			throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED, response.getMessage());
 		}
 
+		Map<String, Integer> affectedRows;
+
 		try {
-			organisationService.delete(organisationFromDatabase);
+			affectedRows = organisationService.delete(organisationFromDatabase);
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "failed to delete " + ENTITY + " from database \n" + e.getMessage());
 		}
@@ -460,6 +533,7 @@ public class OrganisationRestController {
 		restResponse.setBody(organisationFromDatabase);
 		restResponse.setHttp_status(HttpStatus.OK);
 		restResponse.setMessage(ENTITY + " deleted successfully");
+		restResponse.setAffected_rows(affectedRows);
 
 		eventHistoryLogService.addOrganisationLog("delete " + ENTITY, ENTITY + " deleted:\n" + organisationFromDatabase);
 
@@ -471,36 +545,7 @@ public class OrganisationRestController {
 		Organisation entity = organisationService.getById(id);
 
 		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new StringIndexOutOfBoundsException(e.getMessage());
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-						}
-					}
-				}
-			});
+			patchPlans.get(Organisation.class).apply(entity, changes);
 		}
 
 		return entity;
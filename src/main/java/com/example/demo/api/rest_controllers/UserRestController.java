@@ -12,9 +12,10 @@ import com.example.demo.database.repositories.RoleRepository;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
 import com.example.demo.database.services.UserService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,16 +23,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +62,9 @@ public class UserRestController {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -154,8 +157,14 @@ public class UserRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<User> getAll() {
-		return userService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, userService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, userService.getPage(after, pageable), pageable, User::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -194,7 +203,7 @@ public class UserRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldUserFromDatabase = userService.getById(user.getId()).toString();
+				AuditSnapshot oldUserFromDatabase = AuditSnapshot.of(userService.getById(user.getId()));
 				User userFromDatabase = userService.save(user);
 
 				if (userFromDatabase == null) {
@@ -207,7 +216,7 @@ public class UserRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addUserLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldUserFromDatabase + "\nto:\n" + userFromDatabase);
+					eventHistoryLogService.addUserLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldUserFromDatabase.diff(userFromDatabase));
 				}
 			}
 
@@ -238,7 +247,7 @@ public class UserRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldUserFromDatabase = userService.getById(user.getId()).toString();
+		AuditSnapshot oldUserFromDatabase = AuditSnapshot.of(userService.getById(user.getId()));
 		User userFromDatabase = userService.save(user);
 
 		if (userFromDatabase == null) {
@@ -251,7 +260,7 @@ public class UserRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addUserLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldUserFromDatabase + "\nto:\n" + userFromDatabase);
+			eventHistoryLogService.addUserLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldUserFromDatabase.diff(userFromDatabase));
 
 			return ResponseEntity.ok(restResponse);
 		}
@@ -306,7 +315,7 @@ public class UserRestController {
 					changes.remove("id");
 					long idLong = (long) ((Integer) idObj);
 
-					String oldUserFromDatabase = userService.getById(idLong).toString();
+					AuditSnapshot oldUserFromDatabase = AuditSnapshot.of(userService.getById(idLong));
 
 					User userFromDatabase;
 
@@ -343,7 +352,7 @@ public class UserRestController {
 							userResponse.setHttp_status(HttpStatus.OK);
 							userResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addUserLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldUserFromDatabase + "\nto:\n" + updatedUserFromDatabase);
+							eventHistoryLogService.addUserLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldUserFromDatabase.diff(updatedUserFromDatabase));
 						}
 					}
 
@@ -372,7 +381,7 @@ public class UserRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldUser = userFromDatabase.toString();
+		AuditSnapshot oldUser = AuditSnapshot.of(userFromDatabase);
 
 		changes.remove("id");
 		changes.remove("password");
@@ -412,7 +421,7 @@ public class UserRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " patched successfully");
 
-			eventHistoryLogService.addUserLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldUser + "\nto:\n" + patchedUser);
+			eventHistoryLogService.addUserLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldUser.diff(patchedUser));
 
 			return ResponseEntity.ok(restResponse);
 		}
@@ -602,44 +611,7 @@ public class UserRestController {
 		User entity = userService.getById(id);
 
 		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new StringIndexOutOfBoundsException(e.getMessage());
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Organisation.class)) {
-								try {
-									entity.setOrganisation(objectMapper.readValue(json, Organisation.class));
-								} catch (JsonProcessingException e) {
-									e.printStackTrace();
-								}
-							}
-						}
-					}
-				}
-			});
+			patchPlans.get(User.class).apply(entity, changes);
 		}
 
 		return entity;
@@ -5,28 +5,42 @@ import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.Distance;
+import com.example.demo.database.models.vehicle.OdometerIngestReport;
+import com.example.demo.database.models.vehicle.OdometerReading;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.DistanceService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
+import com.example.demo.utils.StripedLocks;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -44,6 +58,12 @@ public class DistanceRestController {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
+	@Value("${distance-ingest.max-readings:100000}")
+	private int maxIngestReadings;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<Distance>>> postList(@RequestBody List<Distance> distances) {
@@ -60,27 +80,29 @@ public class DistanceRestController {
 			RestResponse<Distance> restResponse = new RestResponse<>();
 			restResponse.setBody(distance);
 			
-			ValidationResponse response = distanceService.validate(distance, Mapping.POST);
+			try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+				ValidationResponse response = distanceService.validate(distance, Mapping.POST);
 
-			if (!response.isValid()) {
-				restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-				restResponse.setMessage(response.getMessage());
-
-				errorOccurred = true;
-			} else {
-				Distance distanceFromDatabase = distanceService.save(distance);
-
-				if (distanceFromDatabase == null) {
-					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+				if (!response.isValid()) {
+					restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+					restResponse.setMessage(response.getMessage());
 
 					errorOccurred = true;
 				} else {
-					restResponse.setBody(distanceFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
+					Distance distanceFromDatabase = distanceService.save(distance);
+
+					if (distanceFromDatabase == null) {
+						restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+						restResponse.setMessage("failed to save " + ENTITY + " in database");
 
-					eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
+						errorOccurred = true;
+					} else {
+						restResponse.setBody(distanceFromDatabase);
+						restResponse.setHttp_status(HttpStatus.OK);
+						restResponse.setMessage(ENTITY + " saved successfully");
+
+						eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
+					}
 				}
 			}
 
@@ -94,36 +116,96 @@ public class DistanceRestController {
 		}
 	}
 
+	// ODOMETER TELEMETRY, ONE JSON READING PER LINE: {"vehicle_id":1,"timestamp":"2021-01-01T10:00:00","kilometres":12345}
+	@PostMapping(value = "/ingest", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<OdometerIngestReport> ingest(HttpServletRequest request) throws IOException {
+
+		OdometerIngestReport report = new OdometerIngestReport();
+		List<OdometerReading> readings = new ArrayList<>();
+
+		ObjectReader readingReader = objectMapper.readerFor(OdometerReading.class);
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			int lineNumber = 0;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+
+				if (line.isBlank()) {
+					continue;
+				}
+
+				if (report.getReceived() >= maxIngestReadings) {
+					throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "at most " + maxIngestReadings + " readings are allowed in one request");
+				}
+
+				report.setReceived(report.getReceived() + 1);
+
+				try {
+					OdometerReading reading = readingReader.readValue(line);
+					reading.setLine(lineNumber);
+					readings.add(reading);
+				} catch (JsonProcessingException e) {
+					report.reject(lineNumber, null, "invalid JSON: " + e.getOriginalMessage());
+				}
+			}
+		}
+
+		if (report.getReceived() == 0) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "no readings were provided");
+		}
+
+		Set<Long> vehicleIds = readings.stream().map(OdometerReading::getVehicle_id).filter(Objects::nonNull).collect(Collectors.toSet());
+
+		try (StripedLocks.Held vehicleLocks = distanceService.lockVehicles(vehicleIds)) {
+			distanceService.ingest(readings, report);
+		}
+
+		if (report.getInserted() > 0) {
+			eventHistoryLogService.addDistanceLog("ingest " + ENTITY, () -> report.getInserted() + " " + ENTITY + " readings ingested, "
+					+ report.getDuplicates() + " duplicates skipped, " + report.getRejected().size() + " rejected");
+		}
+
+		if (report.getRejected().isEmpty()) {
+			return ResponseEntity.status(HttpStatus.OK).body(report);
+		} else {
+			return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(report);
+		}
+	}
+
 	@PostMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<RestResponse<Distance>> post(@RequestBody Distance distance) {
 
 		RestResponse<Distance> restResponse = new RestResponse<>();
 		restResponse.setBody(distance);
 		
-		ValidationResponse response = distanceService.validate(distance, Mapping.POST);
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+			ValidationResponse response = distanceService.validate(distance, Mapping.POST);
 
-		if (!response.isValid()) {
-			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-			restResponse.setMessage(response.getMessage());
+			if (!response.isValid()) {
+				restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+				restResponse.setMessage(response.getMessage());
 
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
-		}
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+			}
 
-		Distance distanceFromDatabase = distanceService.save(distance);
+			Distance distanceFromDatabase = distanceService.save(distance);
 
-		if (distanceFromDatabase == null) {
-			restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-			restResponse.setMessage("failed to save " + ENTITY + " in database");
+			if (distanceFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
 
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
-		} else {
-			restResponse.setBody(distanceFromDatabase);
-			restResponse.setHttp_status(HttpStatus.OK);
-			restResponse.setMessage(ENTITY + " saved successfully");
+				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
+			} else {
+				restResponse.setBody(distanceFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
+				eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
 
-			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+				return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+			}
 		}
 	}
 
@@ -135,8 +217,14 @@ public class DistanceRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Distance> getAll() {
-		return distanceService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, distanceService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, distanceService.getPage(after, pageable), pageable, Distance::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -167,28 +255,30 @@ public class DistanceRestController {
 			RestResponse<Distance> restResponse = new RestResponse<>();
 			restResponse.setBody(distance);
 			
-			ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
+			try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+				ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
 
-			if (!response.isValid()) {
-				restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-				restResponse.setMessage(response.getMessage());
-
-				errorOccurred = true;
-			} else {
-				String oldDistanceFromDatabase = distanceService.getById(distance.getId()).toString();
-				Distance distanceFromDatabase = distanceService.save(distance);
-
-				if (distanceFromDatabase == null) {
-					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+				if (!response.isValid()) {
+					restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+					restResponse.setMessage(response.getMessage());
 
 					errorOccurred = true;
 				} else {
-					restResponse.setBody(distanceFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
+					AuditSnapshot oldDistanceFromDatabase = AuditSnapshot.of(distanceService.getById(distance.getId()));
+					Distance distanceFromDatabase = distanceService.save(distance);
 
-					eventHistoryLogService.addDistanceLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldDistanceFromDatabase + "\nto:\n" + distanceFromDatabase);
+					if (distanceFromDatabase == null) {
+						restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+						restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+						errorOccurred = true;
+					} else {
+						restResponse.setBody(distanceFromDatabase);
+						restResponse.setHttp_status(HttpStatus.OK);
+						restResponse.setMessage(ENTITY + " saved successfully");
+
+						eventHistoryLogService.addDistanceLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldDistanceFromDatabase.diff(distanceFromDatabase));
+					}
 				}
 			}
 
@@ -208,31 +298,33 @@ public class DistanceRestController {
 		RestResponse<Distance> restResponse = new RestResponse<>();
 		restResponse.setBody(distance);
 		
-		ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+			ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
 
-		if (!response.isValid()) {
-			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-			restResponse.setMessage(response.getMessage());
+			if (!response.isValid()) {
+				restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+				restResponse.setMessage(response.getMessage());
 
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
-		}
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+			}
 
-		String oldDistanceFromDatabase = distanceService.getById(distance.getId()).toString();
-		Distance distanceFromDatabase = distanceService.save(distance);
+			AuditSnapshot oldDistanceFromDatabase = AuditSnapshot.of(distanceService.getById(distance.getId()));
+			Distance distanceFromDatabase = distanceService.save(distance);
 
-		if (distanceFromDatabase == null) {
-			restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-			restResponse.setMessage("failed to save " + ENTITY + " in database");
+			if (distanceFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
 
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
-		} else {
-			restResponse.setBody(distanceFromDatabase);
-			restResponse.setHttp_status(HttpStatus.OK);
-			restResponse.setMessage(ENTITY + " saved successfully");
+				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
+			} else {
+				restResponse.setBody(distanceFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addDistanceLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldDistanceFromDatabase + "\nto:\n" + distanceFromDatabase);
+				eventHistoryLogService.addDistanceLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldDistanceFromDatabase.diff(distanceFromDatabase));
 
-			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+				return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+			}
 		}
 	}
 
@@ -282,7 +374,7 @@ public class DistanceRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldDistanceFromDatabase = distanceService.getById(idLong).toString();
+					AuditSnapshot oldDistanceFromDatabase = AuditSnapshot.of(distanceService.getById(idLong));
 					Distance distanceFromDatabase;
 
 					try {
@@ -297,27 +389,29 @@ public class DistanceRestController {
 					RestResponse<Distance> restResponse = new RestResponse<>();
 					restResponse.setBody(distanceFromDatabase);
 					
-					ValidationResponse response = distanceService.validate(distanceFromDatabase, Mapping.PATCH);
-
-					if (!response.isValid()) {
-						restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-						restResponse.setMessage(response.getMessage());
-
-						errorOccurred = true;
-					} else {
-						Distance updatedDistanceFromDatabase = distanceService.save(distanceFromDatabase);
+					try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distanceFromDatabase)) {
+						ValidationResponse response = distanceService.validate(distanceFromDatabase, Mapping.PATCH);
 
-						if (updatedDistanceFromDatabase == null) {
-							restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-							restResponse.setMessage("failed to save " + ENTITY + " in database");
+						if (!response.isValid()) {
+							restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+							restResponse.setMessage(response.getMessage());
 
 							errorOccurred = true;
 						} else {
-							restResponse.setBody(updatedDistanceFromDatabase);
-							restResponse.setHttp_status(HttpStatus.OK);
-							restResponse.setMessage(ENTITY + "patched successfully");
+							Distance updatedDistanceFromDatabase = distanceService.save(distanceFromDatabase);
+
+							if (updatedDistanceFromDatabase == null) {
+								restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+								restResponse.setMessage("failed to save " + ENTITY + " in database");
 
-							eventHistoryLogService.addDistanceLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldDistanceFromDatabase + "\nto:\n" + updatedDistanceFromDatabase);
+								errorOccurred = true;
+							} else {
+								restResponse.setBody(updatedDistanceFromDatabase);
+								restResponse.setHttp_status(HttpStatus.OK);
+								restResponse.setMessage(ENTITY + "patched successfully");
+
+								eventHistoryLogService.addDistanceLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldDistanceFromDatabase.diff(updatedDistanceFromDatabase));
+							}
 						}
 					}
 
@@ -346,7 +440,7 @@ public class DistanceRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldDistanceFromDatabase = distanceFromDatabase.toString();
+		AuditSnapshot oldDistanceFromDatabase = AuditSnapshot.of(distanceFromDatabase);
 
 		changes.remove("id");
 
@@ -364,30 +458,32 @@ public class DistanceRestController {
 
 		restResponse.setBody(distanceFromDatabase);
 		
-		ValidationResponse response = distanceService.validate(distanceFromDatabase, Mapping.PATCH);
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distanceFromDatabase)) {
+			ValidationResponse response = distanceService.validate(distanceFromDatabase, Mapping.PATCH);
 		
-		if (!response.isValid()) {
-			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
-			restResponse.setMessage(response.getMessage());
+			if (!response.isValid()) {
+				restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+				restResponse.setMessage(response.getMessage());
 
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
-		}
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+			}
 
-		Distance patchedDistance = distanceService.save(distanceFromDatabase);
-		restResponse.setBody(patchedDistance);
+			Distance patchedDistance = distanceService.save(distanceFromDatabase);
+			restResponse.setBody(patchedDistance);
 
-		if (patchedDistance == null) {
-			restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-			restResponse.setMessage("failed to save " + ENTITY + " in database");
+			if (patchedDistance == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
 
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
-		} else {
-			restResponse.setHttp_status(HttpStatus.OK);
-			restResponse.setMessage(ENTITY + " saved successfully");
+				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(restResponse);
+			} else {
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addDistanceLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldDistanceFromDatabase + "\nto:\n" + patchedDistance);
+				eventHistoryLogService.addDistanceLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldDistanceFromDatabase.diff(patchedDistance));
 
-			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+				return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+			}
 		}
 	}
 
@@ -475,56 +571,6 @@ public class DistanceRestController {
 	private Distance handlePatchChanges(Long id, Map<String, Object> changes) throws JsonParseException {
 		Distance entity = new Distance(distanceService.getById(id));
 
-		changes.forEach((key, value) -> {
-			Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-			if (field != null) {
-				field.setAccessible(true);
-
-				String json = value == null ? null : value.toString();
-
-				if (json == null) {
-					ReflectionUtils.setField(field, entity, null);
-				} else {
-					if (field.getType().equals(String.class)) {
-						ReflectionUtils.setField(field, entity, json);
-					} else {
-
-						if (field.getType().equals(LocalDateTime.class)) {
-							LocalDateTime localDateTime = null;
-
-							try {
-								localDateTime = DateUtils.stringToLocalDateTime((String) value);
-							} catch (Exception e) {
-								throw new JsonParseException(new Throwable(e.getMessage()));
-							}
-
-							ReflectionUtils.setField(field, entity, localDateTime);
-						}
-
-						if (field.getType().equals(Vehicle.class)) {
-							try {
-								Vehicle vehicle = objectMapper.readValue(json, Vehicle.class);
-								entity.setVehicle(vehicle);
-							} catch (JsonProcessingException e) {
-								throw new JsonParseException(new Throwable("Vehicle parsing error: " + e.getMessage()));
-							}
-						}
-
-						if (field.getType().equals(Integer.class)) {
-							try {
-								Integer intValue = Integer.parseInt(json);
-								ReflectionUtils.setField(field, entity, intValue);
-							} catch (NumberFormatException e) {
-								throw new JsonParseException(new Throwable("Integer value: '" + json + "' json parsing error: " + e.getMessage()));
-							}
-						}
-
-					}
-				}
-			}
-		});
-
-		return entity;
+		return patchPlans.get(Distance.class).apply(entity, changes);
 	}
 }
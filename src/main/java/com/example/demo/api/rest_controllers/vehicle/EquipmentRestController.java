@@ -9,22 +9,22 @@ import com.example.demo.database.models.vehicle.EquipmentType;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.EquipmentService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +45,9 @@ public class EquipmentRestController {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<Equipment>>> postList(@RequestBody List<Equipment> equipmentList) {
@@ -136,8 +139,14 @@ public class EquipmentRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Equipment> getAll() {
-		return equipmentService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, equipmentService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, equipmentService.getPage(after, pageable), pageable, Equipment::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -176,7 +185,7 @@ public class EquipmentRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldEquipmentFromDatabase = equipmentService.getById(equipment.getId()).toString();
+				AuditSnapshot oldEquipmentFromDatabase = AuditSnapshot.of(equipmentService.getById(equipment.getId()));
 				Equipment equipmentFromDatabase = equipmentService.save(equipment);
 
 				if (equipmentFromDatabase == null) {
@@ -189,7 +198,7 @@ public class EquipmentRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addEquipmentLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentFromDatabase + "\nto:\n" + equipmentFromDatabase);
+					eventHistoryLogService.addEquipmentLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentFromDatabase.diff(equipmentFromDatabase));
 				}
 			}
 
@@ -218,7 +227,7 @@ public class EquipmentRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldEquipmentFromDatabase = equipmentService.getById(equipment.getId()).toString();
+		AuditSnapshot oldEquipmentFromDatabase = AuditSnapshot.of(equipmentService.getById(equipment.getId()));
 		Equipment equipmentFromDatabase = equipmentService.save(equipment);
 
 		if (equipmentFromDatabase == null) {
@@ -231,7 +240,7 @@ public class EquipmentRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addEquipmentLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentFromDatabase + "\nto:\n" + equipmentFromDatabase);
+			eventHistoryLogService.addEquipmentLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentFromDatabase.diff(equipmentFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -283,7 +292,7 @@ public class EquipmentRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldEquipmentFromDatabase = equipmentService.getById(idLong).toString();
+					AuditSnapshot oldEquipmentFromDatabase = AuditSnapshot.of(equipmentService.getById(idLong));
 					Equipment equipmentFromDatabase;
 
 					try {
@@ -319,7 +328,7 @@ public class EquipmentRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addEquipmentLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentFromDatabase + "\nto:\n" + updatedEquipmentFromDatabase);
+							eventHistoryLogService.addEquipmentLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentFromDatabase.diff(updatedEquipmentFromDatabase));
 						}
 					}
 
@@ -348,7 +357,7 @@ public class EquipmentRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldEquipmentFromDatabase = equipmentFromDatabase.toString();
+		AuditSnapshot oldEquipmentFromDatabase = AuditSnapshot.of(equipmentFromDatabase);
 
 		changes.remove("id");
 
@@ -387,7 +396,7 @@ public class EquipmentRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addEquipmentLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentFromDatabase + "\nto:\n" + patchedEquipment);
+			eventHistoryLogService.addEquipmentLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentFromDatabase.diff(patchedEquipment));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -478,55 +487,7 @@ public class EquipmentRestController {
 		Equipment entity = equipmentService.getById(id);
 
 		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Vehicle.class)) {
-								try {
-									Vehicle vehicle = objectMapper.readValue(json, Vehicle.class);
-									entity.setVehicle(vehicle);
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicle json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(EquipmentType.class)) {
-								try {
-									EquipmentType equipmentType = objectMapper.readValue(json, EquipmentType.class);
-									entity.setEquipment_type(equipmentType);
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("EquipmentType json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			});
+			patchPlans.get(Equipment.class).apply(entity, changes);
 		}
 
 		return entity;
@@ -7,20 +7,23 @@ import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.EquipmentType;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.EquipmentTypeService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +41,12 @@ public class EquipmentTypeRestController {
 	@Autowired
 	private final EquipmentTypeService equipmentTypeService;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -51,10 +60,14 @@ public class EquipmentTypeRestController {
 
 		List<RestResponse<EquipmentType>> responseList = new ArrayList<>();
 
+		List<EquipmentType> validEquipmentTypes = new ArrayList<>();
+		List<RestResponse<EquipmentType>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (EquipmentType equipmentType : equipmentTypes) {
 			RestResponse<EquipmentType> restResponse = new RestResponse<>();
 			restResponse.setBody(equipmentType);
-			
+
 			ValidationResponse response = equipmentTypeService.validate(equipmentType, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -63,23 +76,54 @@ public class EquipmentTypeRestController {
 
 				errorOccurred = true;
 			} else {
-				EquipmentType equipmentTypeFromDatabase = equipmentTypeService.save(equipmentType);
+				validEquipmentTypes.add(equipmentType);
+				validResponses.add(restResponse);
+			}
 
-				if (equipmentTypeFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<EquipmentType> equipmentTypesFromDatabase;
+
+		try {
+			equipmentTypesFromDatabase = equipmentTypeService.saveAll(validEquipmentTypes);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			equipmentTypesFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<EquipmentType> restResponse = validResponses.get(i);
+			EquipmentType equipmentTypeFromDatabase;
+
+			if (equipmentTypesFromDatabase != null) {
+				equipmentTypeFromDatabase = equipmentTypesFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validEquipmentTypes.get(i).setId(null);
+					equipmentTypeFromDatabase = equipmentTypeService.save(validEquipmentTypes.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(equipmentTypeFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addEquipmentTypeLog("create " + ENTITY, ENTITY + " created:\n" + equipmentTypeFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (equipmentTypeFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(equipmentTypeFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addEquipmentTypeLog("create " + ENTITY, ENTITY + " created:\n" + equipmentTypeFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -129,8 +173,14 @@ public class EquipmentTypeRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<EquipmentType> getAll() {
-		return equipmentTypeService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, equipmentTypeService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, equipmentTypeService.getPage(after, pageable), pageable, EquipmentType::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -169,7 +219,7 @@ public class EquipmentTypeRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldEquipmentTypeFromDatabase = equipmentTypeService.getById(equipmentType.getId()).toString();
+				AuditSnapshot oldEquipmentTypeFromDatabase = AuditSnapshot.of(equipmentTypeService.getById(equipmentType.getId()));
 				EquipmentType equipmentTypeFromDatabase = equipmentTypeService.save(equipmentType);
 
 				if (equipmentTypeFromDatabase == null) {
@@ -182,7 +232,7 @@ public class EquipmentTypeRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addEquipmentTypeLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentTypeFromDatabase + "\nto:\n" + equipmentTypeFromDatabase);
+					eventHistoryLogService.addEquipmentTypeLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentTypeFromDatabase.diff(equipmentTypeFromDatabase));
 				}
 			}
 
@@ -211,7 +261,7 @@ public class EquipmentTypeRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldEquipmentTypeFromDatabase = equipmentTypeService.getById(equipmentType.getId()).toString();
+		AuditSnapshot oldEquipmentTypeFromDatabase = AuditSnapshot.of(equipmentTypeService.getById(equipmentType.getId()));
 		EquipmentType equipmentTypeFromDatabase = equipmentTypeService.save(equipmentType);
 
 		if (equipmentTypeFromDatabase == null) {
@@ -224,7 +274,7 @@ public class EquipmentTypeRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addEquipmentTypeLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentTypeFromDatabase + "\nto:\n" + equipmentTypeFromDatabase);
+			eventHistoryLogService.addEquipmentTypeLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentTypeFromDatabase.diff(equipmentTypeFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -276,7 +326,7 @@ public class EquipmentTypeRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldEquipmentTypeFromDatabase = equipmentTypeService.getById(idLong).toString();
+					AuditSnapshot oldEquipmentTypeFromDatabase = AuditSnapshot.of(equipmentTypeService.getById(idLong));
 					EquipmentType equipmentTypeFromDatabase;
 
 					try {
@@ -312,7 +362,7 @@ public class EquipmentTypeRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addEquipmentTypeLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentTypeFromDatabase + "\nto:\n" + updatedEquipmentTypeFromDatabase);
+							eventHistoryLogService.addEquipmentTypeLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentTypeFromDatabase.diff(updatedEquipmentTypeFromDatabase));
 						}
 					}
 
@@ -341,7 +391,7 @@ public class EquipmentTypeRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldEquipmentTypeFromDatabase = equipmentTypeFromDatabase.toString();
+		AuditSnapshot oldEquipmentTypeFromDatabase = AuditSnapshot.of(equipmentTypeFromDatabase);
 
 		changes.remove("id");
 
@@ -380,7 +430,7 @@ public class EquipmentTypeRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addEquipmentTypeLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentTypeFromDatabase + "\nto:\n" + patchedEquipmentType);
+			eventHistoryLogService.addEquipmentTypeLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentTypeFromDatabase.diff(patchedEquipmentType));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -412,8 +462,7 @@ public class EquipmentTypeRestController {
 				errorOccurred = true;
 			} else {
 				try {
-					equipmentTypeService.delete(equipmentType);
-
+					restResponse.setAffected_rows(equipmentTypeService.delete(equipmentType));
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " deleted successfully");
 
@@ -448,8 +497,10 @@ public class EquipmentTypeRestController {
 			throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED, response.getMessage());
 		}
 
+		Map<String, Integer> affectedRows;
+
 		try {
-			equipmentTypeService.delete(equipmentTypeFromDatabase);
+			affectedRows = equipmentTypeService.delete(equipmentTypeFromDatabase);
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "failed to delete " + ENTITY + " from database \n" + e.getMessage());
 		}
@@ -458,6 +509,7 @@ public class EquipmentTypeRestController {
 		restResponse.setBody(equipmentTypeFromDatabase);
 		restResponse.setHttp_status(HttpStatus.OK);
 		restResponse.setMessage(ENTITY + " deleted successfully");
+		restResponse.setAffected_rows(affectedRows);
 
 		eventHistoryLogService.addEquipmentTypeLog("delete " + ENTITY, ENTITY + " deleted:\n" + equipmentTypeFromDatabase);
 
@@ -469,37 +521,7 @@ public class EquipmentTypeRestController {
 		EquipmentType entity = equipmentTypeService.getById(id);
 
 		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-						}
-					}
-				}
-			});
+			patchPlans.get(EquipmentType.class).apply(entity, changes);
 		}
 
 		return entity;
@@ -7,24 +7,35 @@ import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.*;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.FileService;
+import com.example.demo.database.services.vehicle.FileUploadSessionService;
+import com.example.demo.storage.FileContent;
+import com.example.demo.storage.HttpContentSender;
+import com.example.demo.storage.ImageDerivativeStore;
+import com.example.demo.storage.SizeLimitedInputStream;
+import com.example.demo.storage.UploadSession;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -43,9 +54,18 @@ public class FileRestController {
 	@Autowired
 	private final FileService fileService;
 
+	@Autowired
+	private final FileUploadSessionService fileUploadSessionService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
+	@Value("${spring.servlet.multipart.max-file-size:50MB}")
+	private DataSize maxFileSize;
+
 
 //	@PostMapping(value = {"/batch"}, consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 //	public ResponseEntity<List<RestResponse<String>>> postList(@RequestBody MultipartFile[] files) {
@@ -143,9 +163,7 @@ public class FileRestController {
 					try {
 						fileByteData.setFile_name(fileName);
 						fileByteData.setFile_content_type(file.getContentType());
-						fileByteData.setData(file.getBytes());
-
-						FileByteData fileByteDataFromDatabase = fileService.save(fileByteData);
+						FileByteData fileByteDataFromDatabase = fileService.save(fileByteData, file.getInputStream());
 
 						if (fileByteDataFromDatabase == null) {
 							restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -153,7 +171,7 @@ public class FileRestController {
 
 							errorOccurred = true;
 						} else {
-							fileByteData = fileService.save(fileByteData);
+							fileByteData = fileByteDataFromDatabase;
 
 							FileMetaData fileMetaData = new FileMetaData();
 							fileMetaData.setFile_byte_data(fileByteData);
@@ -256,16 +274,14 @@ public class FileRestController {
 			try {
 				fileByteData.setFile_name(fileName);
 				fileByteData.setFile_content_type(file.getContentType());
-				fileByteData.setData(file.getBytes());
-
-				FileByteData fileByteDataFromDatabase = fileService.save(fileByteData);
+				FileByteData fileByteDataFromDatabase = fileService.save(fileByteData, file.getInputStream());
 
 				if (fileByteDataFromDatabase == null) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
 					restResponse.setMessage("failed to save " + ENTITY + " in database");
 
 				} else {
-					fileByteData = fileService.save(fileByteData);
+					fileByteData = fileByteDataFromDatabase;
 
 					FileMetaData fileMetaData = new FileMetaData();
 					fileMetaData.setFile_byte_data(fileByteData);
@@ -287,6 +303,160 @@ public class FileRestController {
 		return ResponseEntity.status(restResponse.getHttp_status()).body(restResponse);
 	}
 
+	// RAW (NON MULTIPART) UPLOAD: REQUEST BODY IS THE FILE, Content-Type IS THE FILE CONTENT TYPE.
+	// BODY IS STREAMED STRAIGHT INTO THE BLOB STORE, NOTHING IS SPOOLED OR BUFFERED AS A WHOLE
+	@PostMapping(value = "/stream", consumes = MediaType.ALL_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<RestResponse<?>> postStream(@RequestParam String file_name, HttpServletRequest request) {
+
+		String fileName = org.springframework.util.StringUtils.cleanPath(file_name);
+
+		if (fileName.length() <= 0) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "file_name parameter is required");
+		}
+
+		if (request.getContentLengthLong() > maxFileSize.toBytes()) {
+			throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "file exceeds maximum size of " + maxFileSize.toBytes() + " bytes");
+		}
+
+		FileByteData fileByteData = new FileByteData();
+		fileByteData.setFile_name(fileName);
+		fileByteData.setFile_content_type(request.getContentType() == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : request.getContentType());
+
+		try (InputStream content = new SizeLimitedInputStream(request.getInputStream(), maxFileSize.toBytes())) {
+			fileByteData = fileService.save(fileByteData, content);
+		} catch (SizeLimitedInputStream.SizeLimitExceededException e) {
+			throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "file exceeds maximum size of " + maxFileSize.toBytes() + " bytes");
+		} catch (IOException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "file upload error: " + e.getMessage());
+		}
+
+		FileMetaData fileMetaData = new FileMetaData();
+		fileMetaData.setFile_byte_data(fileByteData);
+
+		fileMetaData = fileService.save(fileMetaData);
+
+		RestResponse<Object> restResponse = new RestResponse<>();
+		restResponse.setBody(fileMetaData);
+		restResponse.setHttp_status(HttpStatus.OK);
+		restResponse.setMessage("file uploaded and saved successfully");
+
+		eventHistoryLogService.addFileLog("create " + ENTITY, ENTITY + " created:\n" + fileByteData);
+
+		return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+	}
+
+	// RESUMABLE UPLOAD: CREATE SESSION -> PUT CHUNKS (ANY ORDER, RETRY ONLY FAILED ONES) -> COMPLETE
+	@PostMapping(value = "/uploads", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<RestResponse<UploadSession>> postUploadSession(@RequestBody UploadSession uploadSession) throws IOException {
+
+		RestResponse<UploadSession> restResponse = new RestResponse<>();
+		restResponse.setBody(uploadSession);
+
+		ValidationResponse response = fileUploadSessionService.validate(uploadSession);
+
+		if (!response.isValid()) {
+			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+			restResponse.setMessage(response.getMessage());
+
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+		}
+
+		restResponse.setBody(fileUploadSessionService.create(uploadSession));
+		restResponse.setHttp_status(HttpStatus.CREATED);
+		restResponse.setMessage("upload session created");
+
+		return ResponseEntity.status(HttpStatus.CREATED).body(restResponse);
+	}
+
+	@GetMapping(value = "/uploads/{uploadId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public UploadSession getUploadSession(@PathVariable String uploadId) throws IOException {
+		UploadSession uploadSession = fileUploadSessionService.get(uploadId);
+
+		if (uploadSession == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "upload session with ID: '" + uploadId + "' not found");
+		}
+
+		return uploadSession;
+	}
+
+	@PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.ALL_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<RestResponse<UploadSession>> putUploadChunk(@PathVariable String uploadId, @RequestParam long offset,
+																	  HttpServletRequest request) throws IOException {
+
+		UploadSession uploadSession = getUploadSession(uploadId);
+
+		RestResponse<UploadSession> restResponse = new RestResponse<>();
+		restResponse.setBody(uploadSession);
+
+		ValidationResponse response = fileUploadSessionService.validateChunk(uploadSession, offset, request.getContentLengthLong());
+
+		if (!response.isValid()) {
+			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+			restResponse.setMessage(response.getMessage());
+
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+		}
+
+		try (InputStream content = request.getInputStream()) {
+			restResponse.setBody(fileUploadSessionService.writeChunk(uploadId, offset, content));
+		} catch (IOException e) {
+			restResponse.setHttp_status(HttpStatus.BAD_REQUEST);
+			restResponse.setMessage("chunk upload error: " + e.getMessage());
+
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
+		}
+
+		restResponse.setHttp_status(HttpStatus.OK);
+		restResponse.setMessage("chunk at offset " + offset + " saved successfully");
+
+		return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+	}
+
+	@PostMapping(value = "/uploads/{uploadId}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<RestResponse<?>> completeUploadSession(@PathVariable String uploadId) throws IOException {
+
+		UploadSession uploadSession = getUploadSession(uploadId);
+
+		RestResponse<Object> restResponse = new RestResponse<>();
+		restResponse.setBody(uploadSession);
+
+		if (!uploadSession.isComplete()) {
+			restResponse.setHttp_status(HttpStatus.CONFLICT);
+			restResponse.setMessage("upload is missing " + uploadSession.missingChunkCount() + " chunks");
+
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(restResponse);
+		}
+
+		FileByteData fileByteData = fileUploadSessionService.complete(uploadId);
+
+		if (fileByteData == null) {
+			restResponse.setBody(fileUploadSessionService.get(uploadId));
+			restResponse.setHttp_status(HttpStatus.UNPROCESSABLE_ENTITY);
+			restResponse.setMessage("SHA-256 of the uploaded file doesn't match, upload all chunks again");
+
+			return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(restResponse);
+		}
+
+		FileMetaData fileMetaData = new FileMetaData();
+		fileMetaData.setFile_byte_data(fileByteData);
+
+		fileMetaData = fileService.save(fileMetaData);
+
+		restResponse.setBody(fileMetaData);
+		restResponse.setHttp_status(HttpStatus.OK);
+		restResponse.setMessage("file uploaded and saved successfully");
+
+		eventHistoryLogService.addFileLog("create " + ENTITY, ENTITY + " created:\n" + fileByteData);
+
+		return ResponseEntity.status(HttpStatus.OK).body(restResponse);
+	}
+
+	@DeleteMapping(value = "/uploads/{uploadId}")
+	public void deleteUploadSession(@PathVariable String uploadId) throws IOException {
+		getUploadSession(uploadId);
+		fileUploadSessionService.delete(uploadId);
+	}
+
 	@PostMapping(value = "/{id}", consumes = "application/json")
 	public void postByID(@RequestBody FileMetaData file, @PathVariable Long id) {
 		throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED, "POST method with ID parameter not allowed");
@@ -295,8 +465,22 @@ public class FileRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<FileMetaData> getAll() {
-		return fileService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, fileService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, fileService.getPage(after, pageable), pageable, FileMetaData::getId);
+	}
+
+	// LIGHTWEIGHT LISTING: NAME, TYPE, SIZE AND HASH OF EVERY FILE WITHOUT THE RELATED ENTITIES, CONTENT IS FETCHED FROM /{id}/content
+	@GetMapping(value = "/summaries", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> getSummaries(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, fileService.getSummaryPage(after, pageable), pageable, FileSummary::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -310,6 +494,43 @@ public class FileRestController {
 		return fileFromDatabase;
 	}
 
+	// RAW FILE CONTENT, SUPPORTS Range AND If-None-Match REQUESTS
+	@GetMapping(value = "/{id}/content")
+	public void getContentByID(@PathVariable Long id, @RequestParam(required = false, defaultValue = "false") boolean download,
+							   HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+		FileMetaData fileFromDatabase = fileService.getFileMetaDataById(id);
+
+		if (fileFromDatabase == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		if (fileFromDatabase.getFile_byte_data() == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' has no content");
+		}
+
+		FileContent content;
+
+		try {
+			content = fileService.getContent(fileFromDatabase.getFile_byte_data());
+		} catch (IOException e) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "content of " + ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		HttpContentSender.send(request, response, content, download);
+	}
+
+	// DOWNSCALED IMAGES (MAX 200 / 1024 PX), GENERATED ON FIRST REQUEST
+	@GetMapping(value = "/{id}/thumbnail")
+	public void getThumbnailByID(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		sendImageDerivative(id, ImageDerivativeStore.Variant.THUMBNAIL, request, response);
+	}
+
+	@GetMapping(value = "/{id}/preview")
+	public void getPreviewByID(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		sendImageDerivative(id, ImageDerivativeStore.Variant.PREVIEW, request, response);
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -335,7 +556,7 @@ public class FileRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldFileFromDatabase = fileService.getFileMetaDataById(file.getId()).toString();
+				AuditSnapshot oldFileFromDatabase = AuditSnapshot.of(fileService.getFileMetaDataById(file.getId()));
 				FileMetaData fileFromDatabase = fileService.save(file);
 
 				if (fileFromDatabase == null) {
@@ -348,7 +569,7 @@ public class FileRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addFileLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldFileFromDatabase + "\nto:\n" + fileFromDatabase);
+					eventHistoryLogService.addFileLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldFileFromDatabase.diff(fileFromDatabase));
 				}
 			}
 
@@ -377,7 +598,7 @@ public class FileRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldFileFromDatabase = fileService.getFileMetaDataById(file.getId()).toString();
+		AuditSnapshot oldFileFromDatabase = AuditSnapshot.of(fileService.getFileMetaDataById(file.getId()));
 		FileMetaData fileFromDatabase = fileService.save(file);
 
 		if (fileFromDatabase == null) {
@@ -390,7 +611,7 @@ public class FileRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addFileLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldFileFromDatabase + "\nto:\n" + fileFromDatabase);
+			eventHistoryLogService.addFileLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldFileFromDatabase.diff(fileFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -442,7 +663,7 @@ public class FileRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldFileFromDatabase = fileService.getFileMetaDataById(idLong).toString();
+					AuditSnapshot oldFileFromDatabase = AuditSnapshot.of(fileService.getFileMetaDataById(idLong));
 					FileMetaData fileFromDatabase;
 
 					try {
@@ -478,7 +699,7 @@ public class FileRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addFileLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldFileFromDatabase + "\nto:\n" + updatedFileFromDatabase);
+							eventHistoryLogService.addFileLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldFileFromDatabase.diff(updatedFileFromDatabase));
 						}
 					}
 
@@ -507,7 +728,7 @@ public class FileRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldFileFromDatabase = fileFromDatabase.toString();
+		AuditSnapshot oldFileFromDatabase = AuditSnapshot.of(fileFromDatabase);
 
 		changes.remove("id");
 
@@ -546,7 +767,7 @@ public class FileRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addFileLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldFileFromDatabase + "\nto:\n" + patchedFileMetaData);
+			eventHistoryLogService.addFileLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldFileFromDatabase.diff(patchedFileMetaData));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -637,71 +858,23 @@ public class FileRestController {
 		FileMetaData entity = fileService.getFileMetaDataById(id);
 
 		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
+			patchPlans.get(FileMetaData.class).apply(entity, changes);
+		}
 
-					String json = value == null ? null : value.toString();
+		return entity;
+	}
 
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
 
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime(json);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(FileByteData.class)) {
-								try {
-									entity.setFile_byte_data(objectMapper.readValue(json, FileByteData.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("FileByteData json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Vehicle.class)) {
-								try {
-									entity.setVehicle(objectMapper.readValue(json, Vehicle.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicle json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Refuel.class)) {
-								try {
-									entity.setRefuel(objectMapper.readValue(json, Refuel.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Refuel json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(VehicleEvent.class)) {
-								try {
-									entity.setVehicle_event(objectMapper.readValue(json, VehicleEvent.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("VehicleEvent json parsing error: " + e.getMessage()));
-								}
-							}
+	private void sendImageDerivative(Long id, ImageDerivativeStore.Variant variant, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		FileMetaData fileFromDatabase = fileService.getFileMetaDataById(id);
 
-						}
-					}
-				}
-			});
+		if (fileFromDatabase == null || fileFromDatabase.getFile_byte_data() == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		return entity;
+		FileContent content = fileService.getImageDerivative(fileFromDatabase.getFile_byte_data(), variant)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' has no image " + variant.name().toLowerCase()));
+
+		HttpContentSender.send(request, response, content, false);
 	}
 }
@@ -6,25 +6,30 @@ import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.Fleet;
+import com.example.demo.database.models.vehicle.UsageBucket;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.FleetService;
+import com.example.demo.database.services.vehicle.UsageRollupService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
+import com.example.demo.utils.UsageReportUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.*;
 
 @RestController
@@ -40,9 +45,15 @@ public class FleetRestController {
 	@Autowired
 	private final FleetService fleetService;
 
+	@Autowired
+	private final UsageRollupService usageRollupService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<Fleet>>> postList(@RequestBody List<Fleet> fleets) {
@@ -134,8 +145,14 @@ public class FleetRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Fleet> getAll() {
-		return fleetService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, fleetService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, fleetService.getPage(after, pageable), pageable, Fleet::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -149,6 +166,20 @@ public class FleetRestController {
 		return fleetFromDatabase;
 	}
 
+	@GetMapping(value = "/{id}/usage", produces = MediaType.APPLICATION_JSON_VALUE)
+	public List<UsageBucket> getUsageByID(@PathVariable Long id, @RequestParam(required = false) String bucket,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		if (fleetService.getById(id) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		UsageBucket.Size size = UsageReportUtils.getSize(bucket);
+		LocalDate end = UsageReportUtils.getTo(to);
+
+		return usageRollupService.getByFleetId(id, size, UsageReportUtils.getFrom(from, end), end);
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -174,7 +205,7 @@ public class FleetRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldFleetFromDatabase = fleetService.getById(fleet.getId()).toString();
+				AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetService.getById(fleet.getId()));
 				Fleet fleetFromDatabase = fleetService.save(fleet);
 
 				if (fleetFromDatabase == null) {
@@ -187,7 +218,7 @@ public class FleetRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addFleetLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + fleetFromDatabase);
+					eventHistoryLogService.addFleetLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(fleetFromDatabase));
 				}
 			}
 
@@ -215,7 +246,7 @@ public class FleetRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldFleetFromDatabase = fleetService.getById(fleet.getId()).toString();
+		AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetService.getById(fleet.getId()));
 		Fleet fleetFromDatabase = fleetService.save(fleet);
 
 		if (fleetFromDatabase == null) {
@@ -228,7 +259,7 @@ public class FleetRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addFleetLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + fleetFromDatabase);
+			eventHistoryLogService.addFleetLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(fleetFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -280,7 +311,7 @@ public class FleetRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldFleetFromDatabase = fleetService.getById(idLong).toString();
+					AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetService.getById(idLong));
 					Fleet fleetFromDatabase;
 
 					try {
@@ -316,7 +347,7 @@ public class FleetRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addFleetLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + updatedFleetFromDatabase);
+							eventHistoryLogService.addFleetLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(updatedFleetFromDatabase));
 						}
 					}
 
@@ -345,7 +376,7 @@ public class FleetRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldFleetFromDatabase = fleetFromDatabase.toString();
+		AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetFromDatabase);
 
 		changes.remove("id");
 
@@ -384,7 +415,7 @@ public class FleetRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addFleetLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + patchedFleet);
+			eventHistoryLogService.addFleetLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(patchedFleet));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -475,56 +506,7 @@ public class FleetRestController {
 		Fleet entity = fleetService.getById(id);
 
 		if (entity != null) {
-			for (Map.Entry<String, Object> entry : changes.entrySet()) {
-				String key = entry.getKey();
-				Object value = entry.getValue();
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Organisation.class)) {
-								try {
-									entity.setOrganisation(objectMapper.readValue(json, Organisation.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Organisation json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Set.class) && field.getName().equals("vehicles")) {
-								try {
-									Set<Vehicle> vehiclesFromPatch = objectMapper.readValue(json, objectMapper.getTypeFactory().constructCollectionType(HashSet.class, Vehicle.class));
-									entity.setVehicles(vehiclesFromPatch);
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicles Set: '" + json + "' json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			}
+			patchPlans.get(Fleet.class).apply(entity, changes);
 		}
 
 		return entity;
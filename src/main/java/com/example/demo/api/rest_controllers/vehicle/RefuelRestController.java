@@ -4,26 +4,30 @@ import com.example.demo.database.models.EventHistoryLog;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.FileSummary;
 import com.example.demo.database.models.vehicle.Refuel;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
+import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.RefuelService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -41,9 +45,15 @@ public class RefuelRestController {
 	@Autowired
 	private final RefuelService refuelService;
 
+	@Autowired
+	private final FileService fileService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<Refuel>>> postList(@RequestBody List<Refuel> refuels) {
@@ -56,10 +66,14 @@ public class RefuelRestController {
 
 		List<RestResponse<Refuel>> responseList = new ArrayList<>();
 
+		List<Refuel> validRefuels = new ArrayList<>();
+		List<RestResponse<Refuel>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (Refuel refuel : refuels) {
 			RestResponse<Refuel> restResponse = new RestResponse<>();
 			restResponse.setBody(refuel);
-			
+
 			ValidationResponse response = refuelService.validate(refuel, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -68,23 +82,54 @@ public class RefuelRestController {
 
 				errorOccurred = true;
 			} else {
-				Refuel refuelFromDatabase = refuelService.save(refuel);
+				validRefuels.add(refuel);
+				validResponses.add(restResponse);
+			}
 
-				if (refuelFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<Refuel> refuelsFromDatabase;
+
+		try {
+			refuelsFromDatabase = refuelService.saveAll(validRefuels);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			refuelsFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<Refuel> restResponse = validResponses.get(i);
+			Refuel refuelFromDatabase;
+
+			if (refuelsFromDatabase != null) {
+				refuelFromDatabase = refuelsFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validRefuels.get(i).setId(null);
+					refuelFromDatabase = refuelService.save(validRefuels.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(refuelFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addRefuelLog("create " + ENTITY, ENTITY + " created:\n" + refuelFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (refuelFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(refuelFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addRefuelLog("create " + ENTITY, ENTITY + " created:\n" + refuelFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -135,8 +180,14 @@ public class RefuelRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Refuel> getAll() {
-		return refuelService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, refuelService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, refuelService.getPage(after, pageable), pageable, Refuel::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -150,6 +201,21 @@ public class RefuelRestController {
 		return refuelFromDatabase;
 	}
 
+	// ALL FILES OF THE REFUEL AS ONE ZIP ARCHIVE, STREAMED ENTRY BY ENTRY
+	@GetMapping(value = "/{id}/files.zip")
+	public ResponseEntity<StreamingResponseBody> getFilesZipByID(@PathVariable Long id) {
+		if (refuelService.getById(id) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		List<FileSummary> files = fileService.getSummariesByRefuelId(id);
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ENTITY + "_" + id + "_files.zip\"")
+				.body(outputStream -> fileService.writeZip(files, outputStream));
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -175,7 +241,7 @@ public class RefuelRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldRefuelFromDatabase = refuelService.getById(refuel.getId()).toString();
+				AuditSnapshot oldRefuelFromDatabase = AuditSnapshot.of(refuelService.getById(refuel.getId()));
 				Refuel refuelFromDatabase = refuelService.save(refuel);
 
 				if (refuelFromDatabase == null) {
@@ -188,7 +254,7 @@ public class RefuelRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addRefuelLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldRefuelFromDatabase + "\nto:\n" + refuelFromDatabase);
+					eventHistoryLogService.addRefuelLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldRefuelFromDatabase.diff(refuelFromDatabase));
 				}
 			}
 			
@@ -217,7 +283,7 @@ public class RefuelRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldRefuelFromDatabase = refuelService.getById(refuel.getId()).toString();
+		AuditSnapshot oldRefuelFromDatabase = AuditSnapshot.of(refuelService.getById(refuel.getId()));
 		Refuel refuelFromDatabase = refuelService.save(refuel);
 
 		if (refuelFromDatabase == null) {
@@ -230,7 +296,7 @@ public class RefuelRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addRefuelLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldRefuelFromDatabase + "\nto:\n" + refuelFromDatabase);
+			eventHistoryLogService.addRefuelLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldRefuelFromDatabase.diff(refuelFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -282,7 +348,8 @@ public class RefuelRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldRefuelFromDatabase = refuelService.getById(idLong).toString();
+					AuditSnapshot oldRefuelFromDatabase = AuditSnapshot.of(refuelService.getById(idLong));
+					Refuel originalRefuel = refuelService.getOriginalById(idLong);
 					Refuel refuelFromDatabase;
 
 					try {
@@ -305,7 +372,7 @@ public class RefuelRestController {
 
 						errorOccurred = true;
 					} else {
-						Refuel updatedRefuelFromDatabase = refuelService.save(refuelFromDatabase);
+						Refuel updatedRefuelFromDatabase = refuelService.save(refuelFromDatabase, originalRefuel);
 
 						if (updatedRefuelFromDatabase == null) {
 							restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -317,7 +384,7 @@ public class RefuelRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addRefuelLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldRefuelFromDatabase + "\nto:\n" + updatedRefuelFromDatabase);
+							eventHistoryLogService.addRefuelLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldRefuelFromDatabase.diff(updatedRefuelFromDatabase));
 						}
 					}
 
@@ -346,7 +413,8 @@ public class RefuelRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldRefuelFromDatabase = refuelFromDatabase.toString();
+		AuditSnapshot oldRefuelFromDatabase = AuditSnapshot.of(refuelFromDatabase);
+		Refuel originalRefuel = refuelService.getOriginalById(id);
 
 		changes.remove("id");
 
@@ -373,7 +441,7 @@ public class RefuelRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		Refuel patchedRefuel = refuelService.save(refuelFromDatabase);
+		Refuel patchedRefuel = refuelService.save(refuelFromDatabase, originalRefuel);
 		restResponse.setBody(patchedRefuel);
 
 		if (patchedRefuel == null) {
@@ -385,7 +453,7 @@ public class RefuelRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addRefuelLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldRefuelFromDatabase + "\nto:\n" + patchedRefuel);
+			eventHistoryLogService.addRefuelLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldRefuelFromDatabase.diff(patchedRefuel));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -473,59 +541,14 @@ public class RefuelRestController {
 
 
 	private Refuel handlePatchChanges(Long id, Map<String, Object> changes) throws JsonParseException {
-		Refuel entity = refuelService.getById(id);
-
-		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
+		Refuel entityFromDatabase = refuelService.getById(id);
 
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Float.class)) {
-								try {
-									Float floatValue = Float.parseFloat(json.replaceAll(",", ".").replaceAll(" ", ""));
-									ReflectionUtils.setField(field, entity, floatValue);
-								} catch (NumberFormatException e) {
-									throw new JsonParseException(new Throwable("Float value: '" + json + "' json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Vehicle.class)) {
-								try {
-									entity.setVehicle(objectMapper.readValue(json, Vehicle.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicle json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			});
+		if (entityFromDatabase == null) {
+			return null;
 		}
 
-		return entity;
+		Refuel entity = new Refuel(entityFromDatabase);
+
+		return patchPlans.get(Refuel.class).apply(entity, changes);
 	}
 }
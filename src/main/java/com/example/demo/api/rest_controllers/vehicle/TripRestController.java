@@ -8,22 +8,23 @@ import com.example.demo.database.models.vehicle.Trip;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.TripService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +45,9 @@ public class TripRestController {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<Trip>>> postList(@RequestBody List<Trip> trips) {
@@ -56,10 +60,14 @@ public class TripRestController {
 
 		List<RestResponse<Trip>> responseList = new ArrayList<>();
 
+		List<Trip> validTrips = new ArrayList<>();
+		List<RestResponse<Trip>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (Trip trip : trips) {
 			RestResponse<Trip> restResponse = new RestResponse<>();
 			restResponse.setBody(trip);
-			
+
 			ValidationResponse response = tripService.validate(trip, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -68,23 +76,54 @@ public class TripRestController {
 
 				errorOccurred = true;
 			} else {
-				Trip tripFromDatabase = tripService.save(trip);
+				validTrips.add(trip);
+				validResponses.add(restResponse);
+			}
 
-				if (tripFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<Trip> tripsFromDatabase;
+
+		try {
+			tripsFromDatabase = tripService.saveAll(validTrips);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			tripsFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<Trip> restResponse = validResponses.get(i);
+			Trip tripFromDatabase;
+
+			if (tripsFromDatabase != null) {
+				tripFromDatabase = tripsFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validTrips.get(i).setId(null);
+					tripFromDatabase = tripService.save(validTrips.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(tripFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addTripLog("create " + ENTITY, ENTITY + " created:\n" + tripFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (tripFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(tripFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addTripLog("create " + ENTITY, ENTITY + " created:\n" + tripFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -134,8 +173,14 @@ public class TripRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Trip> getAll() {
-		return tripService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, tripService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, tripService.getPage(after, pageable), pageable, Trip::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -174,7 +219,7 @@ public class TripRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldTripFromDatabase = tripService.getById(trip.getId()).toString();
+				AuditSnapshot oldTripFromDatabase = AuditSnapshot.of(tripService.getById(trip.getId()));
 				Trip tripFromDatabase = tripService.save(trip);
 
 				if (tripFromDatabase == null) {
@@ -187,7 +232,7 @@ public class TripRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addTripLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldTripFromDatabase + "\nto:\n" + tripFromDatabase);
+					eventHistoryLogService.addTripLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldTripFromDatabase.diff(tripFromDatabase));
 				}
 			}
 
@@ -216,7 +261,7 @@ public class TripRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldTripFromDatabase = tripService.getById(trip.getId()).toString();
+		AuditSnapshot oldTripFromDatabase = AuditSnapshot.of(tripService.getById(trip.getId()));
 		Trip tripFromDatabase = tripService.save(trip);
 
 		if (tripFromDatabase == null) {
@@ -229,7 +274,7 @@ public class TripRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addTripLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldTripFromDatabase + "\nto:\n" + tripFromDatabase);
+			eventHistoryLogService.addTripLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldTripFromDatabase.diff(tripFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -281,7 +326,8 @@ public class TripRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldTripFromDatabase = tripService.getById(idLong).toString();
+					AuditSnapshot oldTripFromDatabase = AuditSnapshot.of(tripService.getById(idLong));
+					Trip originalTrip = tripService.getOriginalById(idLong);
 					Trip tripFromDatabase;
 
 					try {
@@ -304,7 +350,7 @@ public class TripRestController {
 						errorOccurred = true;
 					} else {
 
-						Trip updatedTripFromDatabase = tripService.save(tripFromDatabase);
+						Trip updatedTripFromDatabase = tripService.save(tripFromDatabase, originalTrip);
 
 						if (updatedTripFromDatabase == null) {
 							restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -316,7 +362,7 @@ public class TripRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addTripLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldTripFromDatabase + "\nto:\n" + updatedTripFromDatabase);
+							eventHistoryLogService.addTripLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldTripFromDatabase.diff(updatedTripFromDatabase));
 						}
 					}
 
@@ -345,7 +391,8 @@ public class TripRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldTripFromDatabase = tripFromDatabase.toString();
+		AuditSnapshot oldTripFromDatabase = AuditSnapshot.of(tripFromDatabase);
+		Trip originalTrip = tripService.getOriginalById(id);
 
 		changes.remove("id");
 
@@ -372,7 +419,7 @@ public class TripRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		Trip patchedTrip = tripService.save(tripFromDatabase);
+		Trip patchedTrip = tripService.save(tripFromDatabase, originalTrip);
 		restResponse.setBody(patchedTrip);
 
 		if (patchedTrip == null) {
@@ -384,7 +431,7 @@ public class TripRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addTripLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldTripFromDatabase + "\nto:\n" + patchedTrip);
+			eventHistoryLogService.addTripLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldTripFromDatabase.diff(patchedTrip));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -470,59 +517,15 @@ public class TripRestController {
 
 
 	private Trip handlePatchChanges(Long id, Map<String, Object> changes) throws JsonParseException {
-		Trip entity = tripService.getById(id);
+		Trip entityFromDatabase = tripService.getById(id);
 
-		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Vehicle.class)) {
-								try {
-									entity.setVehicle(objectMapper.readValue(json, Vehicle.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicle json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Integer.class)) {
-								try {
-									Integer intValue = Integer.parseInt(json);
-									ReflectionUtils.setField(field, entity, intValue);
-								} catch (NumberFormatException e) {
-									throw new JsonParseException(new Throwable("Integer value: '" + json + "' json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			});
+		if (entityFromDatabase == null) {
+			return null;
 		}
 
-		return entity;
+		// DETACHED COPY: THE MANAGED ENTITY WOULD BE FLUSHED BY THE NEXT QUERY (validate()) EVEN IF THE PATCH IS REJECTED
+		Trip entity = new Trip(entityFromDatabase);
+
+		return patchPlans.get(Trip.class).apply(entity, changes);
 	}
 }
@@ -4,26 +4,30 @@ import com.example.demo.database.models.EventHistoryLog;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.FileSummary;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.models.vehicle.VehicleEvent;
 import com.example.demo.database.services.EventHistoryLogService;
+import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.VehicleEventService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -41,9 +45,15 @@ public class VehicleEventRestController {
 	@Autowired
 	private final VehicleEventService vehicleEventService;
 
+	@Autowired
+	private final FileService fileService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<List<RestResponse<VehicleEvent>>> postList(@RequestBody List<VehicleEvent> events) {
@@ -56,10 +66,14 @@ public class VehicleEventRestController {
 
 		List<RestResponse<VehicleEvent>> responseList = new ArrayList<>();
 
+		List<VehicleEvent> validVehicleEvents = new ArrayList<>();
+		List<RestResponse<VehicleEvent>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (VehicleEvent event : events) {
 			RestResponse<VehicleEvent> restResponse = new RestResponse<>();
 			restResponse.setBody(event);
-			
+
 			ValidationResponse response = vehicleEventService.validate(event, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -68,23 +82,54 @@ public class VehicleEventRestController {
 
 				errorOccurred = true;
 			} else {
-				VehicleEvent eventFromDatabase = vehicleEventService.save(event);
+				validVehicleEvents.add(event);
+				validResponses.add(restResponse);
+			}
 
-				if (eventFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<VehicleEvent> eventsFromDatabase;
+
+		try {
+			eventsFromDatabase = vehicleEventService.saveAll(validVehicleEvents);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			eventsFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<VehicleEvent> restResponse = validResponses.get(i);
+			VehicleEvent eventFromDatabase;
+
+			if (eventsFromDatabase != null) {
+				eventFromDatabase = eventsFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validVehicleEvents.get(i).setId(null);
+					eventFromDatabase = vehicleEventService.save(validVehicleEvents.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(eventFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addVehicleEventLog("create " + ENTITY, ENTITY + " created:\n" + eventFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (eventFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(eventFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addVehicleEventLog("create " + ENTITY, ENTITY + " created:\n" + eventFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -135,8 +180,14 @@ public class VehicleEventRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<VehicleEvent> getAll() {
-		return vehicleEventService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, vehicleEventService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, vehicleEventService.getPage(after, pageable), pageable, VehicleEvent::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -150,6 +201,21 @@ public class VehicleEventRestController {
 		return eventFromDatabase;
 	}
 
+	// ALL FILES OF THE VEHICLE EVENT AS ONE ZIP ARCHIVE, STREAMED ENTRY BY ENTRY
+	@GetMapping(value = "/{id}/files.zip")
+	public ResponseEntity<StreamingResponseBody> getFilesZipByID(@PathVariable Long id) {
+		if (vehicleEventService.getById(id) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		List<FileSummary> files = fileService.getSummariesByVehicleEventId(id);
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ENTITY + "_" + id + "_files.zip\"")
+				.body(outputStream -> fileService.writeZip(files, outputStream));
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -175,7 +241,7 @@ public class VehicleEventRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldEventFromDatabase = vehicleEventService.getById(event.getId()).toString();
+				AuditSnapshot oldEventFromDatabase = AuditSnapshot.of(vehicleEventService.getById(event.getId()));
 				VehicleEvent eventFromDatabase = vehicleEventService.save(event);
 
 				if (eventFromDatabase == null) {
@@ -188,7 +254,7 @@ public class VehicleEventRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addVehicleEventLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEventFromDatabase + "\nto:\n" + eventFromDatabase);
+					eventHistoryLogService.addVehicleEventLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEventFromDatabase.diff(eventFromDatabase));
 				}
 			}
 
@@ -217,7 +283,7 @@ public class VehicleEventRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldEventFromDatabase = vehicleEventService.getById(event.getId()).toString();
+		AuditSnapshot oldEventFromDatabase = AuditSnapshot.of(vehicleEventService.getById(event.getId()));
 		VehicleEvent eventFromDatabase = vehicleEventService.save(event);
 
 		if (eventFromDatabase == null) {
@@ -230,7 +296,7 @@ public class VehicleEventRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addVehicleEventLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldEventFromDatabase + "\nto:\n" + eventFromDatabase);
+			eventHistoryLogService.addVehicleEventLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldEventFromDatabase.diff(eventFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -282,7 +348,8 @@ public class VehicleEventRestController {
 					long idLong = (long) ((Integer) idObj);
 					changes.remove("id");
 
-					String oldEventFromDatabase = vehicleEventService.getById(idLong).toString();
+					AuditSnapshot oldEventFromDatabase = AuditSnapshot.of(vehicleEventService.getById(idLong));
+					VehicleEvent originalEvent = vehicleEventService.getOriginalById(idLong);
 					VehicleEvent eventFromDatabase;
 
 					try {
@@ -306,7 +373,7 @@ public class VehicleEventRestController {
 						errorOccurred = true;
 					} else {
 
-						VehicleEvent updatedEventFromDatabase = vehicleEventService.save(eventFromDatabase);
+						VehicleEvent updatedEventFromDatabase = vehicleEventService.save(eventFromDatabase, originalEvent);
 
 						if (updatedEventFromDatabase == null) {
 							restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -318,7 +385,7 @@ public class VehicleEventRestController {
 							restResponse.setHttp_status(HttpStatus.OK);
 							restResponse.setMessage(ENTITY + "patched successfully");
 
-							eventHistoryLogService.addVehicleEventLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEventFromDatabase + "\nto:\n" + updatedEventFromDatabase);
+							eventHistoryLogService.addVehicleEventLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEventFromDatabase.diff(updatedEventFromDatabase));
 						}
 					}
 
@@ -347,7 +414,8 @@ public class VehicleEventRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldEventFromDatabase = eventFromDatabase.toString();
+		AuditSnapshot oldEventFromDatabase = AuditSnapshot.of(eventFromDatabase);
+		VehicleEvent originalEvent = vehicleEventService.getOriginalById(id);
 
 		changes.remove("id");
 
@@ -374,7 +442,7 @@ public class VehicleEventRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		VehicleEvent patchedVehicleEvent = vehicleEventService.save(eventFromDatabase);
+		VehicleEvent patchedVehicleEvent = vehicleEventService.save(eventFromDatabase, originalEvent);
 		restResponse.setBody(patchedVehicleEvent);
 
 		if (patchedVehicleEvent == null) {
@@ -386,7 +454,7 @@ public class VehicleEventRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addVehicleEventLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldEventFromDatabase + "\nto:\n" + patchedVehicleEvent);
+			eventHistoryLogService.addVehicleEventLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldEventFromDatabase.diff(patchedVehicleEvent));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -471,50 +539,14 @@ public class VehicleEventRestController {
 
 
 	private VehicleEvent handlePatchChanges(Long id, Map<String, Object> changes) throws JsonParseException {
-		VehicleEvent entity = vehicleEventService.getById(id);
+		VehicleEvent entityFromDatabase = vehicleEventService.getById(id);
 
-		if (entity != null) {
-			changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime((String) value);
-								} catch (Exception e) {
-									throw new StringIndexOutOfBoundsException(e.getMessage());
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Vehicle.class)) {
-								try {
-									entity.setVehicle(objectMapper.readValue(json, Vehicle.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Vehicle json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			});
+		if (entityFromDatabase == null) {
+			return null;
 		}
 
-		return entity;
+		VehicleEvent entity = new VehicleEvent(entityFromDatabase);
+
+		return patchPlans.get(VehicleEvent.class).apply(entity, changes);
 	}
 }
@@ -5,30 +5,41 @@ import com.example.demo.database.models.Organisation;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.RestResponse;
 import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.FileSummary;
 import com.example.demo.database.models.vehicle.Fleet;
+import com.example.demo.database.models.vehicle.UsageBucket;
 import com.example.demo.database.models.vehicle.Vehicle;
+import com.example.demo.database.models.vehicle.VehicleStatistics;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
+import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.FleetService;
+import com.example.demo.database.services.vehicle.UsageRollupService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.database.services.vehicle.VehicleStatisticsService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
-import com.example.demo.utils.DateUtils;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.PatchPlans;
+import com.example.demo.utils.UsageReportUtils;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JsonParseException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.*;
 
 @RestController
@@ -50,9 +61,21 @@ public class VehicleRestController {
 	@Autowired
 	private final OrganisationService organisationService;
 
+	@Autowired
+	private final FileService fileService;
+
+	@Autowired
+	private final VehicleStatisticsService vehicleStatisticsService;
+
+	@Autowired
+	private final UsageRollupService usageRollupService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private final PatchPlans patchPlans;
+
 
 
 	@PostMapping(value = {"/batch"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -66,10 +89,14 @@ public class VehicleRestController {
 
 		List<RestResponse<Vehicle>> responseList = new ArrayList<>();
 
+		List<Vehicle> validVehicles = new ArrayList<>();
+		List<RestResponse<Vehicle>> validResponses = new ArrayList<>();
+
+		// VALIDATE WHOLE ARRAY FIRST, VALID ONES ARE SAVED TOGETHER IN JDBC BATCHES
 		for (Vehicle vehicle : vehicles) {
 			RestResponse<Vehicle> restResponse = new RestResponse<>();
 			restResponse.setBody(vehicle);
-			
+
 			ValidationResponse response = vehicleService.validate(vehicle, Mapping.POST);
 
 			if (!response.isValid()) {
@@ -78,23 +105,54 @@ public class VehicleRestController {
 
 				errorOccurred = true;
 			} else {
-				Vehicle vehicleFromDatabase = vehicleService.save(vehicle);
+				validVehicles.add(vehicle);
+				validResponses.add(restResponse);
+			}
 
-				if (vehicleFromDatabase == null) {
+			responseList.add(restResponse);
+		}
+
+		List<Vehicle> vehiclesFromDatabase;
+
+		try {
+			vehiclesFromDatabase = vehicleService.saveAll(validVehicles);
+		} catch (Exception e) {
+			// WHOLE BATCH IS ROLLED BACK, SAVED ONE BY ONE BELOW SO ONLY THE FAILING ONES ARE REPORTED (WITH THEIR CAUSE)
+			vehiclesFromDatabase = null;
+		}
+
+		for (int i = 0; i < validResponses.size(); i++) {
+			RestResponse<Vehicle> restResponse = validResponses.get(i);
+			Vehicle vehicleFromDatabase;
+
+			if (vehiclesFromDatabase != null) {
+				vehicleFromDatabase = vehiclesFromDatabase.get(i);
+			} else {
+				try {
+					// ID ASSIGNED IN THE ROLLED BACK BATCH
+					validVehicles.get(i).setId(null);
+					vehicleFromDatabase = vehicleService.save(validVehicles.get(i));
+				} catch (Exception e) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
-					restResponse.setMessage("failed to save " + ENTITY + " in database");
+					restResponse.setMessage("failed to save " + ENTITY + " in database \n" + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
 
 					errorOccurred = true;
-				} else {
-					restResponse.setBody(vehicleFromDatabase);
-					restResponse.setHttp_status(HttpStatus.OK);
-					restResponse.setMessage(ENTITY + " saved successfully");
-
-					eventHistoryLogService.addVehicleLog("create " + ENTITY, ENTITY + " created:\n" + vehicleFromDatabase);
+					continue;
 				}
 			}
 
-			responseList.add(restResponse);
+			if (vehicleFromDatabase == null) {
+				restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
+				restResponse.setMessage("failed to save " + ENTITY + " in database");
+
+				errorOccurred = true;
+			} else {
+				restResponse.setBody(vehicleFromDatabase);
+				restResponse.setHttp_status(HttpStatus.OK);
+				restResponse.setMessage(ENTITY + " saved successfully");
+
+				eventHistoryLogService.addVehicleLog("create " + ENTITY, ENTITY + " created:\n" + vehicleFromDatabase);
+			}
 		}
 
 		if (errorOccurred) {
@@ -144,8 +202,14 @@ public class VehicleRestController {
 
 
 	@GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	public List<Vehicle> getAll() {
-		return vehicleService.getAll();
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null) {
+			return PaginationUtils.stream(objectMapper, vehicleService::streamAll);
+		}
+
+		Pageable pageable = PaginationUtils.getPageable(limit);
+
+		return PaginationUtils.page(objectMapper, vehicleService.getPage(after, pageable), pageable, Vehicle::getId);
 	}
 
 	@GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -159,6 +223,50 @@ public class VehicleRestController {
 		return vehicleFromDatabase;
 	}
 
+	// LATEST ODOMETER AND TOTALS OF ALL VEHICLES, ONE MATERIALIZED ROW PER VEHICLE
+	@GetMapping(value = "/statistics", produces = MediaType.APPLICATION_JSON_VALUE)
+	public List<VehicleStatistics> getAllStatistics() {
+		return vehicleStatisticsService.getAll();
+	}
+
+	@GetMapping(value = "/{id}/statistics", produces = MediaType.APPLICATION_JSON_VALUE)
+	public VehicleStatistics getStatisticsByID(@PathVariable Long id) {
+		if (!vehicleService.existsById(id)) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		return vehicleStatisticsService.getByVehicleId(id);
+	}
+
+	@GetMapping(value = "/{id}/usage", produces = MediaType.APPLICATION_JSON_VALUE)
+	public List<UsageBucket> getUsageByID(@PathVariable Long id, @RequestParam(required = false) String bucket,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+										  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		if (!vehicleService.existsById(id)) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		UsageBucket.Size size = UsageReportUtils.getSize(bucket);
+		LocalDate end = UsageReportUtils.getTo(to);
+
+		return usageRollupService.getByVehicleId(id, size, UsageReportUtils.getFrom(from, end), end);
+	}
+
+	// ALL FILES OF THE VEHICLE AS ONE ZIP ARCHIVE, STREAMED ENTRY BY ENTRY
+	@GetMapping(value = "/{id}/files.zip")
+	public ResponseEntity<StreamingResponseBody> getFilesZipByID(@PathVariable Long id) {
+		if (vehicleService.getById(id) == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
+		}
+
+		List<FileSummary> files = fileService.getSummariesByVehicleId(id);
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + ENTITY + "_" + id + "_files.zip\"")
+				.body(outputStream -> fileService.writeZip(files, outputStream));
+	}
+
 
 
 	@PutMapping(value = {"", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -184,7 +292,7 @@ public class VehicleRestController {
 
 				errorOccurred = true;
 			} else {
-				String oldVehicleFromDatabase = vehicleService.getById(vehicle.getId()).toString();
+				AuditSnapshot oldVehicleFromDatabase = AuditSnapshot.of(vehicleService.getById(vehicle.getId()));
 				Vehicle vehicleFromDatabase = vehicleService.save(vehicle);
 
 				if (vehicleFromDatabase == null) {
@@ -196,7 +304,7 @@ public class VehicleRestController {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " saved successfully");
 
-					eventHistoryLogService.addVehicleLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldVehicleFromDatabase + "\nto:\n" + vehicleFromDatabase);
+					eventHistoryLogService.addVehicleLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicleFromDatabase.diff(vehicleFromDatabase));
 				}
 			}
 			
@@ -225,7 +333,7 @@ public class VehicleRestController {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(restResponse);
 		}
 
-		String oldVehicleFromDatabase = vehicleService.getById(vehicle.getId()).toString();
+		AuditSnapshot oldVehicleFromDatabase = AuditSnapshot.of(vehicleService.getById(vehicle.getId()));
 		Vehicle vehicleFromDatabase = vehicleService.save(vehicle);
 
 		if (vehicleFromDatabase == null) {
@@ -238,7 +346,7 @@ public class VehicleRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " saved successfully");
 
-			eventHistoryLogService.addVehicleLog("update (PUT) " + ENTITY, ENTITY + " updated from:\n" + oldVehicleFromDatabase + "\nto:\n" + vehicleFromDatabase);
+			eventHistoryLogService.addVehicleLog("update (PUT) " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicleFromDatabase.diff(vehicleFromDatabase));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -284,7 +392,7 @@ public class VehicleRestController {
 						long idLong = (long) ((Integer) idObj);
 						changes.remove("id");
 
-						String oldVehicleFromDatabase = vehicleService.getById(idLong).toString();
+						AuditSnapshot oldVehicleFromDatabase = AuditSnapshot.of(vehicleService.getById(idLong));
 
 						Vehicle vehicleFromDatabase;
 
@@ -320,7 +428,7 @@ public class VehicleRestController {
 								restResponse.setHttp_status(HttpStatus.OK);
 								restResponse.setMessage(ENTITY + " patched successfully");
 
-								eventHistoryLogService.addVehicleLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldVehicleFromDatabase + "\nto:\n" + updatedVehicleFromDatabase);
+								eventHistoryLogService.addVehicleLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicleFromDatabase.diff(updatedVehicleFromDatabase));
 							}
 						}
 
@@ -352,7 +460,7 @@ public class VehicleRestController {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with ID: '" + id + "' not found");
 		}
 
-		String oldVehicleFromDatabase = vehicleFromDatabase.toString();
+		AuditSnapshot oldVehicleFromDatabase = AuditSnapshot.of(vehicleFromDatabase);
 
 		changes.remove("id");
 
@@ -389,7 +497,7 @@ public class VehicleRestController {
 			restResponse.setHttp_status(HttpStatus.OK);
 			restResponse.setMessage(ENTITY + " patched successfully");
 
-			eventHistoryLogService.addVehicleLog("update (PATCH) " + ENTITY, ENTITY + " updated from:\n" + oldVehicleFromDatabase + "\nto:\n" + patchedVehicle);
+			eventHistoryLogService.addVehicleLog("update (PATCH) " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicleFromDatabase.diff(patchedVehicle));
 
 			return ResponseEntity.status(HttpStatus.OK).body(restResponse);
 		}
@@ -407,6 +515,8 @@ public class VehicleRestController {
 		boolean errorOccurred = false;
 
 		List<RestResponse<Vehicle>> responseList = new ArrayList<>();
+		List<RestResponse<Vehicle>> validResponses = new ArrayList<>();
+		Set<Long> validIds = new HashSet<>();
 
 		for (Vehicle vehicle : vehicles) {
 			RestResponse<Vehicle> restResponse = new RestResponse<>();
@@ -420,22 +530,32 @@ public class VehicleRestController {
 
 				errorOccurred = true;
 			} else {
-				try {
-					vehicleService.delete(vehicle);
+				validResponses.add(restResponse);
+				validIds.add(vehicle.getId());
+			}
+
+			responseList.add(restResponse);
+		}
+
+		// ALL VALID VEHICLES ARE DELETED TOGETHER WITH SET-BASED STATEMENTS
+		if (!validIds.isEmpty()) {
+			try {
+				vehicleService.deleteAllById(validIds);
 
+				for (RestResponse<Vehicle> restResponse : validResponses) {
 					restResponse.setHttp_status(HttpStatus.OK);
 					restResponse.setMessage(ENTITY + " deleted successfully");
 
-					eventHistoryLogService.addVehicleLog("delete " + ENTITY, ENTITY + " deleted:\n" + vehicle);
-				} catch (Exception e) {
+					eventHistoryLogService.addVehicleLog("delete " + ENTITY, ENTITY + " deleted:\n" + restResponse.getBody());
+				}
+			} catch (Exception e) {
+				for (RestResponse<Vehicle> restResponse : validResponses) {
 					restResponse.setHttp_status(HttpStatus.INTERNAL_SERVER_ERROR);
 					restResponse.setMessage("failed to delete " + ENTITY + " from database " + e.getMessage());
-
-					errorOccurred = true;
 				}
-			}
 
-			responseList.add(restResponse);
+				errorOccurred = true;
+			}
 		}
 
 		if (errorOccurred) {
@@ -481,69 +601,7 @@ public class VehicleRestController {
 		Vehicle entity = vehicleService.getById(id);
 
 		if (entity != null) {
-				changes.forEach((key, value) -> {
-				Field field = ReflectionUtils.findField(entity.getClass(), key);
-
-				if (field != null) {
-					field.setAccessible(true);
-
-					String json = value == null ? null : value.toString();
-
-					if (json == null) {
-						ReflectionUtils.setField(field, entity, null);
-					} else {
-						if (field.getType().equals(String.class)) {
-							ReflectionUtils.setField(field, entity, json);
-						} else {
-
-							if (field.getType().equals(LocalDateTime.class)) {
-								LocalDateTime localDateTime = null;
-
-								try {
-									localDateTime = DateUtils.stringToLocalDateTime(json);
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable(e.getMessage()));
-								}
-
-								ReflectionUtils.setField(field, entity, localDateTime);
-							}
-
-							if (field.getType().equals(Organisation.class)) {
-								try {
-									entity.setOrganisation(objectMapper.readValue(json, Organisation.class));
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Organisation json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Boolean.class)) {
-								try {
-									ReflectionUtils.setField(field, entity, Boolean.valueOf(json));
-								} catch (Exception e) {
-									throw new JsonParseException(new Throwable("Boolean json parsing error: " + e.getMessage()));
-								}
-							}
-
-							if (field.getType().equals(Set.class) && field.getName().equals("fleets")) {
-								try {
-									Set<Fleet> fleetsFromPatch = objectMapper.readValue(json, objectMapper.getTypeFactory().constructCollectionType(HashSet.class, Fleet.class));
-
-									entity.setFleets(fleetsFromPatch);
-
-//									entity.getFleets().clear();
-//
-//									fleetsFromPatch.forEach(fleet -> {
-//										entity.getFleets().add(fleet);
-//									});
-								} catch (JsonProcessingException e) {
-									throw new JsonParseException(new Throwable("Fleets Set: '" + json + "' json parsing error: " + e.getMessage()));
-								}
-							}
-
-						}
-					}
-				}
-			});
+			patchPlans.get(Vehicle.class).apply(entity, changes);
 		}
 
 		return entity;
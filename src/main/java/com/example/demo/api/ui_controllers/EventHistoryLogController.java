@@ -30,6 +30,7 @@ public class EventHistoryLogController {
 		eventHistoryLogList.sort(Comparator.comparing(EventHistoryLog::getId).reversed());
 
 		model.addAttribute("event_history_log_list", eventHistoryLogList);
+		model.addAttribute("dropped_log_count", eventHistoryLogService.getDroppedLogCount());
 
 		return "event_history_log/event_history_log_list_page";
 	}
@@ -5,6 +5,7 @@ import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -80,7 +81,7 @@ public class OrganisationController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Organisation organisation, Model model) {
-		organisation = new FieldReflectionUtils<Organisation>().getEntityWithEmptyStringValuesAsNull(organisation);
+		organisation = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(organisation);
 
 		ValidationResponse response = organisationService.validate(organisation, Mapping.POST);
 
@@ -107,9 +108,9 @@ public class OrganisationController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Organisation organisation, Model model) {
-		String oldOrganisationDatabase = organisationService.getById(organisation.getId()).toString();
+		AuditSnapshot oldOrganisationDatabase = AuditSnapshot.of(organisationService.getById(organisation.getId()));
 
-		organisation = new FieldReflectionUtils<Organisation>().getEntityWithEmptyStringValuesAsNull(organisation);
+		organisation = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(organisation);
 
 		ValidationResponse response = organisationService.validate(organisation, Mapping.PUT);
 
@@ -128,7 +129,7 @@ public class OrganisationController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addOrganisationLog("update " + ENTITY, ENTITY + " updated from:\n" + organisationFromDatabase + "\nto:\n" + oldOrganisationDatabase);
+			eventHistoryLogService.addOrganisationLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldOrganisationDatabase.diff(organisationFromDatabase));
 
 
 			return Constants.REDIRECT + Constants.UI_API + "/organisations/" + organisationFromDatabase.getId();
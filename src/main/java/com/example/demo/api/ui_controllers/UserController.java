@@ -10,6 +10,7 @@ import com.example.demo.database.repositories.RoleRepository;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
 import com.example.demo.database.services.UserService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -295,7 +296,7 @@ public class UserController {
 //			}
 //		}
 
-		user = new FieldReflectionUtils<User>().getEntityWithEmptyStringValuesAsNull(user);
+		user = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(user);
 
 		ValidationResponse response = userService.validate(user, Mapping.POST);
 
@@ -357,9 +358,9 @@ public class UserController {
 //			}
 //		}
 
-		String oldUser = userService.getById(user.getId()).toString();
+		AuditSnapshot oldUser = AuditSnapshot.of(userService.getById(user.getId()));
 
-		user = new FieldReflectionUtils<User>().getEntityWithEmptyStringValuesAsNull(user);
+		user = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(user);
 
 		ValidationResponse response = userService.validate(user, Mapping.PUT);
 
@@ -378,7 +379,7 @@ public class UserController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addUserLog("update " + ENTITY, ENTITY + " update from:\n" + oldUser + "\nto:\n" + userFromDatabase);
+			eventHistoryLogService.addUserLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldUser.diff(userFromDatabase));
 
 			if (request.getHeader("Referer").contains("/profile")) {
 				return Constants.REDIRECT + Constants.UI_API + "/";
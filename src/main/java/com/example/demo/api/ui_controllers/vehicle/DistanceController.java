@@ -7,8 +7,10 @@ import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.DistanceService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.StripedLocks;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -96,71 +98,75 @@ public class DistanceController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Distance distance, Model model) {
-		distance = new FieldReflectionUtils<Distance>().getEntityWithEmptyStringValuesAsNull(distance);
+		distance = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(distance);
 
-		ValidationResponse response = distanceService.validate(distance, Mapping.POST);
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+			ValidationResponse response = distanceService.validate(distance, Mapping.POST);
 
-		if (!response.isValid()) {
-			model.addAttribute(ENTITY, distance);
-			model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE, response.getMessage());
+			if (!response.isValid()) {
+				model.addAttribute(ENTITY, distance);
+				model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE, response.getMessage());
 
-			List<Vehicle> vehicles = vehicleService.getAll();
-			model.addAttribute("vehicles", vehicles);
+				List<Vehicle> vehicles = vehicleService.getAll();
+				model.addAttribute("vehicles", vehicles);
 
-			return "vehicle/distance/new_distance_page";
-		}
+				return "vehicle/distance/new_distance_page";
+			}
 
-		Distance distanceFromDatabase = distanceService.save(distance);
+			Distance distanceFromDatabase = distanceService.save(distance);
 
-		if (distanceFromDatabase == null) {
-			model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Database error");
-			model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE,"failed to save " + ENTITY + " in database");
-			return Constants.ERROR_PAGE;
-		} else {
+			if (distanceFromDatabase == null) {
+				model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Database error");
+				model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE,"failed to save " + ENTITY + " in database");
+				return Constants.ERROR_PAGE;
+			} else {
 
-			eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
+				eventHistoryLogService.addDistanceLog("create " + ENTITY, ENTITY + " created:\n" + distanceFromDatabase);
 
-			return Constants.REDIRECT + Constants.UI_API + "/distances";
+				return Constants.REDIRECT + Constants.UI_API + "/distances";
+			}
 		}
 	}
 
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Distance distance, Model model, HttpServletRequest request) {
-		String oldDistanceFromDatabase = distanceService.getById(distance.getId()).toString();
+		AuditSnapshot oldDistanceFromDatabase = AuditSnapshot.of(distanceService.getById(distance.getId()));
 
-		distance = new FieldReflectionUtils<Distance>().getEntityWithEmptyStringValuesAsNull(distance);
+		distance = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(distance);
 
-		ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+			ValidationResponse response = distanceService.validate(distance, Mapping.PUT);
 
-		if (!response.isValid()) {
-			model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Validation error");
-			model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE, response.getMessage());
+			if (!response.isValid()) {
+				model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Validation error");
+				model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE, response.getMessage());
 
-			String referer = request.getHeader("Referer");
+				String referer = request.getHeader("Referer");
 
-			if (referer.contains("/edit")) {
-				model.addAttribute(ENTITY, distance);
+				if (referer.contains("/edit")) {
+					model.addAttribute(ENTITY, distance);
 
-				List<Vehicle> vehicles = vehicleService.getAll();
-				model.addAttribute("vehicles", vehicles);
+					List<Vehicle> vehicles = vehicleService.getAll();
+					model.addAttribute("vehicles", vehicles);
 
-				return "vehicle/distance/edit_distance_page";
-			}
+					return "vehicle/distance/edit_distance_page";
+				}
 
-			return Constants.ERROR_PAGE;
-		}
-		Distance distanceFromDatabase = distanceService.save(distance);
+				return Constants.ERROR_PAGE;
+			}
+			Distance distanceFromDatabase = distanceService.save(distance);
 
-		if (distanceFromDatabase == null) {
-			model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Database error");
-			model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE,"failed to save " + ENTITY + " in database");
-			return Constants.ERROR_PAGE;
-		} else {
+			if (distanceFromDatabase == null) {
+				model.addAttribute(Constants.ERROR_TITLE_ATTRIBUTE, "Database error");
+				model.addAttribute(Constants.ERROR_MESSAGE_ATTRIBUTE,"failed to save " + ENTITY + " in database");
+				return Constants.ERROR_PAGE;
+			} else {
 
-			eventHistoryLogService.addDistanceLog("update " + ENTITY, ENTITY + " updated from:\n" + oldDistanceFromDatabase + "\nto:\n" + distanceFromDatabase);
+				eventHistoryLogService.addDistanceLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldDistanceFromDatabase.diff(distanceFromDatabase));
 
-			return Constants.REDIRECT + Constants.UI_API + "/distances/" + distanceFromDatabase.getId();
+				return Constants.REDIRECT + Constants.UI_API + "/distances/" + distanceFromDatabase.getId();
+			}
 		}
 	}
 
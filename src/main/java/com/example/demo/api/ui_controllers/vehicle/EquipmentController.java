@@ -9,6 +9,7 @@ import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.EquipmentService;
 import com.example.demo.database.services.vehicle.EquipmentTypeService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -103,7 +104,7 @@ public class EquipmentController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Equipment equipment, Model model) {
-		equipment = new FieldReflectionUtils<Equipment>().getEntityWithEmptyStringValuesAsNull(equipment);
+		equipment = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(equipment);
 
 		ValidationResponse response = equipmentService.validate(equipment, Mapping.POST);
 
@@ -130,9 +131,9 @@ public class EquipmentController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Equipment equipment, Model model) {
-		String oldEquipmentFromDatabase = equipmentService.getById(equipment.getId()).toString();
+		AuditSnapshot oldEquipmentFromDatabase = AuditSnapshot.of(equipmentService.getById(equipment.getId()));
 
-		equipment = new FieldReflectionUtils<Equipment>().getEntityWithEmptyStringValuesAsNull(equipment);
+		equipment = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(equipment);
 
 		ValidationResponse response = equipmentService.validate(equipment, Mapping.PUT);
 
@@ -150,7 +151,7 @@ public class EquipmentController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addEquipmentLog("update " + ENTITY, ENTITY + " updated from:\n" + oldEquipmentFromDatabase + "\nto:\n" + equipmentFromDatabase);
+			eventHistoryLogService.addEquipmentLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldEquipmentFromDatabase.diff(equipmentFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/equipment/" + equipmentFromDatabase.getId();
 		}
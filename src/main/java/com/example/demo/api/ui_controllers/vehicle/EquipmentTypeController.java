@@ -5,6 +5,7 @@ import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.EquipmentType;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.EquipmentTypeService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -81,7 +82,7 @@ public class EquipmentTypeController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute EquipmentType type, Model model) {
-		type = new FieldReflectionUtils<EquipmentType>().getEntityWithEmptyStringValuesAsNull(type);
+		type = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(type);
 
 		ValidationResponse response = typeService.validate(type, Mapping.POST);
 
@@ -109,9 +110,9 @@ public class EquipmentTypeController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute EquipmentType type, Model model) {
-		String oldTypeFromDatabase = typeService.getById(type.getId()).toString();
+		AuditSnapshot oldTypeFromDatabase = AuditSnapshot.of(typeService.getById(type.getId()));
 
-		type = new FieldReflectionUtils<EquipmentType>().getEntityWithEmptyStringValuesAsNull(type);
+		type = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(type);
 
 		ValidationResponse response = typeService.validate(type, Mapping.PUT);
 
@@ -129,7 +130,7 @@ public class EquipmentTypeController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addEquipmentTypeLog("update " + ENTITY, ENTITY + " updated from:\n" + oldTypeFromDatabase + "\nto:\n" + typeFromDatabase);
+			eventHistoryLogService.addEquipmentTypeLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldTypeFromDatabase.diff(typeFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/equipment_types/" + typeFromDatabase.getId();
 		}
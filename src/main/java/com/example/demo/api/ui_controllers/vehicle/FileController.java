@@ -8,17 +8,16 @@ import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.RefuelService;
 import com.example.demo.database.services.vehicle.VehicleEventService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.storage.FileContent;
+import com.example.demo.storage.HttpContentSender;
+import com.example.demo.storage.ImageDerivativeStore;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
 import org.apache.tomcat.util.http.fileupload.FileUploadException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +25,8 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
@@ -54,8 +55,8 @@ public class FileController {
 
 	@GetMapping({"", "/"})
 	public String getAll(Model model) {
-		List<FileMetaData> fileMetaData = fileService.getAll();
-		model.addAttribute("files", fileMetaData);
+		List<FileSummary> files = fileService.getAllSummaries();
+		model.addAttribute("files", files);
 
 		return "vehicle/files/files_list_page";
 	}
@@ -78,10 +79,8 @@ public class FileController {
 		if (fileByteData != null) {
 			model.addAttribute("fileType", fileByteData.getFile_content_type());
 
-			if (fileByteData.getFile_content_type().contains("image")) {
-				model.addAttribute("isImage", true);
-				model.addAttribute("image", fileService.getImageData(fileByteData.getData()));
-			}
+			// IMAGE ITSELF IS LOADED BY THE BROWSER FROM /{id}/preview
+			model.addAttribute("isImage", fileService.isImage(fileByteData));
 		}
 
 		return "vehicle/files/file_details_page";
@@ -191,17 +190,33 @@ public class FileController {
 
 
 	@GetMapping("/{id}/download")
-	public ResponseEntity<Resource> downloadFile(@PathVariable("id") Long id) {
+	public void downloadFile(@PathVariable("id") Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
 		FileMetaData fileFromDatabase = fileService.getFileMetaDataById(id);
 
-		if (fileFromDatabase.getFile_byte_data() == null) {
+		if (fileFromDatabase == null || fileFromDatabase.getFile_byte_data() == null) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "no data was found");
+		}
+
+		FileContent content;
+
+		try {
+			content = fileService.getContent(fileFromDatabase.getFile_byte_data());
+		} catch (IOException e) {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "no data was found");
 		}
 
-		return ResponseEntity.ok()
-				.contentType(MediaType.parseMediaType(fileFromDatabase.getFile_byte_data().getFile_content_type()))
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileFromDatabase.getFile_byte_data().getFile_name() + "\"")
-				.body(new ByteArrayResource(fileFromDatabase.getFile_byte_data().getData()));
+		HttpContentSender.send(request, response, content, true);
+	}
+
+
+	@GetMapping("/{id}/thumbnail")
+	public void thumbnail(@PathVariable("id") Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		sendImageDerivative(id, ImageDerivativeStore.Variant.THUMBNAIL, request, response);
+	}
+
+	@GetMapping("/{id}/preview")
+	public void preview(@PathVariable("id") Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		sendImageDerivative(id, ImageDerivativeStore.Variant.PREVIEW, request, response);
 	}
 
 
@@ -234,9 +249,9 @@ public class FileController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute FileMetaData fileMetaData, Model model) {
-		String oldFileFromDatabase = fileService.getFileMetaDataById(fileMetaData.getId()).toString();
+		AuditSnapshot oldFileFromDatabase = AuditSnapshot.of(fileService.getFileMetaDataById(fileMetaData.getId()));
 
-		fileMetaData = new FieldReflectionUtils<FileMetaData>().getEntityWithEmptyStringValuesAsNull(fileMetaData);
+		fileMetaData = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(fileMetaData);
 
 		ValidationResponse response = fileService.validate(fileMetaData, Mapping.PUT);
 
@@ -254,7 +269,7 @@ public class FileController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addFileLog("update " + ENTITY, ENTITY + " updated from:\n" + oldFileFromDatabase + "\nto:\n" + fileFromDatabase);
+			eventHistoryLogService.addFileLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldFileFromDatabase.diff(fileFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/files/" + fileFromDatabase.getId();
 		}
@@ -277,4 +292,18 @@ public class FileController {
 
 		return Constants.REDIRECT + Constants.UI_API + "/files";
 	}
+
+
+	private void sendImageDerivative(Long id, ImageDerivativeStore.Variant variant, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		FileMetaData fileFromDatabase = fileService.getFileMetaDataById(id);
+
+		if (fileFromDatabase == null || fileFromDatabase.getFile_byte_data() == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with id: " + id + " not found");
+		}
+
+		FileContent content = fileService.getImageDerivative(fileFromDatabase.getFile_byte_data(), variant)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, ENTITY + " with id: " + id + " has no image " + variant.name().toLowerCase()));
+
+		HttpContentSender.send(request, response, content, false);
+	}
 }
@@ -10,6 +10,7 @@ import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
 import com.example.demo.database.services.vehicle.FleetService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -157,7 +158,7 @@ public class FleetController {
 			return Constants.ERROR_PAGE;
 		}
 
-		String oldFleetFromDatabase = fleetFromDatabase.toString();
+		AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetFromDatabase);
 
 		if (vehiclesWrapper.getVehicles().size() > 0) {
 
@@ -180,9 +181,9 @@ public class FleetController {
 			}
 
 			fleetFromDatabase.setVehicles(vehicles);
-			fleetFromDatabase = fleetService.save(fleetFromDatabase);
+			Fleet savedFleet = fleetService.save(fleetFromDatabase);
 
-			eventHistoryLogService.addFleetLog("add/remove vehicles to/from " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + fleetFromDatabase);
+			eventHistoryLogService.addFleetLog("add/remove vehicles to/from " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(savedFleet));
 		}
 
 		return Constants.REDIRECT + Constants.UI_API + "/fleets";
@@ -191,7 +192,7 @@ public class FleetController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Fleet fleet, Model model) {
-		fleet = new FieldReflectionUtils<Fleet>().getEntityWithEmptyStringValuesAsNull(fleet);
+		fleet = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(fleet);
 
 		ValidationResponse response = fleetService.validate(fleet, Mapping.POST);
 
@@ -218,9 +219,9 @@ public class FleetController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Fleet fleet, Model model) {
-		String oldFleetFromDatabase = fleetService.getById(fleet.getId()).toString();
+		AuditSnapshot oldFleetFromDatabase = AuditSnapshot.of(fleetService.getById(fleet.getId()));
 
-		fleet = new FieldReflectionUtils<Fleet>().getEntityWithEmptyStringValuesAsNull(fleet);
+		fleet = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(fleet);
 
 		ValidationResponse response = fleetService.validate(fleet, Mapping.PUT);
 
@@ -238,7 +239,7 @@ public class FleetController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addFleetLog("update " + ENTITY, ENTITY + " updated from:\n" + oldFleetFromDatabase + "\nto:\n" + fleetFromDatabase);
+			eventHistoryLogService.addFleetLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldFleetFromDatabase.diff(fleetFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/fleets/" + fleetFromDatabase.getId();
 		}
@@ -3,12 +3,14 @@ package com.example.demo.api.ui_controllers.vehicle;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.FileMetaData;
+import com.example.demo.database.models.vehicle.FileSummary;
 import com.example.demo.database.models.vehicle.Refuel;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.RefuelService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -78,7 +80,7 @@ public class RefuelController {
 		model.addAttribute(ENTITY, refuelFromDatabase);
 
 
-		List<FileMetaData> files = fileService.getAllByRefuelId(id);
+		List<FileSummary> files = fileService.getSummariesByRefuelId(id);
 		model.addAttribute("files", files);
 
 		return "vehicle/refuels/refuel_files_list_page";
@@ -123,7 +125,7 @@ public class RefuelController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Refuel refuel, Model model) {
-		refuel = new FieldReflectionUtils<Refuel>().getEntityWithEmptyStringValuesAsNull(refuel);
+		refuel = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(refuel);
 
 		ValidationResponse response = refuelService.validate(refuel, Mapping.POST);
 
@@ -157,9 +159,9 @@ public class RefuelController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Refuel refuel, Model model, HttpServletRequest request) {
-		String oldRefuelFromDatabase = refuelService.getById(refuel.getId()).toString();
+		AuditSnapshot oldRefuelFromDatabase = AuditSnapshot.of(refuelService.getById(refuel.getId()));
 
-		refuel = new FieldReflectionUtils<Refuel>().getEntityWithEmptyStringValuesAsNull(refuel);
+		refuel = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(refuel);
 
 		ValidationResponse response = refuelService.validate(refuel, Mapping.PUT);
 
@@ -192,7 +194,7 @@ public class RefuelController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addRefuelLog("update " + ENTITY, ENTITY + " updated from:\n" + oldRefuelFromDatabase + "\nto:\n" + refuelFromDatabase);
+			eventHistoryLogService.addRefuelLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldRefuelFromDatabase.diff(refuelFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/refuels/" + refuelFromDatabase.getId();
 		}
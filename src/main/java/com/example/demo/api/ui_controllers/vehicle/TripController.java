@@ -7,6 +7,7 @@ import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.TripService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -93,7 +94,7 @@ public class TripController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Trip trip, Model model) {
-		trip = new FieldReflectionUtils<Trip>().getEntityWithEmptyStringValuesAsNull(trip);
+		trip = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(trip);
 
 		ValidationResponse response = tripService.validate(trip, Mapping.POST);
 
@@ -120,9 +121,9 @@ public class TripController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Trip trip, Model model) {
-		String oldTripFromDatabase = tripService.getById(trip.getId()).toString();
+		AuditSnapshot oldTripFromDatabase = AuditSnapshot.of(tripService.getById(trip.getId()));
 
-		trip = new FieldReflectionUtils<Trip>().getEntityWithEmptyStringValuesAsNull(trip);
+		trip = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(trip);
 
 		ValidationResponse response = tripService.validate(trip, Mapping.PUT);
 
@@ -140,7 +141,7 @@ public class TripController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addTripLog("update " + ENTITY, ENTITY + " updated from:\n" + oldTripFromDatabase + "\nto:\n" + tripFromDatabase);
+			eventHistoryLogService.addTripLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldTripFromDatabase.diff(tripFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/trips/" + tripFromDatabase.getId();
 		}
@@ -8,6 +8,7 @@ import com.example.demo.database.models.vehicle.*;
 import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.OrganisationService;
 import com.example.demo.database.services.vehicle.*;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -55,7 +56,7 @@ public class VehicleController {
 	private final OrganisationService organisationService;
 
 	@Autowired
-	private final DistanceService distanceService;
+	private final VehicleStatisticsService vehicleStatisticsService;
 
 
 	@GetMapping({"", "/"})
@@ -81,15 +82,10 @@ public class VehicleController {
 		model.addAttribute(ENTITY, vehicleFromDatabase);
 
 
-		List<Distance> distances = distanceService.getAllByVehicleId(id);
+		VehicleStatistics statistics = vehicleStatisticsService.getByVehicleId(id);
 
-		int totalKmDriven = 0;
-
-		if (distances.size() > 0) {
-			totalKmDriven = distances.stream().mapToInt(Distance::getKilometres).sum();
-		}
-
-		model.addAttribute("totalKmDriven", totalKmDriven);
+		model.addAttribute("statistics", statistics);
+		model.addAttribute("totalKmDriven", statistics.getTotal_kilometres());
 
 		return "vehicle/vehicle_details_page";
 	}
@@ -162,7 +158,7 @@ public class VehicleController {
 		model.addAttribute(ENTITY, vehicleFromDatabase);
 
 
-		List<FileMetaData> files = fileService.getAllByVehicleId(id);
+		List<FileSummary> files = fileService.getSummariesByVehicleId(id);
 		model.addAttribute("files", files);
 
 		return "vehicle/vehicle_files_list_page";
@@ -261,7 +257,7 @@ public class VehicleController {
 			return Constants.ERROR_PAGE;
 		}
 
-		String oldVehicle = vehicleFromDatabase.toString();
+		AuditSnapshot oldVehicle = AuditSnapshot.of(vehicleFromDatabase);
 
 		if (fleetsWrapper.getFleets().size() > 0) {
 			Set<Fleet> fleets = new HashSet<>();
@@ -274,9 +270,9 @@ public class VehicleController {
 			}
 
 			vehicleFromDatabase.setFleets(fleets);
-			vehicleFromDatabase = vehicleService.save(vehicleFromDatabase);
+			Vehicle savedVehicle = vehicleService.save(vehicleFromDatabase);
 
-			eventHistoryLogService.addVehicleLog("add/remove fleets to/from " + ENTITY, ENTITY + " updated from:\n" + oldVehicle + "\nto:\n" + vehicleFromDatabase);
+			eventHistoryLogService.addVehicleLog("add/remove fleets to/from " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicle.diff(savedVehicle));
 		}
 
 		return Constants.REDIRECT + Constants.UI_API + "/vehicles" + id + "/edit";
@@ -285,7 +281,7 @@ public class VehicleController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute Vehicle vehicle, Model model) {
-		vehicle = new FieldReflectionUtils<Vehicle>().getEntityWithEmptyStringValuesAsNull(vehicle);
+		vehicle = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(vehicle);
 
 		ValidationResponse response = vehicleService.validate(vehicle, Mapping.POST);
 
@@ -312,9 +308,9 @@ public class VehicleController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute Vehicle vehicle, Model model) {
-		String oldVehicleFromDatabase = vehicleService.getById(vehicle.getId()).toString();
+		AuditSnapshot oldVehicleFromDatabase = AuditSnapshot.of(vehicleService.getById(vehicle.getId()));
 
-		vehicle = new FieldReflectionUtils<Vehicle>().getEntityWithEmptyStringValuesAsNull(vehicle);
+		vehicle = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(vehicle);
 
 		ValidationResponse response = vehicleService.validate(vehicle, Mapping.PUT);
 
@@ -332,7 +328,7 @@ public class VehicleController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addVehicleLog("update " + ENTITY, ENTITY + " updated from:\n" + oldVehicleFromDatabase + "\nto:\n" + vehicleFromDatabase);
+			eventHistoryLogService.addVehicleLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldVehicleFromDatabase.diff(vehicleFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/vehicles/" + vehicleFromDatabase.getId();
 		}
@@ -9,6 +9,7 @@ import com.example.demo.database.services.EventHistoryLogService;
 import com.example.demo.database.services.vehicle.FileService;
 import com.example.demo.database.services.vehicle.VehicleEventService;
 import com.example.demo.database.services.vehicle.VehicleService;
+import com.example.demo.utils.AuditSnapshot;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
 import lombok.RequiredArgsConstructor;
@@ -124,7 +125,7 @@ public class VehicleEventController {
 
 	@PostMapping({"", "/"})
 	public String post(@ModelAttribute VehicleEvent event, Model model) {
-		event = new FieldReflectionUtils<VehicleEvent>().getEntityWithEmptyStringValuesAsNull(event);
+		event = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(event);
 
 		ValidationResponse response = vehicleEventService.validate(event, Mapping.POST);
 
@@ -158,9 +159,9 @@ public class VehicleEventController {
 
 	@PostMapping("/update")
 	public String put(@ModelAttribute VehicleEvent event, Model model, HttpServletRequest request) {
-		String oldEventFromDatabase = vehicleEventService.getById(event.getId()).toString();
+		AuditSnapshot oldEventFromDatabase = AuditSnapshot.of(vehicleEventService.getById(event.getId()));
 
-		event = new FieldReflectionUtils<VehicleEvent>().getEntityWithEmptyStringValuesAsNull(event);
+		event = FieldReflectionUtils.getEntityWithEmptyStringValuesAsNull(event);
 
 		ValidationResponse response = vehicleEventService.validate(event, Mapping.PUT);
 
@@ -193,7 +194,7 @@ public class VehicleEventController {
 			return Constants.ERROR_PAGE;
 		} else {
 
-			eventHistoryLogService.addVehicleEventLog("update " + ENTITY, ENTITY + " updated from:\n" + oldEventFromDatabase + "\nto:\n" + eventFromDatabase);
+			eventHistoryLogService.addVehicleEventLog("update " + ENTITY, () -> ENTITY + " updated:\n" + oldEventFromDatabase.diff(eventFromDatabase));
 
 			return Constants.REDIRECT + Constants.UI_API + "/vehicle_events/" + eventFromDatabase.getId();
 		}
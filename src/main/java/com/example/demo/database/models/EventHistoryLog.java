@@ -1,5 +1,6 @@
 package com.example.demo.database.models;
 
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.LocalDateTimeConverter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -17,7 +18,8 @@ import java.time.LocalDateTime;
 public class EventHistoryLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_history_log_id_seq")
+    @SequenceGenerator(name = "event_history_log_id_seq", sequenceName = "event_history_log_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
     private Long id;
 
     @Column
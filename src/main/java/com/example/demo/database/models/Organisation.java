@@ -1,5 +1,6 @@
 package com.example.demo.database.models;
 
+import com.example.demo.utils.BatchUtils;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,7 +15,8 @@ import javax.persistence.*;
 public class Organisation {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "organisation_id_seq")
+	@SequenceGenerator(name = "organisation_id_seq", sequenceName = "organisation_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
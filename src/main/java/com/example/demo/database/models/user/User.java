@@ -1,6 +1,7 @@
 package com.example.demo.database.models.user;
 
 import com.example.demo.database.models.Organisation;
+import com.example.demo.database.models.utils.AuditIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,18 +25,22 @@ public class User {
 
 	@Column
 	@ToString.Exclude
+	@AuditIgnore
 	private String password;
 
 	@Column
 	@ToString.Exclude
+	@AuditIgnore
 	private String first_name;
 
 	@Column
 	@ToString.Exclude
+	@AuditIgnore
 	private String last_name;
 
 	@Column
 	@ToString.Exclude
+	@AuditIgnore
 	private String email;
 
 	@OneToOne
@@ -49,5 +54,6 @@ public class User {
 
 	@Column
 	@ToString.Exclude
+	@AuditIgnore
 	private String password_update_token = null;
 }
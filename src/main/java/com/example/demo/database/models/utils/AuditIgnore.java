@@ -0,0 +1,12 @@
+package com.example.demo.database.models.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// FIELD IS LEFT OUT OF EVENT HISTORY LOG DIFFS (SECRETS, PERSONAL DATA), SEE AuditSnapshot
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AuditIgnore {
+}
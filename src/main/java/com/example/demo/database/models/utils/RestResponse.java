@@ -1,11 +1,14 @@
 package com.example.demo.database.models.utils;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.http.HttpStatus;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 public class RestResponse<T> {
@@ -22,4 +25,8 @@ public class RestResponse<T> {
 
     private Integer http_status_code;
     private String message;
+
+    // ROWS CHANGED BY CASCADING DELETES, PER TABLE
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Integer> affected_rows;
 }
@@ -1,5 +1,6 @@
 package com.example.demo.database.models.vehicle;
 
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.LocalDateTimeConverter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
@@ -16,10 +17,12 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @ToString
+@Table(indexes = @Index(name = "distance_vehicle_id_timestamp_idx", columnList = "vehicle_id, timestamp"))
 public class Distance {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "distance_id_seq")
+	@SequenceGenerator(name = "distance_id_seq", sequenceName = "distance_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
@@ -3,10 +3,10 @@ package com.example.demo.database.models.vehicle;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.ToString;
 
 import javax.persistence.*;
 
+// CONTENT ITSELF IS IN THE BlobStore (OR, NOT MIGRATED YET, IN FileByteDataContent)
 @Entity
 @Data
 @NoArgsConstructor
@@ -23,8 +23,16 @@ public class FileByteData {
 	@Column
 	private String file_content_type;
 
-	@Lob
+	// SHA-256 OF THE CONTENT, KEY IN THE BlobStore
+	@Column(length = 64)
+	private String content_hash;
+
 	@Column
-	@ToString.Exclude
-	private byte[] data;
+	private Long content_size;
+
+
+	// SHARED WITH FileSummary, WHICH HAS THE SAME COLUMN WITHOUT THE ENTITY
+	public static boolean isImage(String fileContentType) {
+		return fileContentType != null && fileContentType.startsWith("image/");
+	}
 }
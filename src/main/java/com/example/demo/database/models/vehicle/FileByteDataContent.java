@@ -0,0 +1,26 @@
+package com.example.demo.database.models.vehicle;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.*;
+
+// LEGACY data COLUMN OF file_byte_data (FILES UPLOADED BEFORE THE BlobStore), MAPPED SEPARATELY SO LOADING FileByteData NEVER READS IT.
+// ONLY LOADED EXPLICITLY: CONTENT OF NOT YET MIGRATED FILES AND THE --migrate-file-blobs COMMAND
+@Entity
+@Table(name = "file_byte_data")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileByteDataContent {
+
+	@Id
+	private Long id;
+
+	@Lob
+	@Column
+	@ToString.Exclude
+	private byte[] data;
+}
@@ -15,8 +15,19 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@NamedEntityGraph(
+		name = FileMetaData.GRAPH_LISTING,
+		attributeNodes = {
+				@NamedAttributeNode("file_byte_data"),
+				@NamedAttributeNode("vehicle"),
+				@NamedAttributeNode("refuel"),
+				@NamedAttributeNode("vehicle_event")
+		})
 public class FileMetaData {
 
+	// FETCH PLAN FOR LISTS OF FILES: ALL TO-ONE ASSOCIATIONS JOINED IN THE SAME SELECT INSTEAD OF ONE SELECT PER ROW
+	public final static String GRAPH_LISTING = "FileMetaData.listing";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
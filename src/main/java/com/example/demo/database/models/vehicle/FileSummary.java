@@ -0,0 +1,46 @@
+package com.example.demo.database.models.vehicle;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+// READ ONLY ROW OF FILE LISTINGS: FileMetaData + FileByteData COLUMNS AND RELATED IDS, SELECTED IN ONE QUERY WITHOUT LOADING ANY ENTITY
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileSummary {
+
+	private Long id;
+
+	private String description;
+
+	@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+	private LocalDateTime timestamp;
+
+	private Long file_byte_data_id;
+
+	private String file_name;
+
+	private String file_content_type;
+
+	private Long content_size;
+
+	private String content_hash;
+
+	private Long vehicle_id;
+
+	private Long refuel_id;
+
+	private Long vehicle_event_id;
+
+
+	// FOR THE FILE LIST PAGE, NOT PART OF THE JSON SUMMARY
+	@JsonIgnore
+	public boolean isImage() {
+		return FileByteData.isImage(file_content_type);
+	}
+}
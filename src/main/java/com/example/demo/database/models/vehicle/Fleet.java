@@ -4,6 +4,7 @@ import com.example.demo.database.models.Organisation;
 import com.fasterxml.jackson.annotation.*;
 import lombok.*;
 import org.apache.commons.lang3.builder.HashCodeExclude;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.*;
@@ -13,8 +14,17 @@ import java.util.*;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@NamedEntityGraph(
+		name = Fleet.GRAPH_WITH_VEHICLES,
+		attributeNodes = {
+				@NamedAttributeNode("organisation"),
+				@NamedAttributeNode("vehicles")
+		})
 public class Fleet {
 
+	// FETCH PLAN FOR SINGLE FLEET ENDPOINTS: FLEET + ITS VEHICLES IN ONE SELECT, VEHICLE FLEETS STAY LAZY
+	public final static String GRAPH_WITH_VEHICLES = "Fleet.withVehicles";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
@@ -26,7 +36,8 @@ public class Fleet {
 	@ToString.Exclude
 	@EqualsAndHashCode.Exclude
 	@JsonIgnoreProperties("fleets")
-	@ManyToMany(mappedBy = "fleets", fetch = FetchType.EAGER)
+	@ManyToMany(mappedBy = "fleets", fetch = FetchType.LAZY)
+	@BatchSize(size = 100)
 	private Set<Vehicle> vehicles = new HashSet<>();
 
 
@@ -0,0 +1,41 @@
+package com.example.demo.database.models.vehicle;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// RESULT OF AN ODOMETER TELEMETRY BATCH, REJECTED ROWS ARE REFERENCED BY THEIR LINE NUMBER (FROM 1)
+@Data
+@NoArgsConstructor
+public class OdometerIngestReport {
+
+	private int received;
+
+	private int inserted;
+
+	// SAME VEHICLE, TIMESTAMP AND KILOMETRES AS AN EXISTING OR EARLIER READING, SKIPPED WITHOUT AN ERROR
+	private int duplicates;
+
+	private List<RejectedReading> rejected = new ArrayList<>();
+
+
+	public void reject(int line, OdometerReading reading, String message) {
+		rejected.add(new RejectedReading(line, reading, message));
+	}
+
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class RejectedReading {
+
+		private int line;
+
+		private OdometerReading reading;
+
+		private String message;
+	}
+}
@@ -0,0 +1,23 @@
+package com.example.demo.database.models.vehicle;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// ONE LINE OF AN ODOMETER TELEMETRY BATCH (POST /distances/ingest), SAVED AS A Distance WHEN ACCEPTED
+@Data
+@NoArgsConstructor
+public class OdometerReading {
+
+	private Long vehicle_id;
+
+	private LocalDateTime timestamp;
+
+	private Integer kilometres;
+
+	// LINE OF THE BATCH, FOR THE REPORT
+	@JsonIgnore
+	private int line;
+}
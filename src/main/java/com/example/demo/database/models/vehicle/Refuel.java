@@ -1,6 +1,7 @@
 package com.example.demo.database.models.vehicle;
 
 import com.example.demo.utils.LocalDateTimeConverter;
+import com.example.demo.utils.BatchUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -9,13 +10,15 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "refuel_vehicle_id_timestamp_idx", columnList = "vehicle_id, timestamp"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Refuel {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refuel_id_seq")
+	@SequenceGenerator(name = "refuel_id_seq", sequenceName = "refuel_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
@@ -62,4 +65,17 @@ public class Refuel {
 	public String getShort_description() {
 		return "id:" + id + ", location: " + location + ", fuel name: " + fuel_name + ", refuel amount: " + refuel_amount;
 	}
+
+
+	public Refuel(Refuel refuel) {
+		this.setId(refuel.getId());
+		this.setLocation(refuel.getLocation());
+		this.setFuel_name(refuel.getFuel_name());
+		this.setRefuel_amount(refuel.getRefuel_amount());
+		this.setPrice(refuel.getPrice());
+		this.setVehicle(refuel.getVehicle());
+		this.setDescription(refuel.getDescription());
+		this.setTimestamp(refuel.getTimestamp());
+		this.setFile(refuel.getFile());
+	}
 }
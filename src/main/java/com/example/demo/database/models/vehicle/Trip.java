@@ -1,6 +1,7 @@
 package com.example.demo.database.models.vehicle;
 
 import com.example.demo.utils.LocalDateTimeConverter;
+import com.example.demo.utils.BatchUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,13 +13,15 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "trip_vehicle_id_timestamp_idx", columnList = "vehicle_id, timestamp"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Trip {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trip_id_seq")
+	@SequenceGenerator(name = "trip_id_seq", sequenceName = "trip_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
@@ -49,4 +52,15 @@ public class Trip {
 	@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
 	@Convert(converter = LocalDateTimeConverter.class)
 	private LocalDateTime timestamp = LocalDateTime.now();
+
+
+	public Trip(Trip trip) {
+		this.setId(trip.getId());
+		this.setOrigin(trip.getOrigin());
+		this.setDestination(trip.getDestination());
+		this.setKilometres_driven(trip.getKilometres_driven());
+		this.setVehicle(trip.getVehicle());
+		this.setDescription(trip.getDescription());
+		this.setTimestamp(trip.getTimestamp());
+	}
 }
@@ -0,0 +1,35 @@
+package com.example.demo.database.models.vehicle;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// ONE DAY / WEEK / MONTH OF A USAGE REPORT (/usage), SUMMED FROM UsageRollup ROWS
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageBucket {
+
+	// FIRST DAY OF THE BUCKET, WEEKS START ON MONDAY
+	private LocalDate start;
+
+	private long distance_count;
+
+	// ODOMETER DIFFERENCE, FROM THE LAST READING BEFORE EACH DAY (WITHIN THE QUERIED RANGE) TO THE LAST READING OF THE DAY
+	private long odometer_kilometres;
+
+	private long trip_count;
+
+	private long trip_kilometres;
+
+	private long refuel_count;
+
+	private double fuel_amount;
+
+	private double refuel_cost;
+
+
+	public enum Size { DAY, WEEK, MONTH }
+}
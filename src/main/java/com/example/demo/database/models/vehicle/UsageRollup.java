@@ -0,0 +1,59 @@
+package com.example.demo.database.models.vehicle;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// DISTANCES, TRIPS AND REFUELS OF ONE VEHICLE ON ONE DAY, MAINTAINED BY UsageRollupService (WEEKS, MONTHS, FLEETS AND ORGANISATIONS ARE SUMS OF THESE ROWS)
+@Entity
+@Table
+@IdClass(UsageRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class UsageRollup {
+
+	@Id
+	private Long vehicle_id;
+
+	@Id
+	private LocalDate day;
+
+	@Column
+	private long distance_count;
+
+	@Column
+	private Integer odometer_min;
+
+	@Column
+	private Integer odometer_max;
+
+	@Column
+	private long trip_count;
+
+	@Column
+	private long trip_kilometres;
+
+	@Column
+	private long refuel_count;
+
+	@Column
+	private double fuel_amount;
+
+	@Column
+	private double refuel_cost;
+
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Key implements Serializable {
+
+		private Long vehicle_id;
+
+		private LocalDate day;
+	}
+}
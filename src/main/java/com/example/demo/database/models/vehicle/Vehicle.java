@@ -2,9 +2,11 @@ package com.example.demo.database.models.vehicle;
 
 import com.example.demo.database.models.Organisation;
 import com.example.demo.utils.LocalDateTimeConverter;
+import com.example.demo.utils.BatchUtils;
 import com.fasterxml.jackson.annotation.*;
 import lombok.*;
 import org.apache.commons.lang3.builder.HashCodeExclude;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.*;
@@ -16,10 +18,21 @@ import java.util.*;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@NamedEntityGraph(
+		name = Vehicle.GRAPH_WITH_FLEETS,
+		attributeNodes = {
+				@NamedAttributeNode("organisation"),
+				@NamedAttributeNode(value = "fleets", subgraph = "fleets")
+		},
+		subgraphs = @NamedSubgraph(name = "fleets", attributeNodes = @NamedAttributeNode("organisation")))
 public class Vehicle {
 
+	// FETCH PLAN FOR SINGLE VEHICLE ENDPOINTS: VEHICLE + ITS FLEETS IN ONE SELECT, FLEET VEHICLES STAY LAZY
+	public final static String GRAPH_WITH_FLEETS = "Vehicle.withFleets";
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_id_seq")
+	@SequenceGenerator(name = "vehicle_id_seq", sequenceName = "vehicle_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
@@ -28,7 +41,8 @@ public class Vehicle {
 
 	@ToString.Exclude
 	@EqualsAndHashCode.Exclude
-	@ManyToMany(fetch = FetchType.EAGER)
+	@ManyToMany(fetch = FetchType.LAZY)
+	@BatchSize(size = 100)
 	@JsonIgnoreProperties("vehicles")
 	@JoinTable(
 			name = "vehicle_fleets",
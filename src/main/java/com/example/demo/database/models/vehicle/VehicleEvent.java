@@ -1,6 +1,7 @@
 package com.example.demo.database.models.vehicle;
 
 import com.example.demo.utils.LocalDateTimeConverter;
+import com.example.demo.utils.BatchUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
@@ -11,13 +12,15 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
+@Table(indexes = @Index(name = "vehicle_event_vehicle_id_timestamp_idx", columnList = "vehicle_id, timestamp"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class VehicleEvent {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_event_id_seq")
+	@SequenceGenerator(name = "vehicle_event_id_seq", sequenceName = "vehicle_event_id_seq", allocationSize = BatchUtils.JDBC_BATCH_SIZE)
 	private Long id;
 
 	@Column
@@ -70,4 +73,14 @@ public class VehicleEvent {
 	@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
 	@Convert(converter = LocalDateTimeConverter.class)
 	private LocalDateTime timestamp = LocalDateTime.now();
+
+
+	public VehicleEvent(VehicleEvent event) {
+		this.setId(event.getId());
+		this.setName(event.getName());
+		this.setVehicle(event.getVehicle());
+		this.setDescription(event.getDescription());
+		this.setFiles(new HashSet<>(event.getFiles()));
+		this.setTimestamp(event.getTimestamp());
+	}
 }
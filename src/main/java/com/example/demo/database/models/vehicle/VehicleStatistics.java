@@ -0,0 +1,64 @@
+package com.example.demo.database.models.vehicle;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// MATERIALIZED AGGREGATES OF ONE VEHICLE, MAINTAINED BY VehicleStatisticsService ON EVERY DISTANCE / TRIP / REFUEL / VEHICLE EVENT WRITE
+@Entity
+@Table
+@Data
+@NoArgsConstructor
+public class VehicleStatistics {
+
+	@Id
+	private Long vehicle_id;
+
+	// KILOMETRES OF THE NEWEST DISTANCE
+	@Column
+	private Integer latest_odometer;
+
+	@Column
+	@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+	private LocalDateTime latest_odometer_timestamp;
+
+	@Column
+	private long distance_count;
+
+	// SUM OF DISTANCE KILOMETRES
+	@Column
+	private long total_kilometres;
+
+	@Column
+	private long trip_count;
+
+	@Column
+	private long trip_kilometres;
+
+	@Column
+	private long refuel_count;
+
+	@Column
+	private double total_fuel;
+
+	@Column
+	private double total_refuel_cost;
+
+	@Column
+	private long vehicle_event_count;
+
+	@Column
+	@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+	private LocalDateTime last_vehicle_event_timestamp;
+
+	@Column
+	private LocalDateTime updated_at;
+
+
+	public VehicleStatistics(Long vehicleId) {
+		this.vehicle_id = vehicleId;
+	}
+}
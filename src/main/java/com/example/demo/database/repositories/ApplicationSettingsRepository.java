@@ -3,10 +3,28 @@ package com.example.demo.database.repositories;
 import com.example.demo.database.models.ApplicationSettings;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.transaction.Transactional;
+import java.util.Optional;
+
 @Repository
 @Qualifier("application_settings")
 public interface ApplicationSettingsRepository extends JpaRepository<ApplicationSettings, Long> {
 
+    // OLDEST ROW WINS IF A DATABASE ALREADY HAS DUPLICATES
+    Optional<ApplicationSettings> findFirstByOrderByIdAsc();
+
+    // FIXED ID + ON CONFLICT, SO INSTANCES / THREADS CREATING THE DEFAULTS AT THE SAME TIME CAN'T INSERT TWO ROWS
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO application_settings (id, user_event_logging, organisation_event_logging, fleet_event_logging, vehicle_event_logging, " +
+            "vehicle_event_event_logging, distance_event_logging, refuel_event_logging, trip_event_logging, equipment_event_logging, " +
+            "equipment_type_event_logging, file_event_logging) " +
+            "VALUES (1, :logging, :logging, :logging, :logging, :logging, :logging, :logging, :logging, :logging, :logging, :logging) " +
+            "ON CONFLICT (id) DO NOTHING", nativeQuery = true)
+    int insertDefaults(@Param("logging") boolean logging);
 }
@@ -1,17 +1,42 @@
 package com.example.demo.database.repositories;
 
 import com.example.demo.database.models.Organisation;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("organisations")
 public interface OrganisationRepository extends JpaRepository<Organisation, Long> {
     @Query("SELECT o FROM Organisation o WHERE o.name = :name")
     Optional<Organisation> findOrganisationByName(@Param("name") String name);
+
+    @Query("SELECT o FROM Organisation o WHERE o.id > :after ORDER BY o.id ASC")
+    List<Organisation> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT o FROM Organisation o ORDER BY o.id ASC")
+    Stream<Organisation> streamAll();
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Organisation o WHERE o.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Organisation o")
+    int deleteAllRows();
 }
@@ -2,14 +2,22 @@ package com.example.demo.database.repositories;
 
 import com.example.demo.database.models.user.User;
 import com.example.demo.utils.Constants;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("users")
@@ -29,4 +37,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
 	@Query("SELECT u FROM User u WHERE u.organisation IS NOT NULL AND u.organisation.id  = :id")
     List<User> findAllByOrganisationId(@Param("id") Long id);
+
+	@Query("SELECT u FROM User u WHERE u.id > :after ORDER BY u.id ASC")
+	List<User> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+	@Query("SELECT u FROM User u ORDER BY u.id ASC")
+	Stream<User> streamAll();
+
+	@Modifying
+	@Query("UPDATE User u SET u.organisation = NULL WHERE u.organisation.id = :id")
+	int detachFromOrganisation(@Param("id") Long id);
+
+	@Modifying
+	@Query("UPDATE User u SET u.organisation = NULL WHERE u.organisation IS NOT NULL")
+	int detachFromAllOrganisations();
 }
@@ -1,12 +1,23 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.Distance;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("distances")
@@ -14,4 +25,29 @@ public interface DistanceRepository extends JpaRepository<Distance, Long> {
 
     @Query("SELECT d FROM Distance d WHERE d.vehicle IS NOT NULL AND d.vehicle.id = :id")
     List<Distance> findAllByVehicleId(Long id);
+
+    boolean existsByVehicleIdAndTimestamp(Long vehicleId, LocalDateTime timestamp);
+
+    // NEIGHBOURS OF A TIMESTAMP, BOTH ANSWERED FROM THE (vehicle_id, timestamp) INDEX, USED WITH A PAGE SIZE OF 1
+    // excludedId IS THE DISTANCE BEING UPDATED (-1 WHEN NONE)
+    @Query("SELECT d FROM Distance d WHERE d.vehicle.id = :vehicleId AND d.timestamp >= :timestamp AND d.id <> :excludedId ORDER BY d.timestamp ASC, d.id DESC")
+    List<Distance> findNewerOrSame(@Param("vehicleId") Long vehicleId, @Param("timestamp") LocalDateTime timestamp, @Param("excludedId") Long excludedId, Pageable pageable);
+
+    @Query("SELECT d FROM Distance d WHERE d.vehicle.id = :vehicleId AND d.timestamp < :timestamp AND d.id <> :excludedId ORDER BY d.timestamp DESC, d.id ASC")
+    List<Distance> findOlder(@Param("vehicleId") Long vehicleId, @Param("timestamp") LocalDateTime timestamp, @Param("excludedId") Long excludedId, Pageable pageable);
+
+    @Query("SELECT d FROM Distance d WHERE d.id > :after ORDER BY d.id ASC")
+    List<Distance> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT d FROM Distance d ORDER BY d.id ASC")
+    Stream<Distance> streamAll();
+
+    @Modifying
+    @Query("UPDATE Distance d SET d.vehicle = NULL WHERE d.vehicle.id IN :ids")
+    int detachFromVehicles(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Distance d SET d.vehicle = NULL WHERE d.vehicle IS NOT NULL")
+    int detachFromAllVehicles();
 }
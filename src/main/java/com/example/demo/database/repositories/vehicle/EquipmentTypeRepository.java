@@ -1,12 +1,39 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.EquipmentType;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 @Qualifier("equipment_types")
 public interface EquipmentTypeRepository extends JpaRepository<EquipmentType, Long> {
 
+    @Query("SELECT t FROM EquipmentType t WHERE t.id > :after ORDER BY t.id ASC")
+    List<EquipmentType> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT t FROM EquipmentType t ORDER BY t.id ASC")
+    Stream<EquipmentType> streamAll();
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM EquipmentType t WHERE t.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM EquipmentType t")
+    int deleteAllRows();
 }
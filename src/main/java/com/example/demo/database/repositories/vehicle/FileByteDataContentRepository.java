@@ -0,0 +1,19 @@
+package com.example.demo.database.repositories.vehicle;
+
+import com.example.demo.database.models.vehicle.FileByteDataContent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@Qualifier("file_byte_data_content")
+public interface FileByteDataContentRepository extends JpaRepository<FileByteDataContent, Long> {
+
+    @Query("SELECT c.id FROM FileByteDataContent c WHERE c.data IS NOT NULL AND c.id > :after ORDER BY c.id ASC")
+    List<Long> findIdsWithContent(@Param("after") Long after, Pageable pageable);
+}
@@ -3,9 +3,21 @@ package com.example.demo.database.repositories.vehicle;
 import com.example.demo.database.models.vehicle.FileByteData;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 @Qualifier("file_byte_data")
 public interface FileByteDataRepository extends JpaRepository<FileByteData, Long> {
+
+    // THE REFERENCED ONES OF THE GIVEN HASHES
+    @Query("SELECT DISTINCT f.content_hash FROM FileByteData f WHERE f.content_hash IN :hashes")
+    List<String> findContentHashesIn(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT DISTINCT f.content_hash FROM FileByteData f WHERE f.content_hash IS NOT NULL")
+    List<String> findAllContentHashes();
 }
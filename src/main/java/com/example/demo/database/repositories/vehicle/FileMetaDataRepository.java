@@ -1,23 +1,81 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.FileMetaData;
+import com.example.demo.database.models.vehicle.FileSummary;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("file_meta_data")
 public interface FileMetaDataRepository extends JpaRepository<FileMetaData, Long> {
 
+    String SUMMARY_SELECT = "SELECT new com.example.demo.database.models.vehicle.FileSummary(" +
+            "f.id, f.description, f.timestamp, b.id, b.file_name, b.file_content_type, b.content_size, b.content_hash, v.id, r.id, e.id) " +
+            "FROM FileMetaData f LEFT JOIN f.file_byte_data b LEFT JOIN f.vehicle v LEFT JOIN f.refuel r LEFT JOIN f.vehicle_event e ";
+
+    @Override
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
+    List<FileMetaData> findAll();
+
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
     @Query("SELECT f FROM FileMetaData f WHERE f.vehicle IS NOT NULL AND f.vehicle.id = :id")
     List<FileMetaData> findAllByVehicleId(Long id);
 
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
     @Query("SELECT f FROM FileMetaData f WHERE f.refuel IS NOT NULL AND f.refuel.id = :id")
     List<FileMetaData> findAllByRefuelId(Long id);
 
-    @Query("SELECT f FROM FileMetaData f WHERE f.refuel IS NOT NULL AND f.vehicle_event.id = :id")
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
+    @Query("SELECT f FROM FileMetaData f WHERE f.vehicle_event IS NOT NULL AND f.vehicle_event.id = :id")
     List<FileMetaData> findAllByVehicleEventId(Long id);
+
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
+    @Query("SELECT f FROM FileMetaData f WHERE f.id > :after ORDER BY f.id ASC")
+    List<FileMetaData> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @EntityGraph(FileMetaData.GRAPH_LISTING)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT f FROM FileMetaData f ORDER BY f.id ASC")
+    Stream<FileMetaData> streamAll();
+
+
+    // LISTINGS WITHOUT ENTITIES, SEE FileSummary
+
+    @Query(SUMMARY_SELECT + "ORDER BY f.id ASC")
+    List<FileSummary> findAllSummaries();
+
+    @Query(SUMMARY_SELECT + "WHERE f.id > :after ORDER BY f.id ASC")
+    List<FileSummary> findSummaryPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE v.id = :id ORDER BY f.id ASC")
+    List<FileSummary> findSummariesByVehicleId(@Param("id") Long id);
+
+    @Query(SUMMARY_SELECT + "WHERE r.id = :id ORDER BY f.id ASC")
+    List<FileSummary> findSummariesByRefuelId(@Param("id") Long id);
+
+    @Query(SUMMARY_SELECT + "WHERE e.id = :id ORDER BY f.id ASC")
+    List<FileSummary> findSummariesByVehicleEventId(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE FileMetaData f SET f.vehicle = NULL WHERE f.vehicle.id IN :ids")
+    int detachFromVehicles(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE FileMetaData f SET f.vehicle = NULL WHERE f.vehicle IS NOT NULL")
+    int detachFromAllVehicles();
 }
@@ -1,18 +1,47 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.Fleet;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("fleets")
 public interface FleetRepository extends JpaRepository<Fleet, Long> {
 
+    @Override
+    @EntityGraph(Fleet.GRAPH_WITH_VEHICLES)
+    Optional<Fleet> findById(Long id);
+
     @Query("SELECT f FROM Fleet f WHERE f.organisation IS NOT NULL AND f.organisation.id = :id")
     List<Fleet> findAllByOrganisationId(@Param("id") Long id);
+
+    @Query("SELECT f FROM Fleet f WHERE f.id > :after ORDER BY f.id ASC")
+    List<Fleet> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT f FROM Fleet f ORDER BY f.id ASC")
+    Stream<Fleet> streamAll();
+
+    @Modifying
+    @Query("UPDATE Fleet f SET f.organisation = NULL WHERE f.organisation.id = :id")
+    int detachFromOrganisation(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Fleet f SET f.organisation = NULL WHERE f.organisation IS NOT NULL")
+    int detachFromAllOrganisations();
 }
@@ -1,12 +1,22 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.Refuel;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("refuels")
@@ -14,4 +24,19 @@ public interface RefuelRepository extends JpaRepository<Refuel, Long> {
 
     @Query("SELECT r FROM Refuel r WHERE r.vehicle IS NOT NULL AND r.vehicle.id = :id")
     List<Refuel> findAllByVehicleId(Long id);
+
+    @Query("SELECT r FROM Refuel r WHERE r.id > :after ORDER BY r.id ASC")
+    List<Refuel> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT r FROM Refuel r ORDER BY r.id ASC")
+    Stream<Refuel> streamAll();
+
+    @Modifying
+    @Query("UPDATE Refuel r SET r.vehicle = NULL WHERE r.vehicle.id IN :ids")
+    int detachFromVehicles(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Refuel r SET r.vehicle = NULL WHERE r.vehicle IS NOT NULL")
+    int detachFromAllVehicles();
 }
@@ -1,12 +1,22 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.Trip;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("trips")
@@ -14,4 +24,19 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
 
     @Query("SELECT t FROM Trip t WHERE t.vehicle IS NOT NULL AND t.vehicle.id = :id")
     List<Trip> findAllByVehicleId(Long id);
+
+    @Query("SELECT t FROM Trip t WHERE t.id > :after ORDER BY t.id ASC")
+    List<Trip> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT t FROM Trip t ORDER BY t.id ASC")
+    Stream<Trip> streamAll();
+
+    @Modifying
+    @Query("UPDATE Trip t SET t.vehicle = NULL WHERE t.vehicle.id IN :ids")
+    int detachFromVehicles(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Trip t SET t.vehicle = NULL WHERE t.vehicle IS NOT NULL")
+    int detachFromAllVehicles();
 }
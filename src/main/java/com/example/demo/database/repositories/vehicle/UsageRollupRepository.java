@@ -0,0 +1,112 @@
+package com.example.demo.database.repositories.vehicle;
+
+import com.example.demo.database.models.vehicle.UsageRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/*  Daily rows are written with single-statement upserts of (possibly negative) deltas, only the odometer min / max of a day
+ *  that lost a reading is recomputed from that day's readings, rebuilds recompute everything from the raw tables.
+ *  Reports sum the daily rows into day / week / month buckets with date_trunc */
+@Repository
+public interface UsageRollupRepository extends JpaRepository<UsageRollup, UsageRollup.Key> {
+
+    String COLUMNS = "(vehicle_id, day, distance_count, odometer_min, odometer_max, trip_count, trip_kilometres, refuel_count, fuel_amount, refuel_cost) ";
+
+    // RAW ROWS GROUPED BY VEHICLE AND DAY, EVERY TABLE IS ALIASED x SO THE SAME FILTER FITS ALL OF THEM
+    String DISTANCE_DAYS = "SELECT x.vehicle_id, CAST(x.timestamp AS date) AS day, COUNT(*) AS distance_count, " +
+            "MIN(x.kilometres) AS odometer_min, MAX(x.kilometres) AS odometer_max, 0 AS trip_count, 0 AS trip_kilometres, " +
+            "0 AS refuel_count, 0.0 AS fuel_amount, 0.0 AS refuel_cost FROM distance x WHERE ";
+
+    String TRIP_DAYS = "SELECT x.vehicle_id, CAST(x.timestamp AS date), 0, NULL, NULL, COUNT(*), COALESCE(SUM(x.kilometres_driven), 0), " +
+            "0, 0.0, 0.0 FROM trip x WHERE ";
+
+    String REFUEL_DAYS = "SELECT x.vehicle_id, CAST(x.timestamp AS date), 0, NULL, NULL, 0, 0, " +
+            "COUNT(*), COALESCE(SUM(x.refuel_amount), 0), COALESCE(SUM(x.price), 0) FROM refuel x WHERE ";
+
+    String GROUP_BY_DAY = "GROUP BY x.vehicle_id, CAST(x.timestamp AS date) ";
+
+    String VEHICLE_RANGE = "x.vehicle_id = :vehicleId AND x.timestamp >= :from AND x.timestamp < :to ";
+
+    String ALL_VEHICLES = "x.vehicle_id IS NOT NULL AND x.timestamp IS NOT NULL ";
+
+    String INSERT_DAYS = "INSERT INTO usage_rollup " + COLUMNS +
+            "SELECT vehicle_id, day, SUM(distance_count), MIN(odometer_min), MAX(odometer_max), SUM(trip_count), SUM(trip_kilometres), " +
+            "SUM(refuel_count), SUM(fuel_amount), SUM(refuel_cost) FROM (";
+
+    String INSERT_DAYS_END = ") days GROUP BY vehicle_id, day " +
+            "ON CONFLICT (vehicle_id, day) DO UPDATE SET distance_count = EXCLUDED.distance_count, odometer_min = EXCLUDED.odometer_min, " +
+            "odometer_max = EXCLUDED.odometer_max, trip_count = EXCLUDED.trip_count, trip_kilometres = EXCLUDED.trip_kilometres, " +
+            "refuel_count = EXCLUDED.refuel_count, fuel_amount = EXCLUDED.fuel_amount, refuel_cost = EXCLUDED.refuel_cost";
+
+    // ODOMETER KILOMETRES OF A DAY: ITS LAST READING MINUS THE LAST READING OF AN EARLIER DAY (ODOMETER NEVER DECREASES,
+    // SO THAT IS THE RUNNING MAX, NULLS OF DAYS WITHOUT READINGS ARE SKIPPED), FIRST DAY OF THE RANGE: MINUS ITS FIRST READING
+    String BUCKETS = "SELECT CAST(date_trunc(:unit, CAST(u.day AS timestamp)) AS date), SUM(u.distance_count), SUM(u.odometer_kilometres), " +
+            "SUM(u.trip_count), SUM(u.trip_kilometres), SUM(u.refuel_count), SUM(u.fuel_amount), SUM(u.refuel_cost) FROM (" +
+            "SELECT r.*, r.odometer_max - COALESCE(MAX(r.odometer_max) OVER (PARTITION BY r.vehicle_id ORDER BY r.day " +
+            "ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), r.odometer_min) AS odometer_kilometres FROM usage_rollup r ";
+
+    String BUCKETS_END = "AND r.day >= :from AND r.day < :to) u GROUP BY 1 ORDER BY 1";
+
+
+    @Modifying
+    @Query(value = "INSERT INTO usage_rollup " + COLUMNS + "VALUES (:vehicleId, :day, :count, :odometerMin, :odometerMax, 0, 0, 0, 0, 0) " +
+            "ON CONFLICT (vehicle_id, day) DO UPDATE SET distance_count = usage_rollup.distance_count + EXCLUDED.distance_count, " +
+            "odometer_min = LEAST(usage_rollup.odometer_min, EXCLUDED.odometer_min), " +
+            "odometer_max = GREATEST(usage_rollup.odometer_max, EXCLUDED.odometer_max)", nativeQuery = true)
+    int addDistances(@Param("vehicleId") Long vehicleId, @Param("day") LocalDate day, @Param("count") long count,
+                     @Param("odometerMin") int odometerMin, @Param("odometerMax") int odometerMax);
+
+    @Modifying
+    @Query(value = "INSERT INTO usage_rollup " + COLUMNS + "VALUES (:vehicleId, :day, 0, NULL, NULL, :count, :kilometres, 0, 0, 0) " +
+            "ON CONFLICT (vehicle_id, day) DO UPDATE SET trip_count = usage_rollup.trip_count + EXCLUDED.trip_count, " +
+            "trip_kilometres = usage_rollup.trip_kilometres + EXCLUDED.trip_kilometres", nativeQuery = true)
+    int addTrips(@Param("vehicleId") Long vehicleId, @Param("day") LocalDate day, @Param("count") long count, @Param("kilometres") long kilometres);
+
+    @Modifying
+    @Query(value = "INSERT INTO usage_rollup " + COLUMNS + "VALUES (:vehicleId, :day, 0, NULL, NULL, 0, 0, :count, :fuel, :cost) " +
+            "ON CONFLICT (vehicle_id, day) DO UPDATE SET refuel_count = usage_rollup.refuel_count + EXCLUDED.refuel_count, " +
+            "fuel_amount = usage_rollup.fuel_amount + EXCLUDED.fuel_amount, " +
+            "refuel_cost = usage_rollup.refuel_cost + EXCLUDED.refuel_cost", nativeQuery = true)
+    int addRefuels(@Param("vehicleId") Long vehicleId, @Param("day") LocalDate day, @Param("count") long count,
+                   @Param("fuel") double fuel, @Param("cost") double cost);
+
+
+    // ODOMETER MIN / MAX CAN'T BE UN-APPLIED: A DAY THAT LOST A READING ([from, to) IS ONE DAY) TAKES ITS DISTANCE COLUMNS
+    // FROM THE REMAINING READINGS OF THE DAY, THE OTHER COLUMNS ARE LEFT AS THEY ARE
+    @Modifying
+    @Query(value = "UPDATE usage_rollup SET (distance_count, odometer_min, odometer_max) = " +
+            "(SELECT COUNT(*), MIN(x.kilometres), MAX(x.kilometres) FROM distance x WHERE " + VEHICLE_RANGE + ") " +
+            "WHERE vehicle_id = :vehicleId AND day = CAST(:from AS date)", nativeQuery = true)
+    int recomputeDistances(@Param("vehicleId") Long vehicleId, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query(value = INSERT_DAYS + DISTANCE_DAYS + ALL_VEHICLES + GROUP_BY_DAY + "UNION ALL " + TRIP_DAYS + ALL_VEHICLES + GROUP_BY_DAY +
+            "UNION ALL " + REFUEL_DAYS + ALL_VEHICLES + GROUP_BY_DAY + INSERT_DAYS_END, nativeQuery = true)
+    int recomputeAll();
+
+    @Modifying
+    @Query("DELETE FROM UsageRollup r WHERE r.vehicle_id IN :ids")
+    int deleteAllByVehicleIdIn(@Param("ids") Collection<Long> vehicleIds);
+
+
+    // ROWS: BUCKET START, distance_count, odometer_kilometres, trip_count, trip_kilometres, refuel_count, fuel_amount, refuel_cost
+    @Query(value = BUCKETS + "WHERE r.vehicle_id = :vehicleId " + BUCKETS_END, nativeQuery = true)
+    List<Object[]> findBucketsByVehicleId(@Param("vehicleId") Long vehicleId, @Param("unit") String unit,
+                                          @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = BUCKETS + "JOIN vehicle_fleets vf ON vf.vehicle_id = r.vehicle_id WHERE vf.fleet_id = :fleetId " + BUCKETS_END, nativeQuery = true)
+    List<Object[]> findBucketsByFleetId(@Param("fleetId") Long fleetId, @Param("unit") String unit,
+                                        @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = BUCKETS + "JOIN vehicle v ON v.id = r.vehicle_id WHERE v.organisation_id = :organisationId " + BUCKETS_END, nativeQuery = true)
+    List<Object[]> findBucketsByOrganisationId(@Param("organisationId") Long organisationId, @Param("unit") String unit,
+                                               @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
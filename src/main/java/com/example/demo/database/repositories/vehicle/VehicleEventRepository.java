@@ -1,12 +1,22 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.VehicleEvent;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("trips")
@@ -14,4 +24,19 @@ public interface VehicleEventRepository extends JpaRepository<VehicleEvent, Long
 
     @Query("SELECT e FROM VehicleEvent e WHERE e.vehicle IS NOT NULL AND e.vehicle.id = :id")
     List<VehicleEvent> findAllByVehicleId(Long id);
+
+    @Query("SELECT e FROM VehicleEvent e WHERE e.id > :after ORDER BY e.id ASC")
+    List<VehicleEvent> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT e FROM VehicleEvent e ORDER BY e.id ASC")
+    Stream<VehicleEvent> streamAll();
+
+    @Modifying
+    @Query("UPDATE VehicleEvent e SET e.vehicle = NULL WHERE e.vehicle.id IN :ids")
+    int detachFromVehicles(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE VehicleEvent e SET e.vehicle = NULL WHERE e.vehicle IS NOT NULL")
+    int detachFromAllVehicles();
 }
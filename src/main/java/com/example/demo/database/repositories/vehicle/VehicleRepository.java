@@ -1,18 +1,33 @@
 package com.example.demo.database.repositories.vehicle;
 
 import com.example.demo.database.models.vehicle.Vehicle;
+import com.example.demo.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Qualifier("vehicles")
 public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
 
+    @Override
+    @EntityGraph(Vehicle.GRAPH_WITH_FLEETS)
+    Optional<Vehicle> findById(Long id);
+
     @Query("SELECT v FROM Vehicle v WHERE v.organisation IS NOT NULL AND v.organisation.id = :id")
     List<Vehicle> findAllByOrganisationId(@Param("id") Long id);
 
@@ -22,4 +37,30 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
 //    @Query("SELECT v FROM Vehicle v WHERE v.fleet IS NOT NULL AND v.fleet.id = :id")
 //    List<Vehicle> findByFleetIdNot(Long id);
 
+    @Query("SELECT v FROM Vehicle v WHERE v.id > :after ORDER BY v.id ASC")
+    List<Vehicle> findPageAfterId(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = PaginationUtils.STREAM_FETCH_SIZE))
+    @Query("SELECT v FROM Vehicle v ORDER BY v.id ASC")
+    Stream<Vehicle> streamAll();
+
+    @Modifying
+    @Query(value = "DELETE FROM vehicle_fleets WHERE vehicle_id IN (:ids)", nativeQuery = true)
+    int deleteFleetLinks(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM vehicle_fleets", nativeQuery = true)
+    int deleteAllFleetLinks();
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Vehicle v WHERE v.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Vehicle v SET v.organisation = NULL WHERE v.organisation.id = :id")
+    int detachFromOrganisation(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Vehicle v SET v.organisation = NULL WHERE v.organisation IS NOT NULL")
+    int detachFromAllOrganisations();
 }
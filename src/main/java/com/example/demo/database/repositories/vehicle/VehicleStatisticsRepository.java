@@ -0,0 +1,123 @@
+package com.example.demo.database.repositories.vehicle;
+
+import com.example.demo.database.models.vehicle.VehicleStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/*  Statistics rows are only written with single-statement upserts, so concurrent writers of the same vehicle add their deltas
+ *  atomically in the database (no read-modify-write in Java). Deltas may be negative (updated / deleted rows), only the
+ *  latest odometer and the last event timestamp are looked up again, as the top-1 row of the (vehicle_id, timestamp) index */
+@Repository
+public interface VehicleStatisticsRepository extends JpaRepository<VehicleStatistics, Long> {
+
+    String UPSERT = "INSERT INTO vehicle_statistics (vehicle_id, latest_odometer, latest_odometer_timestamp, distance_count, total_kilometres, " +
+            "trip_count, trip_kilometres, refuel_count, total_fuel, total_refuel_cost, vehicle_event_count, last_vehicle_event_timestamp, updated_at) ";
+
+    // EVERY SUBQUERY IS ANSWERED FROM THE (vehicle_id, timestamp) INDEX OF ITS TABLE
+    String RECOMPUTE_SELECT = "SELECT v.id, " +
+            "(SELECT d.kilometres FROM distance d WHERE d.vehicle_id = v.id ORDER BY d.timestamp DESC, d.id DESC LIMIT 1), " +
+            "(SELECT MAX(d.timestamp) FROM distance d WHERE d.vehicle_id = v.id), " +
+            "(SELECT COUNT(*) FROM distance d WHERE d.vehicle_id = v.id), " +
+            "(SELECT COALESCE(SUM(d.kilometres), 0) FROM distance d WHERE d.vehicle_id = v.id), " +
+            "(SELECT COUNT(*) FROM trip t WHERE t.vehicle_id = v.id), " +
+            "(SELECT COALESCE(SUM(t.kilometres_driven), 0) FROM trip t WHERE t.vehicle_id = v.id), " +
+            "(SELECT COUNT(*) FROM refuel r WHERE r.vehicle_id = v.id), " +
+            "(SELECT COALESCE(SUM(r.refuel_amount), 0) FROM refuel r WHERE r.vehicle_id = v.id), " +
+            "(SELECT COALESCE(SUM(r.price), 0) FROM refuel r WHERE r.vehicle_id = v.id), " +
+            "(SELECT COUNT(*) FROM vehicle_event e WHERE e.vehicle_id = v.id), " +
+            "(SELECT MAX(e.timestamp) FROM vehicle_event e WHERE e.vehicle_id = v.id), " +
+            "now() FROM vehicle v ";
+
+    String RECOMPUTE_CONFLICT = "ON CONFLICT (vehicle_id) DO UPDATE SET latest_odometer = EXCLUDED.latest_odometer, " +
+            "latest_odometer_timestamp = EXCLUDED.latest_odometer_timestamp, distance_count = EXCLUDED.distance_count, " +
+            "total_kilometres = EXCLUDED.total_kilometres, trip_count = EXCLUDED.trip_count, trip_kilometres = EXCLUDED.trip_kilometres, " +
+            "refuel_count = EXCLUDED.refuel_count, total_fuel = EXCLUDED.total_fuel, total_refuel_cost = EXCLUDED.total_refuel_cost, " +
+            "vehicle_event_count = EXCLUDED.vehicle_event_count, last_vehicle_event_timestamp = EXCLUDED.last_vehicle_event_timestamp, " +
+            "updated_at = EXCLUDED.updated_at";
+
+
+    // WHERE TRUE: WITHOUT A WHERE CLAUSE "FROM vehicle v ON CONFLICT" WOULD BE PARSED AS A JOIN CONDITION
+    @Modifying
+    @Query(value = UPSERT + RECOMPUTE_SELECT + "WHERE TRUE " + RECOMPUTE_CONFLICT, nativeQuery = true)
+    int recomputeAll();
+
+
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, :latestOdometer, :latestTimestamp, :count, :kilometres, 0, 0, 0, 0, 0, 0, NULL, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "latest_odometer = CASE WHEN vehicle_statistics.latest_odometer_timestamp IS NULL " +
+            "OR vehicle_statistics.latest_odometer_timestamp <= EXCLUDED.latest_odometer_timestamp " +
+            "THEN EXCLUDED.latest_odometer ELSE vehicle_statistics.latest_odometer END, " +
+            "latest_odometer_timestamp = GREATEST(vehicle_statistics.latest_odometer_timestamp, EXCLUDED.latest_odometer_timestamp), " +
+            "distance_count = vehicle_statistics.distance_count + EXCLUDED.distance_count, " +
+            "total_kilometres = vehicle_statistics.total_kilometres + EXCLUDED.total_kilometres, " +
+            "updated_at = now()", nativeQuery = true)
+    int addDistances(@Param("vehicleId") Long vehicleId, @Param("count") long count, @Param("kilometres") long kilometres,
+                     @Param("latestOdometer") Integer latestOdometer, @Param("latestTimestamp") LocalDateTime latestTimestamp);
+
+    // WITHOUT A NEW READING (DELETE), A NULL TIMESTAMP CAN'T BE BOUND TO addDistances()
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, NULL, NULL, :count, :kilometres, 0, 0, 0, 0, 0, 0, NULL, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "distance_count = vehicle_statistics.distance_count + EXCLUDED.distance_count, " +
+            "total_kilometres = vehicle_statistics.total_kilometres + EXCLUDED.total_kilometres, " +
+            "updated_at = now()", nativeQuery = true)
+    int addDistanceTotals(@Param("vehicleId") Long vehicleId, @Param("count") long count, @Param("kilometres") long kilometres);
+
+    // NO READING LEFT -> BOTH NULL
+    @Modifying
+    @Query(value = "UPDATE vehicle_statistics s SET (latest_odometer, latest_odometer_timestamp) = " +
+            "(SELECT d.kilometres, d.timestamp FROM distance d WHERE d.vehicle_id = s.vehicle_id ORDER BY d.timestamp DESC, d.id DESC LIMIT 1), " +
+            "updated_at = now() WHERE s.vehicle_id = :vehicleId", nativeQuery = true)
+    int refreshLatestOdometer(@Param("vehicleId") Long vehicleId);
+
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, NULL, NULL, 0, 0, :count, :kilometres, 0, 0, 0, 0, NULL, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "trip_count = vehicle_statistics.trip_count + EXCLUDED.trip_count, " +
+            "trip_kilometres = vehicle_statistics.trip_kilometres + EXCLUDED.trip_kilometres, " +
+            "updated_at = now()", nativeQuery = true)
+    int addTrips(@Param("vehicleId") Long vehicleId, @Param("count") long count, @Param("kilometres") long kilometres);
+
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, NULL, NULL, 0, 0, 0, 0, :count, :fuel, :cost, 0, NULL, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "refuel_count = vehicle_statistics.refuel_count + EXCLUDED.refuel_count, " +
+            "total_fuel = vehicle_statistics.total_fuel + EXCLUDED.total_fuel, " +
+            "total_refuel_cost = vehicle_statistics.total_refuel_cost + EXCLUDED.total_refuel_cost, " +
+            "updated_at = now()", nativeQuery = true)
+    int addRefuels(@Param("vehicleId") Long vehicleId, @Param("count") long count, @Param("fuel") double fuel, @Param("cost") double cost);
+
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, NULL, NULL, 0, 0, 0, 0, 0, 0, 0, :count, :lastTimestamp, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "vehicle_event_count = vehicle_statistics.vehicle_event_count + EXCLUDED.vehicle_event_count, " +
+            "last_vehicle_event_timestamp = GREATEST(vehicle_statistics.last_vehicle_event_timestamp, EXCLUDED.last_vehicle_event_timestamp), " +
+            "updated_at = now()", nativeQuery = true)
+    int addVehicleEvents(@Param("vehicleId") Long vehicleId, @Param("count") long count, @Param("lastTimestamp") LocalDateTime lastTimestamp);
+
+    // ONLY EVENTS WITHOUT TIMESTAMP OR DELETES, A NULL TIMESTAMP CAN'T BE BOUND TO addVehicleEvents()
+    @Modifying
+    @Query(value = UPSERT + "VALUES (:vehicleId, NULL, NULL, 0, 0, 0, 0, 0, 0, 0, :count, NULL, now()) " +
+            "ON CONFLICT (vehicle_id) DO UPDATE SET " +
+            "vehicle_event_count = vehicle_statistics.vehicle_event_count + EXCLUDED.vehicle_event_count, " +
+            "updated_at = now()", nativeQuery = true)
+    int addVehicleEventCount(@Param("vehicleId") Long vehicleId, @Param("count") long count);
+
+    @Modifying
+    @Query(value = "UPDATE vehicle_statistics s SET last_vehicle_event_timestamp = " +
+            "(SELECT MAX(e.timestamp) FROM vehicle_event e WHERE e.vehicle_id = s.vehicle_id), " +
+            "updated_at = now() WHERE s.vehicle_id = :vehicleId", nativeQuery = true)
+    int refreshLastVehicleEvent(@Param("vehicleId") Long vehicleId);
+
+
+    @Modifying
+    @Query("DELETE FROM VehicleStatistics s WHERE s.vehicle_id IN :ids")
+    int deleteAllByVehicleIdIn(@Param("ids") Collection<Long> vehicleIds);
+}
@@ -3,10 +3,22 @@ package com.example.demo.database.services;
 import com.example.demo.database.models.ApplicationSettings;
 import com.example.demo.database.repositories.ApplicationSettingsRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/*  Settings are kept in memory as a snapshot (detached copy of the settings row).
+ *  Event logging reads the snapshot on every log write, the database is only read on first use, on save() (write-through)
+ *  and every application-settings.refresh-interval-ms, so changes saved by other instances are picked up */
+@Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
@@ -15,43 +27,113 @@ public class ApplicationSettingsService {
     private final ApplicationSettingsRepository repository;
     private final boolean USE_LOG = true;
 
+    @Value("${application-settings.refresh-interval-ms:30000}")
+    private long refreshIntervalMs;
+
+    // NEVER MODIFIED, REPLACED AS A WHOLE
+    private volatile ApplicationSettings snapshot;
+
+    private ScheduledExecutorService executor;
+
+
+    @PostConstruct
+    public void start() {
+        if (refreshIntervalMs <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "application-settings-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("failed to refresh application settings: " + e.getMessage());
+            }
+        }, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+
+    // SHARED SNAPSHOT FOR READ ONLY HOT PATHS, DON'T MODIFY IT
+    public ApplicationSettings getSettingsSnapshot() {
+        ApplicationSettings settings = snapshot;
+
+        if (settings == null) {
+            settings = loadSnapshot();
+        }
+
+        return settings;
+    }
+
     public ApplicationSettings getApplicationSettings() {
-        if (repository.findAll().size() <= 0) {
-
-            ApplicationSettings settings = new ApplicationSettings();
-            settings.setUser_event_logging(USE_LOG);
-            settings.setOrganisation_event_logging(USE_LOG);
-            settings.setFleet_event_logging(USE_LOG);
-            settings.setVehicle_event_logging(USE_LOG);
-            settings.setVehicle_event_event_logging(USE_LOG);
-            settings.setDistance_event_logging(USE_LOG);
-            settings.setRefuel_event_logging(USE_LOG);
-            settings.setTrip_event_logging(USE_LOG);
-            settings.setEquipment_event_logging(USE_LOG);
-            settings.setEquipment_type_event_logging(USE_LOG);
-            settings.setFile_event_logging(USE_LOG);
-
-            return repository.save(settings);
+        return copy(getSettingsSnapshot());
+    }
+
+    public synchronized ApplicationSettings save(ApplicationSettings applicationSettings) {
+
+        ApplicationSettings settings = getSettingsRow();
+        copyLoggingSettings(applicationSettings, settings);
+
+        ApplicationSettings savedSettings = repository.saveAndFlush(settings);
+        snapshot = copy(savedSettings);
+
+        return savedSettings;
+    }
+
+    public void refresh() {
+        snapshot = copy(getSettingsRow());
+    }
+
+
+    private synchronized ApplicationSettings loadSnapshot() {
+        if (snapshot == null) {
+            refresh();
+        }
+
+        return snapshot;
+    }
+
+    private ApplicationSettings getSettingsRow() {
+        Optional<ApplicationSettings> settings = repository.findFirstByOrderByIdAsc();
+
+        if (settings.isEmpty()) {
+            repository.insertDefaults(USE_LOG);
+            settings = repository.findFirstByOrderByIdAsc();
         }
 
-        return repository.findAll().get(0);
+        return settings.orElseThrow(() -> new IllegalStateException("application settings could not be created"));
     }
 
-    public ApplicationSettings save(ApplicationSettings applicationSettings) {
+    private static ApplicationSettings copy(ApplicationSettings applicationSettings) {
+        ApplicationSettings settings = new ApplicationSettings();
+        settings.setId(applicationSettings.getId());
+        copyLoggingSettings(applicationSettings, settings);
 
-        ApplicationSettings settings = getApplicationSettings();
-        settings.setUser_event_logging(             applicationSettings.isUser_event_logging());
-        settings.setOrganisation_event_logging(     applicationSettings.isOrganisation_event_logging());
-        settings.setFleet_event_logging(            applicationSettings.isFleet_event_logging());
-        settings.setVehicle_event_logging(          applicationSettings.isVehicle_event_logging());
-        settings.setVehicle_event_event_logging(    applicationSettings.isVehicle_event_event_logging());
-        settings.setDistance_event_logging(         applicationSettings.isDistance_event_logging());
-        settings.setRefuel_event_logging(           applicationSettings.isRefuel_event_logging());
-        settings.setTrip_event_logging(             applicationSettings.isTrip_event_logging());
-        settings.setEquipment_event_logging(        applicationSettings.isEquipment_event_logging());
-        settings.setEquipment_type_event_logging(   applicationSettings.isEquipment_type_event_logging());
-        settings.setFile_event_logging(             applicationSettings.isFile_event_logging());
+        return settings;
+    }
 
-        return repository.save(settings);
+    private static void copyLoggingSettings(ApplicationSettings from, ApplicationSettings to) {
+        to.setUser_event_logging(             from.isUser_event_logging());
+        to.setOrganisation_event_logging(     from.isOrganisation_event_logging());
+        to.setFleet_event_logging(            from.isFleet_event_logging());
+        to.setVehicle_event_logging(          from.isVehicle_event_logging());
+        to.setVehicle_event_event_logging(    from.isVehicle_event_event_logging());
+        to.setDistance_event_logging(         from.isDistance_event_logging());
+        to.setRefuel_event_logging(           from.isRefuel_event_logging());
+        to.setTrip_event_logging(             from.isTrip_event_logging());
+        to.setEquipment_event_logging(        from.isEquipment_event_logging());
+        to.setEquipment_type_event_logging(   from.isEquipment_type_event_logging());
+        to.setFile_event_logging(             from.isFile_event_logging());
     }
 }
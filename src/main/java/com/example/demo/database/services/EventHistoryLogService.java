@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
@@ -19,6 +20,7 @@ public class EventHistoryLogService {
 
 	private final ApplicationSettingsService applicationSettingsService;
 	private final UserService userService;
+	private final EventHistoryLogWriter eventHistoryLogWriter;
 
 
 	public List<EventHistoryLog> getAll() {
@@ -43,6 +45,11 @@ public class EventHistoryLogService {
 		return repository.save(eventHistoryLog);
 	}
 
+	// LOGS THAT NEVER REACHED THE DATABASE SINCE STARTUP (QUEUE FULL OR SAVING FAILED)
+	public long getDroppedLogCount() {
+		return eventHistoryLogWriter.getDroppedLogCount();
+	}
+
 	public void delete(EventHistoryLog eventHistoryLog) {
 		if (eventHistoryLog == null || eventHistoryLog.getId() == null) {
 			return;
@@ -56,179 +63,180 @@ public class EventHistoryLogService {
 		return userService.getCurrentUser();
 	}
 
+	// DESCRIPTION SUPPLIERS ARE ONLY CALLED WHEN LOGGING IS ENABLED FOR THE ENTITY, SO DIFFS ARE NOT BUILT FOR NOTHING
+	private void addLog(String action, String description) {
+		User currentUser = getCurrentUser();
+
+		EventHistoryLog log = new EventHistoryLog();
+		log.setWho_did(currentUser == null ? "NULL" : currentUser.toString());
+		log.setAction(action);
+		log.setDescription(description);
+
+		eventHistoryLogWriter.write(log);
+	}
+
 
 	public void addUserLog(String action, String description) {
-		if (isLoggingEnabledForUsers()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addUserLog(action, () -> description);
+	}
 
-			save(log);
+	public void addUserLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForUsers()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForUsers() {
-		return applicationSettingsService.getApplicationSettings().isUser_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isUser_event_logging();
 	}
 
 
 	public void addOrganisationLog(String action, String description) {
-		if (isLoggingEnabledForOrganisations()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addOrganisationLog(action, () -> description);
+	}
 
-			save(log);
+	public void addOrganisationLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForOrganisations()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForOrganisations() {
-		return applicationSettingsService.getApplicationSettings().isOrganisation_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isOrganisation_event_logging();
 	}
 
 
 	public void addFleetLog(String action, String description) {
-		if (isLoggingEnabledForFleets()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addFleetLog(action, () -> description);
+	}
 
-			save(log);
+	public void addFleetLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForFleets()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForFleets() {
-		return applicationSettingsService.getApplicationSettings().isFleet_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isFleet_event_logging();
 	}
 
 
 	public void addVehicleLog(String action, String description) {
-		if (isLoggingEnabledForVehicles()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addVehicleLog(action, () -> description);
+	}
 
-			save(log);
+	public void addVehicleLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForVehicles()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForVehicles() {
-		return applicationSettingsService.getApplicationSettings().isVehicle_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isVehicle_event_logging();
 	}
 
 
 	public void addVehicleEventLog(String action, String description) {
-		if (isLoggingEnabledForVehicleEvents()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addVehicleEventLog(action, () -> description);
+	}
 
-			save(log);
+	public void addVehicleEventLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForVehicleEvents()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForVehicleEvents() {
-		return applicationSettingsService.getApplicationSettings().isVehicle_event_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isVehicle_event_event_logging();
 	}
 
 
 	public void addDistanceLog(String action, String description) {
-		if (isLoggingEnabledForDistances()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addDistanceLog(action, () -> description);
+	}
 
-			save(log);
+	public void addDistanceLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForDistances()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForDistances() {
-		return applicationSettingsService.getApplicationSettings().isDistance_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isDistance_event_logging();
 	}
 
 
 	public void addRefuelLog(String action, String description) {
-		if (isLoggingEnabledForRefuels()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addRefuelLog(action, () -> description);
+	}
 
-			save(log);
+	public void addRefuelLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForRefuels()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForRefuels() {
-		return applicationSettingsService.getApplicationSettings().isRefuel_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isRefuel_event_logging();
 	}
 
 
 	public void addTripLog(String action, String description) {
-		if (isLoggingEnabledForTrips()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addTripLog(action, () -> description);
+	}
 
-			save(log);
+	public void addTripLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForTrips()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForTrips() {
-		return applicationSettingsService.getApplicationSettings().isTrip_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isTrip_event_logging();
 	}
 
 
 	public void addEquipmentLog(String action, String description) {
-		if (isLoggingEnabledForEquipment()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addEquipmentLog(action, () -> description);
+	}
 
-			save(log);
+	public void addEquipmentLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForEquipment()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForEquipment() {
-		return applicationSettingsService.getApplicationSettings().isEquipment_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isEquipment_event_logging();
 	}
 
 
 	public void addEquipmentTypeLog(String action, String description) {
-		if (isLoggingEnabledForEquipmentTypes()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addEquipmentTypeLog(action, () -> description);
+	}
 
-			save(log);
+	public void addEquipmentTypeLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForEquipmentTypes()) {
+			addLog(action, description.get());
 		}
 	}
 
 	public boolean isLoggingEnabledForEquipmentTypes() {
-		return applicationSettingsService.getApplicationSettings().isEquipment_type_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isEquipment_type_event_logging();
 	}
 
 
 	public void addFileLog(String action, String description) {
-		if (isLoggingEnabledForFiles()) {
-			EventHistoryLog log = new EventHistoryLog();
-			log.setWho_did(getCurrentUser() == null ? "NULL" : getCurrentUser().toString());
-			log.setAction(action);
-			log.setDescription(description);
+		addFileLog(action, () -> description);
+	}
 
-			save(log);
+	public void addFileLog(String action, Supplier<String> description) {
+		if (isLoggingEnabledForFiles()) {
+			addLog(action, description.get());
 		}
 	}
 
 	private boolean isLoggingEnabledForFiles() {
-		return applicationSettingsService.getApplicationSettings().isFile_event_logging();
+		return applicationSettingsService.getSettingsSnapshot().isFile_event_logging();
 	}
 }
@@ -0,0 +1,198 @@
+package com.example.demo.database.services;
+
+import com.example.demo.database.models.EventHistoryLog;
+import com.example.demo.database.repositories.EventHistoryLogRepository;
+import com.example.demo.utils.BatchUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*  Group-commit writer of event history logs.
+ *  Request threads only enqueue, a single background thread saves the queued logs in JDBC batches
+ *  every event-history-log.flush-interval-ms (or as soon as a full batch is waiting).
+ *  When the queue is full the overflow policy decides: CALLER_RUNS saves the log on the request thread (backpressure),
+ *  DROP drops it. A batch that fails to save is retried with exponential backoff (the queue keeps filling up meanwhile,
+ *  so the overflow policy bounds memory), after event-history-log.max-retries it is dropped.
+ *  Dropped logs are counted (getDroppedLogCount, shown on the event history log page).
+ *  Logs still in the queue are saved on graceful shutdown */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventHistoryLogWriter {
+
+	public enum OverflowPolicy { CALLER_RUNS, DROP }
+
+	private final EventHistoryLogRepository repository;
+
+	@Value("${event-history-log.flush-interval-ms:1000}")
+	private long flushIntervalMs;
+
+	@Value("${event-history-log.queue-capacity:10000}")
+	private int queueCapacity;
+
+	@Value("${event-history-log.overflow-policy:CALLER_RUNS}")
+	private OverflowPolicy overflowPolicy;
+
+	@Value("${event-history-log.max-retries:5}")
+	private int maxRetries;
+
+	private final static int MAX_BACKOFF_SHIFT = 6;
+
+
+	private final Queue<EventHistoryLog> queue = new ConcurrentLinkedQueue<>();
+
+	// ConcurrentLinkedQueue.size() IS O(n), BOUND IS KEPT WITH A SEPARATE COUNTER
+	private final AtomicInteger queueSize = new AtomicInteger();
+
+	// QUEUE FULL (DROP POLICY) OR SAVE FAILED maxRetries TIMES
+	private final AtomicLong droppedLogs = new AtomicLong();
+
+	// ONLY TOUCHED IN flush(), WHICH IS SYNCHRONIZED
+	private List<EventHistoryLog> failedBatch;
+	private int failedAttempts;
+	private long retryAt;
+
+	private ScheduledExecutorService executor;
+
+
+	@PostConstruct
+	public void start() {
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "event-history-log-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		executor.scheduleWithFixedDelay(() -> flush(false), flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// DRAIN WHAT IS LEFT (LAST ATTEMPT FOR A FAILED BATCH TOO), REPOSITORY IS STILL AVAILABLE BECAUSE THIS BEAN DEPENDS ON IT
+		flush(true);
+
+		if (failedBatch != null) {
+			droppedLogs.addAndGet(failedBatch.size() + queueSize.get());
+		}
+
+		if (droppedLogs.get() > 0) {
+			log.warn("{} event history logs were dropped (queue full or saving failed)", droppedLogs.get());
+		}
+	}
+
+
+	public long getDroppedLogCount() {
+		return droppedLogs.get();
+	}
+
+
+	public void write(EventHistoryLog eventHistoryLog) {
+		if (queueSize.incrementAndGet() > queueCapacity) {
+			queueSize.decrementAndGet();
+
+			if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+				repository.save(eventHistoryLog);
+			} else {
+				droppedLogs.incrementAndGet();
+			}
+
+			return;
+		}
+
+		queue.offer(eventHistoryLog);
+
+		// FULL BATCH WAITING -> DON'T WAIT FOR THE NEXT TICK
+		if (queueSize.get() % BatchUtils.JDBC_BATCH_SIZE == 0) {
+			try {
+				executor.execute(() -> flush(false));
+			} catch (RejectedExecutionException e) {
+				// SHUTTING DOWN, stop() DRAINS THE QUEUE
+			}
+		}
+	}
+
+
+	// shuttingDown: NO WAITING FOR THE BACKOFF OF A FAILED BATCH
+	private synchronized void flush(boolean shuttingDown) {
+		if (failedBatch != null) {
+			if (!shuttingDown && System.currentTimeMillis() < retryAt) {
+				return;
+			}
+
+			if (!save(failedBatch)) {
+				return;
+			}
+
+			failedBatch = null;
+			failedAttempts = 0;
+		}
+
+		List<EventHistoryLog> batch = new ArrayList<>(BatchUtils.JDBC_BATCH_SIZE);
+
+		while (!queue.isEmpty()) {
+			EventHistoryLog eventHistoryLog;
+
+			while (batch.size() < BatchUtils.JDBC_BATCH_SIZE && (eventHistoryLog = queue.poll()) != null) {
+				batch.add(eventHistoryLog);
+			}
+
+			queueSize.addAndGet(-batch.size());
+
+			// THE REST STAYS QUEUED UNTIL THE FAILED BATCH IS SAVED (OR DROPPED)
+			if (!save(batch)) {
+				return;
+			}
+
+			batch.clear();
+		}
+	}
+
+	// FALSE WHEN THE BATCH IS KEPT AS failedBatch FOR A RETRY
+	private boolean save(List<EventHistoryLog> batch) {
+		try {
+			repository.saveAll(batch);
+			return true;
+		} catch (Exception e) {
+			failedAttempts++;
+
+			if (failedAttempts > maxRetries) {
+				log.error("failed to save " + batch.size() + " event history logs, dropped after " + failedAttempts + " attempts", e);
+				droppedLogs.addAndGet(batch.size());
+
+				failedBatch = null;
+				failedAttempts = 0;
+
+				return true;
+			}
+
+			log.warn("failed to save " + batch.size() + " event history logs (attempt " + failedAttempts + "), retrying", e);
+
+			failedBatch = new ArrayList<>(batch);
+			retryAt = System.currentTimeMillis() + (flushIntervalMs << Math.min(failedAttempts - 1, MAX_BACKOFF_SHIFT));
+
+			return false;
+		}
+	}
+}
@@ -1,22 +1,27 @@
 package com.example.demo.database.services;
 
 import com.example.demo.database.models.Organisation;
-import com.example.demo.database.models.user.User;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
-import com.example.demo.database.models.vehicle.Fleet;
-import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.repositories.OrganisationRepository;
 import com.example.demo.database.repositories.UserRepository;
 import com.example.demo.database.repositories.vehicle.FleetRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import com.example.demo.security.JwtAuthenticationCache;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -29,12 +34,26 @@ public class OrganisationService {
 	private final VehicleRepository vehicleRepository;
 	private final FleetRepository fleetRepository;
 
+	private final EntityManager entityManager;
+
+	private final JwtAuthenticationCache jwtAuthenticationCache;
+
 
 	@Transactional
 	public List<Organisation> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Organisation> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Organisation> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Organisation getById(Long id) {
 		if (id == null) {
@@ -56,65 +75,42 @@ public class OrganisationService {
 	}
 
 	@Transactional
-	public void delete(Organisation organisation) {
-		if (organisation == null || organisation.getId() == null) {
-			return;
-		}
-
-		List<User> usersInOrganisation = userRepository.findAllByOrganisationId(organisation.getId());
-		usersInOrganisation.forEach(user -> {
-			user.setOrganisation(null);
-			userRepository.save(user);
+	public List<Organisation> saveAll(List<Organisation> entities) {
+		return BatchUtils.saveInBatches(entities, repository::save, entityManager);
+	}
 
-//			userRepository.delete(user);
-		});
+	@Transactional
+	public Map<String, Integer> delete(Organisation organisation) {
+		Map<String, Integer> affectedRows = new LinkedHashMap<>();
 
-		List<Vehicle> vehiclesInOrganisation = vehicleRepository.findAllByOrganisationId(organisation.getId());
-		vehiclesInOrganisation.forEach(vehicle -> {
-			vehicle.setOrganisation(null);
-			vehicleRepository.save(vehicle);
+		if (organisation == null || organisation.getId() == null) {
+			return affectedRows;
+		}
 
-//			vehicleRepository.delete(vehicle);
-		});
+		// FIRST SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY, ONE UPDATE PER TABLE
 
-		List<Fleet> fleetsInOrganisation = fleetRepository.findAllByOrganisationId(organisation.getId());
-		fleetsInOrganisation.forEach(fleet -> {
-			fleet.setOrganisation(null);
-			fleetRepository.save(fleet);
+		jwtAuthenticationCache.invalidateAllAfterCommit();
+		affectedRows.put("users", userRepository.detachFromOrganisation(organisation.getId()));
+		affectedRows.put("vehicles", vehicleRepository.detachFromOrganisation(organisation.getId()));
+		affectedRows.put("fleets", fleetRepository.detachFromOrganisation(organisation.getId()));
 
-//			fleetRepository.delete(fleet);
-		});
+		affectedRows.put("organisations", repository.deleteAllByIdIn(List.of(organisation.getId())));
 
-		repository.delete(organisation);
+		return affectedRows;
 	}
 
 	@Transactional
-	public void deleteAll() {
-		List<User> users = userRepository.findAll();
-		users.forEach(user -> {
-			user.setOrganisation(null);
-			userRepository.save(user);
-
-//			userRepository.delete(user);
-		});
-
-		List<Vehicle> vehicleList = vehicleRepository.findAll();
-		vehicleList.forEach(vehicle -> {
-			vehicle.setOrganisation(null);
-			vehicleRepository.save(vehicle);
-
-//			vehicleRepository.delete(vehicle);
-		});
+	public Map<String, Integer> deleteAll() {
+		Map<String, Integer> affectedRows = new LinkedHashMap<>();
 
-		List<Fleet> fleetList = fleetRepository.findAll();
-		fleetList.forEach(fleet -> {
-			fleet.setOrganisation(null);
-			fleetRepository.save(fleet);
+		jwtAuthenticationCache.invalidateAllAfterCommit();
+		affectedRows.put("users", userRepository.detachFromAllOrganisations());
+		affectedRows.put("vehicles", vehicleRepository.detachFromAllOrganisations());
+		affectedRows.put("fleets", fleetRepository.detachFromAllOrganisations());
 
-//			fleetRepository.delete(fleet);
-		});
+		affectedRows.put("organisations", repository.deleteAllRows());
 
-		repository.deleteAll();
+		return affectedRows;
 	}
 
 
@@ -141,7 +137,7 @@ public class OrganisationService {
 		}
 
 		if (mapping.equals(Mapping.POST) || mapping.equals(Mapping.PUT) || mapping.equals(Mapping.PATCH)) {
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Organisation>().validateStringFields(organisation);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(organisation);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -6,10 +6,13 @@ import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.repositories.RoleRepository;
 import com.example.demo.database.repositories.UserRepository;
+import com.example.demo.security.JwtAuthenticationCache;
 import com.example.demo.utils.Constants;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -20,17 +23,23 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class UserService implements UserDetailsService {
 
+	private final static String CURRENT_USER_ATTRIBUTE = UserService.class.getName() + ".CURRENT_USER";
+
 	@Autowired
 	private PasswordEncoder bcryptEncoder;
 
@@ -39,11 +48,25 @@ public class UserService implements UserDetailsService {
 	private final RoleRepository roleRepository;
 	private final OrganisationService organisationService;
 
+	private final EntityManager entityManager;
+
+	private final JwtAuthenticationCache jwtAuthenticationCache;
+
 	@Transactional
 	public List<User> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<User> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<User> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public List<User> getAllByOrganisationId(Long id) {
 		return repository.findAllByOrganisationId(id);
@@ -62,6 +85,7 @@ public class UserService implements UserDetailsService {
 		return user;
 	}
 
+	// RESOLVED ONCE PER REQUEST AND KEPT IN A REQUEST ATTRIBUTE, OUTSIDE OF A REQUEST EVERY CALL QUERIES THE DATABASE
 	public User getCurrentUser() {
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -73,7 +97,31 @@ public class UserService implements UserDetailsService {
 			return null;
 		}
 
-		return getByUsername(authentication.getName());
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+		if (requestAttributes == null) {
+			return getByUsername(authentication.getName());
+		}
+
+		Object cached = requestAttributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+		// SAME REQUEST MAY LOG IN / OUT, CACHED USER IS ONLY VALID FOR THE SAME AUTHENTICATION NAME
+		if (cached instanceof CurrentUser && ((CurrentUser) cached).username.equals(authentication.getName())) {
+			return ((CurrentUser) cached).user;
+		}
+
+		User user = getByUsername(authentication.getName());
+		requestAttributes.setAttribute(CURRENT_USER_ATTRIBUTE, new CurrentUser(authentication.getName(), user), RequestAttributes.SCOPE_REQUEST);
+
+		return user;
+	}
+
+	private void clearCurrentUser() {
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+		if (requestAttributes != null) {
+			requestAttributes.removeAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		}
 	}
 
 	@Transactional
@@ -115,18 +163,25 @@ public class UserService implements UserDetailsService {
 		return user;
 	}
 
+	// PASSWORD, ROLE, ORGANISATION OR USERNAME MAY CHANGE -> CACHED JWT AUTHENTICATIONS ARE NO LONGER VALID
 	@Transactional
 	public User save(User user) {
+		jwtAuthenticationCache.invalidateAllAfterCommit();
+		clearCurrentUser();
 		return repository.save(user);
 	}
 
 	@Transactional
 	public void delete(User user) {
+		jwtAuthenticationCache.invalidateAllAfterCommit();
+		clearCurrentUser();
 		repository.delete(user);
 	}
 
 	@Transactional
 	public void deleteAll() {
+		jwtAuthenticationCache.invalidateAllAfterCommit();
+		clearCurrentUser();
 		repository.deleteAll();
 	}
 
@@ -175,17 +230,10 @@ public class UserService implements UserDetailsService {
 			return false;
 		}
 
-		User user = getById(id);
-
-		if (user == null) {
-			return false;
-		}
-
-		if (user.getRole() == null) {
-			return false;
-		}
+		User currentUser = getCurrentUser();
+		User user = currentUser != null && id.equals(currentUser.getId()) ? currentUser : getById(id);
 
-		return user.getRole().getName().equals(Constants.ROLE_SYSTEM_ADMIN);
+		return hasRole(user, Constants.ROLE_SYSTEM_ADMIN);
 	}
 
 	public boolean isUserOrganisationAdmin(Long id) {
@@ -193,17 +241,10 @@ public class UserService implements UserDetailsService {
 			return false;
 		}
 
-		User user = getById(id);
+		User currentUser = getCurrentUser();
+		User user = currentUser != null && id.equals(currentUser.getId()) ? currentUser : getById(id);
 
-		if (user == null) {
-			return false;
-		}
-
-		if (user.getRole() == null) {
-			return false;
-		}
-
-		return user.getRole().getName().equals(Constants.ROLE_ORGANISATION_ADMIN);
+		return hasRole(user, Constants.ROLE_ORGANISATION_ADMIN);
 	}
 
 	public boolean isUserOrganisationOrSystemAdmin(Long id) {
@@ -211,89 +252,36 @@ public class UserService implements UserDetailsService {
 			return false;
 		}
 
-		User user = getById(id);
+		User currentUser = getCurrentUser();
+		User user = currentUser != null && id.equals(currentUser.getId()) ? currentUser : getById(id);
 
-		if (user == null) {
-			return false;
-		}
-
-		if (user.getRole() == null) {
-			return false;
-		}
-
-		return user.getRole().getName().equals(Constants.ROLE_ORGANISATION_ADMIN) || user.getRole().getName().equals(Constants.ROLE_SYSTEM_ADMIN);
+		return hasRole(user, Constants.ROLE_ORGANISATION_ADMIN, Constants.ROLE_SYSTEM_ADMIN);
 	}
 
 	public boolean isCurrentUserSystemAdmin() {
-		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-		if (authentication == null) {
-			return false;
-		}
-
-		if (authentication.getName() == null || authentication.getName().length() <= 0) {
-			return false;
-		}
-
-		User userFromDatabase = getByUsername(authentication.getName());
-
-		if (userFromDatabase == null) {
-			return false;
-		}
-
-		if (userFromDatabase.getRole() == null) {
-			return false;
-		}
-
-		return userFromDatabase.getRole().getName().equals(Constants.ROLE_SYSTEM_ADMIN);
+		return hasRole(getCurrentUser(), Constants.ROLE_SYSTEM_ADMIN);
 	}
 
 	public boolean isCurrentUserOrganisationAdmin() {
-		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-		if (authentication == null) {
-			return false;
-		}
-
-		if (authentication.getName() == null || authentication.getName().length() <= 0) {
-			return false;
-		}
-
-		User userFromDatabase = getByUsername(authentication.getName());
-
-		if (userFromDatabase == null) {
-			return false;
-		}
-
-		if (userFromDatabase.getRole() == null) {
-			return false;
-		}
-
-		return userFromDatabase.getRole().getName().equals(Constants.ROLE_ORGANISATION_ADMIN);
+		return hasRole(getCurrentUser(), Constants.ROLE_ORGANISATION_ADMIN);
 	}
 
 	public boolean isCurrentUserOrganisationOrSystemAdmin() {
-		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-		if (authentication == null) {
-			return false;
-		}
-
-		if (authentication.getName() == null || authentication.getName().length() <= 0) {
-			return false;
-		}
-
-		User userFromDatabase = getByUsername(authentication.getName());
+		return hasRole(getCurrentUser(), Constants.ROLE_ORGANISATION_ADMIN, Constants.ROLE_SYSTEM_ADMIN);
+	}
 
-		if (userFromDatabase == null) {
+	private boolean hasRole(User user, String... roleNames) {
+		if (user == null || user.getRole() == null) {
 			return false;
 		}
 
-		if (userFromDatabase.getRole() == null) {
-			return false;
+		for (String roleName : roleNames) {
+			if (user.getRole().getName().equals(roleName)) {
+				return true;
+			}
 		}
 
-		return userFromDatabase.getRole().getName().equals(Constants.ROLE_ORGANISATION_ADMIN) || userFromDatabase.getRole().getName().equals(Constants.ROLE_SYSTEM_ADMIN);
+		return false;
 	}
 
 
@@ -386,7 +374,7 @@ public class UserService implements UserDetailsService {
 			user.setOrganisation(organisation);
 
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<User>().validateStringFields(user);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(user);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -435,4 +423,14 @@ public class UserService implements UserDetailsService {
 
 		return new org.springframework.security.core.userdetails.User(userFromDatabase.getUsername(), userFromDatabase.getPassword(), authorities);
 	}
+
+	private static class CurrentUser {
+		private final String username;
+		private final User user;
+
+		private CurrentUser(String username, User user) {
+			this.username = username;
+			this.user = user;
+		}
+	}
 }
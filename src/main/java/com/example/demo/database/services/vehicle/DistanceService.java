@@ -3,19 +3,25 @@ package com.example.demo.database.services.vehicle;
 import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.Distance;
+import com.example.demo.database.models.vehicle.OdometerIngestReport;
+import com.example.demo.database.models.vehicle.OdometerReading;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.repositories.vehicle.DistanceRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
+import com.example.demo.utils.StripedLocks;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -25,12 +31,47 @@ public class DistanceService {
 
 	private final VehicleRepository vehicleRepository;
 
+	private final VehicleStatisticsService vehicleStatisticsService;
+	private final UsageRollupService usageRollupService;
+
+	private final EntityManager entityManager;
+
+	private final static Pageable NEIGHBOUR = PageRequest.of(0, 1);
+
+	// KILOMETRES OF A VEHICLE ARE VALIDATED AGAINST ITS OTHER DISTANCES, VALIDATION AND SAVE MUST NOT INTERLEAVE
+	// WITH ANOTHER WRITE FOR THE SAME VEHICLE (SEE lockVehicle)
+	private final static int VEHICLE_LOCK_STRIPES = 1024;
+
+	private final StripedLocks vehicleLocks = new StripedLocks(VEHICLE_LOCK_STRIPES);
+
+
+	/*  Held around validate() + save() of distances (and ingest()), released only after the save is committed,
+	 *  so the next writer of the same vehicle validates against it. Writes for other vehicles don't wait,
+	 *  unless their ids share a stripe. Must be taken outside of any transaction */
+	public StripedLocks.Held lockVehicle(Distance distance) {
+		return vehicleLocks.lock(distance == null || distance.getVehicle() == null ? null : distance.getVehicle().getId());
+	}
+
+	public StripedLocks.Held lockVehicles(Collection<Long> vehicleIds) {
+		return vehicleLocks.lockAll(vehicleIds);
+	}
+
 
 	@Transactional
 	public List<Distance> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Distance> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Distance> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Distance getById(Long id) {
 		if (id == null) {
@@ -53,9 +94,90 @@ public class DistanceService {
 		return repository.findAllByVehicleId(id);
 	}
 
+	/*  Copy of the values the vehicle statistics and usage rollups are computed from, taken before the distance is changed.
+	 *  Distance PATCH applies the changes to a copy of the entity (DistanceRestController.handlePatchChanges), so the row in
+	 *  the database is still the original when save() runs, unlike trips, refuels and events that are patched in place */
+	@Transactional
+	public Distance getOriginalById(Long id) {
+		Distance distance = getById(id);
+
+		if (distance == null) {
+			return null;
+		}
+
+		// PATCH REPLACES THE VEHICLE, IT NEVER CHANGES THE REFERENCED ONE
+		Distance original = new Distance();
+		original.setId(distance.getId());
+		original.setVehicle(distance.getVehicle());
+		original.setTimestamp(distance.getTimestamp());
+		original.setKilometres(distance.getKilometres());
+
+		return original;
+	}
+
+	// CREATE, OR UPDATE WITH A NEW INSTANCE (PUT): THE ROW IN THE DATABASE IS STILL THE ORIGINAL
 	@Transactional
 	public Distance save(Distance refuel) {
-		return repository.save(refuel);
+		return save(refuel, refuel.getId() == null ? null : getOriginalById(refuel.getId()));
+	}
+
+	// original: getOriginalById() BEFORE THE CHANGES, NULL FOR NEW ENTITIES
+	@Transactional
+	public Distance save(Distance refuel, Distance original) {
+		Distance savedDistance = repository.save(refuel);
+
+		if (original == null) {
+			vehicleStatisticsService.distancesAdded(List.of(savedDistance));
+			usageRollupService.distancesAdded(List.of(savedDistance));
+		} else {
+			vehicleStatisticsService.distancesChanged(List.of(original), List.of(savedDistance));
+			usageRollupService.distancesChanged(List.of(original), List.of(savedDistance));
+		}
+
+		return savedDistance;
+	}
+
+	/*  Bulk insert of odometer telemetry, readings may arrive in any order.
+	 *  Readings are grouped per vehicle and sorted by timestamp, then checked in one pass against their closest existing
+	 *  readings (see checkReadings) and the latest accepted reading of the batch. Accepted readings are inserted in JDBC batches */
+	@Transactional
+	public void ingest(List<OdometerReading> readings, OdometerIngestReport report) {
+		Map<Long, List<OdometerReading>> readingsByVehicle = new HashMap<>();
+
+		for (OdometerReading reading : readings) {
+			String error = validateReading(reading);
+
+			if (error != null) {
+				report.reject(reading.getLine(), reading, error);
+			} else {
+				readingsByVehicle.computeIfAbsent(reading.getVehicle_id(), vehicleId -> new ArrayList<>()).add(reading);
+			}
+		}
+
+		Map<Long, Vehicle> vehicles = new HashMap<>();
+		vehicleRepository.findAllById(readingsByVehicle.keySet()).forEach(vehicle -> vehicles.put(vehicle.getId(), vehicle));
+
+		List<Distance> distances = new ArrayList<>();
+
+		for (Map.Entry<Long, List<OdometerReading>> vehicleReadings : readingsByVehicle.entrySet()) {
+			Vehicle vehicle = vehicles.get(vehicleReadings.getKey());
+
+			if (vehicle == null) {
+				for (OdometerReading reading : vehicleReadings.getValue()) {
+					report.reject(reading.getLine(), reading, "vehicle ID is invalid: " + reading.getVehicle_id());
+				}
+				continue;
+			}
+
+			distances.addAll(checkReadings(vehicle, vehicleReadings.getValue(), report));
+		}
+
+		List<Distance> savedDistances = BatchUtils.saveInBatches(distances, repository::save, entityManager);
+		vehicleStatisticsService.distancesAdded(savedDistances);
+		usageRollupService.distancesAdded(savedDistances);
+
+		report.setInserted(savedDistances.size());
+		report.getRejected().sort(Comparator.comparingInt(OdometerIngestReport.RejectedReading::getLine));
 	}
 
 	@Transactional
@@ -64,76 +186,125 @@ public class DistanceService {
 			return;
 		}
 
+		Distance original = getOriginalById(refuel.getId());
+
 		repository.delete(refuel);
+
+		if (original != null) {
+			vehicleStatisticsService.distancesChanged(List.of(original), List.of());
+			usageRollupService.distancesChanged(List.of(original), List.of());
+		}
 	}
 
 	@Transactional
 	public void deleteAll() {
 		repository.deleteAll();
+
+		vehicleStatisticsService.refreshAll();
+		usageRollupService.rebuildAll();
 	}
 
 
 	public boolean distanceWithSameTimestampAlreadyExists(Distance distance) {
-		List<Distance> vehicleDistances = getAllByVehicleId(distance.getVehicle().getId());
-
-		for (Distance d : vehicleDistances) {
-			if (d.getTimestamp().equals(distance.getTimestamp())) {
-				return true;
-			}
-		}
-
-		return false;
+		return repository.existsByVehicleIdAndTimestamp(distance.getVehicle().getId(), distance.getTimestamp());
 	}
 
+	/*  Kilometres must not decrease with time. Only the two neighbours of the timestamp are checked
+	 *  (closest newer or same-time reading and closest older reading), each is one lookup on the (vehicle_id, timestamp) index,
+	 *  so the cost doesn't grow with the vehicle's history */
 	public ValidationResponse checkDistanceDateAndKilometres(Distance distanceToCheck) {
-		List<Distance> vehicleDistances = new ArrayList<>(getAllByVehicleId(distanceToCheck.getVehicle().getId()));
+		Long vehicleId = distanceToCheck.getVehicle().getId();
+		LocalDateTime timestamp = distanceToCheck.getTimestamp();
 
-		// REMOVE DISTANCE IF ALREADY THERE (PATCH, PUT)
-		if (distanceToCheck.getId() != null) {
-			vehicleDistances.removeIf(distanceToRemove -> distanceToRemove.getId().equals(distanceToCheck.getId()));
-		}
+		// IGNORE DISTANCE IF ALREADY THERE (PATCH, PUT)
+		Long excludedId = distanceToCheck.getId() == null ? -1L : distanceToCheck.getId();
 
-		if (vehicleDistances.size() == 0) {
-			return new ValidationResponse(true, "");
+		Optional<Distance> newerDistance = first(repository.findNewerOrSame(vehicleId, timestamp, excludedId, NEIGHBOUR));
+
+		if (newerDistance.isPresent() && newerDistance.get().getKilometres() < distanceToCheck.getKilometres()) {
+			return new ValidationResponse(false, "invalid kilometres value, distance: '" + distanceToCheck + "' cannot be before: '" + newerDistance.get() + "'");
 		}
 
-		if (vehicleDistances.size() == 1) {
-			if ((vehicleDistances.get(0).getTimestamp().isBefore(distanceToCheck.getTimestamp()) && vehicleDistances.get(0).getKilometres() < distanceToCheck.getKilometres()) ||
-					(vehicleDistances.get(0).getTimestamp().isAfter(distanceToCheck.getTimestamp()) && vehicleDistances.get(0).getKilometres() > distanceToCheck.getKilometres())) {
-				return new ValidationResponse(true, "");
-			}
+		Optional<Distance> olderDistance = first(repository.findOlder(vehicleId, timestamp, excludedId, NEIGHBOUR));
+
+		if (olderDistance.isPresent() && olderDistance.get().getKilometres() > distanceToCheck.getKilometres()) {
+			return new ValidationResponse(false, "invalid kilometres value, distance: '" + distanceToCheck + "' cannot be after: '" + olderDistance.get() + "'");
 		}
 
-		vehicleDistances.add(distanceToCheck);
+		return new ValidationResponse(true, "");
+	}
+
+
+	/*  Accepted readings of one vehicle as new distances, the others are added to the report.
+	 *  Existing readings are never loaded for the whole time range of the batch, only the two neighbours of a timestamp
+	 *  (index lookups, like checkDistanceDateAndKilometres). They are looked up again only when an existing reading lies
+	 *  between the previous reading and the current one, so a batch of readings that are close together costs one lookup */
+	private List<Distance> checkReadings(Vehicle vehicle, List<OdometerReading> readings, OdometerIngestReport report) {
+		readings.sort(Comparator.comparing(OdometerReading::getTimestamp).thenComparingInt(OdometerReading::getLine));
 
-		// SORT BY TIMESTAMP FROM NEWEST TO OLDEST
-		vehicleDistances.sort(Comparator.comparing(Distance::getTimestamp).reversed());
+		// LATEST EXISTING READING BEFORE AND FIRST ONE AT OR AFTER THE TIMESTAMP OF THE LAST LOOKUP
+		Distance olderExisting = null;
+		Distance newerExisting = null;
+		boolean lookedUp = false;
 
-		// CHECK SURROUNDING DISTANCES
-		int leftDistanceIndex = -1;
-		int rightDistanceIndex = -1;
-		int distanceIndex = vehicleDistances.indexOf(distanceToCheck);
+		// READINGS ARE CHECKED IN TIMESTAMP ORDER, NO ACCEPTED READING IS NEWER THAN THE CURRENT ONE
+		Distance lastAccepted = null;
 
-		leftDistanceIndex = distanceIndex - 1;
-		rightDistanceIndex = distanceIndex + 1;
+		List<Distance> distances = new ArrayList<>();
 
-		if (leftDistanceIndex >= 0) {
-			Distance leftDistance = vehicleDistances.get(leftDistanceIndex);
+		for (OdometerReading reading : readings) {
+			LocalDateTime timestamp = reading.getTimestamp();
 
-			if (leftDistance.getKilometres() < distanceToCheck.getKilometres()) {
-				return new ValidationResponse(false, "invalid kilometres value, distance: '" + distanceToCheck + "' cannot be before: '" + leftDistance + "'");
+			if (!lookedUp || (newerExisting != null && newerExisting.getTimestamp().isBefore(timestamp))) {
+				olderExisting = first(repository.findOlder(vehicle.getId(), timestamp, -1L, NEIGHBOUR)).orElse(null);
+				newerExisting = first(repository.findNewerOrSame(vehicle.getId(), timestamp, -1L, NEIGHBOUR)).orElse(null);
+				lookedUp = true;
 			}
-		}
 
-		if (rightDistanceIndex < vehicleDistances.size()) {
-			Distance rightDistance = vehicleDistances.get(rightDistanceIndex);
+			Distance sameTimestamp = atTimestamp(newerExisting, timestamp).or(() -> atTimestamp(lastAccepted, timestamp)).orElse(null);
 
-			if (rightDistance.getKilometres() > distanceToCheck.getKilometres()) {
-				return new ValidationResponse(false, "invalid kilometres value, distance: '" + distanceToCheck + "' cannot be after: '" + rightDistance + "'");
+			if (sameTimestamp != null) {
+				if (sameTimestamp.getKilometres().equals(reading.getKilometres())) {
+					report.setDuplicates(report.getDuplicates() + 1);
+				} else {
+					report.reject(reading.getLine(), reading, "distance with the same timestamp already exists: " + sameTimestamp.getKilometres() + " km");
+				}
+				continue;
+			}
+
+			Distance older = lastAccepted != null && (olderExisting == null || lastAccepted.getTimestamp().isAfter(olderExisting.getTimestamp())) ? lastAccepted : olderExisting;
+
+			if (older != null && older.getKilometres() > reading.getKilometres()) {
+				report.reject(reading.getLine(), reading, "invalid kilometres value, cannot be lower than: " + older.getKilometres() + " km at " + older.getTimestamp());
+			} else if (newerExisting != null && newerExisting.getKilometres() < reading.getKilometres()) {
+				report.reject(reading.getLine(), reading, "invalid kilometres value, cannot be higher than: " + newerExisting.getKilometres() + " km at " + newerExisting.getTimestamp());
+			} else {
+				lastAccepted = new Distance(null, reading.getKilometres(), vehicle, null, timestamp);
+				distances.add(lastAccepted);
 			}
 		}
 
-		return new ValidationResponse(true, "");
+		return distances;
+	}
+
+	private static String validateReading(OdometerReading reading) {
+		if (reading.getVehicle_id() == null) {
+			return "vehicle ID is required";
+		}
+
+		if (reading.getTimestamp() == null) {
+			return "timestamp value is required";
+		}
+
+		if (reading.getKilometres() == null) {
+			return "kilometres value is required";
+		}
+
+		if (reading.getKilometres() <= 0) {
+			return "invalid kilometres value: '" + reading.getKilometres() + "'";
+		}
+
+		return null;
 	}
 
 
@@ -201,7 +372,7 @@ public class DistanceService {
 				return distanceValidation;
 			}
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Distance>().validateStringFields(distance);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(distance);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -222,4 +393,13 @@ public class DistanceService {
 
 		return new ValidationResponse(true, "validation success");
     }
+
+
+	private static Optional<Distance> first(List<Distance> distances) {
+		return distances.isEmpty() ? Optional.empty() : Optional.of(distances.get(0));
+	}
+
+	private static Optional<Distance> atTimestamp(Distance distance, LocalDateTime timestamp) {
+		return distance != null && distance.getTimestamp().equals(timestamp) ? Optional.of(distance) : Optional.empty();
+	}
 }
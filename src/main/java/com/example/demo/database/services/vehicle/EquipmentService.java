@@ -9,12 +9,16 @@ import com.example.demo.database.repositories.vehicle.EquipmentRepository;
 import com.example.demo.database.repositories.vehicle.EquipmentTypeRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -25,11 +29,23 @@ public class EquipmentService {
 	private final EquipmentTypeRepository equipmentTypeRepository;
 	private final VehicleRepository vehicleRepository;
 
+	private final EntityManager entityManager;
+
 	@Transactional
 	public List<Equipment> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Equipment> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Equipment> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Equipment getById(Long id) {
 		if (id == null) {
@@ -126,7 +142,7 @@ public class EquipmentService {
 				equipment.setVehicle(vehicle.get());
 			}
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Equipment>().validateStringFields(equipment);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(equipment);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -5,13 +5,20 @@ import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.EquipmentType;
 import com.example.demo.database.repositories.vehicle.EquipmentRepository;
 import com.example.demo.database.repositories.vehicle.EquipmentTypeRepository;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -21,12 +28,24 @@ public class EquipmentTypeService {
 
 	private final EquipmentRepository equipmentRepository;
 
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<EquipmentType> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<EquipmentType> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<EquipmentType> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public EquipmentType getById(Long id) {
 		if (id == null) {
@@ -46,36 +65,36 @@ public class EquipmentTypeService {
 	}
 
 	@Transactional
-	public void delete(EquipmentType type) {
+	public List<EquipmentType> saveAll(List<EquipmentType> entities) {
+		return BatchUtils.saveInBatches(entities, repository::save, entityManager);
+	}
+
+	@Transactional
+	public Map<String, Integer> delete(EquipmentType type) {
+		Map<String, Integer> affectedRows = new LinkedHashMap<>();
+
 		if (type == null || type.getId() == null) {
-			return;
+			return affectedRows;
 		}
 
-		// FIRST DELETE/SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY
+		// FIRST SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY, ONE UPDATE PER TABLE
 
-		equipmentRepository.findAllByTypeId(type.getId()).forEach(equipment -> {
-			equipment.setEquipment_type(null);
-			equipmentRepository.save(equipment);
+		affectedRows.put("equipment", equipmentRepository.detachFromType(type.getId()));
 
-//			equipmentRepository.delete(equipment);
-		});
+		affectedRows.put("equipment_types", repository.deleteAllByIdIn(List.of(type.getId())));
 
-		repository.delete(type);
+		return affectedRows;
 	}
 
 	@Transactional
-	public void deleteAll() {
-
-		// FIRST DELETE/SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY
+	public Map<String, Integer> deleteAll() {
+		Map<String, Integer> affectedRows = new LinkedHashMap<>();
 
-		equipmentRepository.findAll().forEach(equipment -> {
-			equipment.setEquipment_type(null);
-			equipmentRepository.save(equipment);
+		affectedRows.put("equipment", equipmentRepository.detachFromAllTypes());
 
-//			equipmentRepository.delete(equipment);
-		});
+		affectedRows.put("equipment_types", repository.deleteAllRows());
 
-		repository.deleteAll();
+		return affectedRows;
 	}
 
 	public ValidationResponse validate(EquipmentType type, Mapping mapping) {
@@ -102,7 +121,7 @@ public class EquipmentTypeService {
 
 		if (mapping.equals(Mapping.POST) || mapping.equals(Mapping.PUT) || mapping.equals(Mapping.PATCH)) {
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<EquipmentType>().validateStringFields(type);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(type);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
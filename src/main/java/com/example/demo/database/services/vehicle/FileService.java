@@ -4,40 +4,89 @@ import com.example.demo.database.models.utils.Mapping;
 import com.example.demo.database.models.utils.ValidationResponse;
 import com.example.demo.database.models.vehicle.*;
 import com.example.demo.database.repositories.vehicle.*;
+import com.example.demo.storage.BlobStore;
+import com.example.demo.storage.FileContent;
+import com.example.demo.storage.ImageDerivativeStore;
 import com.example.demo.utils.DateUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.tomcat.util.http.fileupload.FileUploadException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Base64;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*  File contents live in the BlobStore, FileByteData rows only keep the name, content type and content hash.
+ *  Identical contents share one blob, a blob is deleted after the last row referencing it is deleted, unless it was put
+ *  during the last file-storage.gc.grace-minutes (an upload of the same content may not have committed its row yet).
+ *  Blobs kept that way and blobs of rolled back uploads are deleted later by collectGarbage().
+ *  Rows uploaded before the BlobStore still have their content in the data column until migrateDatabaseContent() */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileService {
 
+	// HASHES CHECKED AGAINST THE DATABASE PER QUERY
+	private final static int GC_BATCH_SIZE = 500;
+
 	private final FileMetaDataRepository fileMetaDataRepository;
 	private final FileByteDataRepository fileByteDataRepository;
+	private final FileByteDataContentRepository fileByteDataContentRepository;
 
 	private final VehicleRepository vehicleRepository;
 	private final RefuelRepository refuelRepository;
 	private final VehicleEventRepository vehicleEventRepository;
 
+	private final EntityManager entityManager;
+
+	private final BlobStore blobStore;
+	private final ImageDerivativeStore imageDerivativeStore;
+
+	// LONGER THAN ANY UPLOAD TAKES FROM blobStore.put() TO THE COMMIT OF ITS ROW
+	@Value("${file-storage.gc.grace-minutes:60}")
+	private long gcGraceMinutes;
+
 
 	@Transactional
 	public List<FileMetaData> getAll() {
 		return fileMetaDataRepository.findAll();
 	}
 
+	@Transactional
+	public List<FileMetaData> getPage(Long after, Pageable pageable) {
+		return fileMetaDataRepository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<FileMetaData> consumer) {
+		PaginationUtils.forEachDetached(fileMetaDataRepository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public FileMetaData getFileMetaDataById(Long id) {
 		if (id == null) {
@@ -91,6 +140,43 @@ public class FileService {
 		return fileMetaDataRepository.findAllByVehicleEventId(id);
 	}
 
+	@Transactional
+	public List<FileSummary> getAllSummaries() {
+		return fileMetaDataRepository.findAllSummaries();
+	}
+
+	@Transactional
+	public List<FileSummary> getSummaryPage(Long after, Pageable pageable) {
+		return fileMetaDataRepository.findSummaryPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public List<FileSummary> getSummariesByVehicleId(Long id) {
+		if (id == null) {
+			return null;
+		}
+
+		return fileMetaDataRepository.findSummariesByVehicleId(id);
+	}
+
+	@Transactional
+	public List<FileSummary> getSummariesByRefuelId(Long id) {
+		if (id == null) {
+			return null;
+		}
+
+		return fileMetaDataRepository.findSummariesByRefuelId(id);
+	}
+
+	@Transactional
+	public List<FileSummary> getSummariesByVehicleEventId(Long id) {
+		if (id == null) {
+			return null;
+		}
+
+		return fileMetaDataRepository.findSummariesByVehicleEventId(id);
+	}
+
 	@Transactional
 	public FileMetaData save(FileMetaData file) {
 		return fileMetaDataRepository.save(file);
@@ -101,6 +187,24 @@ public class FileService {
 		return fileByteDataRepository.save(file);
 	}
 
+	@Transactional
+	public FileByteData save(FileByteData file, InputStream content) throws IOException {
+		storeContent(file, content);
+
+		return fileByteDataRepository.save(file);
+	}
+
+	// CONTENT FILE WHOSE SHA-256 WAS ALREADY VERIFIED (CHUNKED UPLOADS), MOVED INTO THE BlobStore WITHOUT HASHING IT AGAIN
+	@Transactional
+	public FileByteData save(FileByteData file, Path verifiedContent, String contentHash) throws IOException {
+		BlobStore.StoredBlob blob = blobStore.putVerified(verifiedContent, contentHash);
+
+		file.setContent_hash(blob.getHash());
+		file.setContent_size(blob.getSize());
+
+		return fileByteDataRepository.save(file);
+	}
+
 	@Transactional
 	public FileByteData save(MultipartFile file) throws IOException {
 		String fileName = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
@@ -114,11 +218,12 @@ public class FileService {
 		}
 
 		FileByteData fileByteData = new FileByteData();
-		fileByteData.setData(file.getBytes());
 		fileByteData.setFile_name(fileName);
 		fileByteData.setFile_content_type(file.getContentType());
 
-		return fileByteDataRepository.save(fileByteData);
+		try (InputStream content = file.getInputStream()) {
+			return save(fileByteData, content);
+		}
 	}
 
 	@Transactional
@@ -131,7 +236,11 @@ public class FileService {
 			return;
 		}
 
+		String contentHash = fileMetaData.getFile_byte_data() == null ? null : fileMetaData.getFile_byte_data().getContent_hash();
+
 		fileMetaDataRepository.delete(fileMetaData);
+
+		deleteUnreferencedContent(Collections.singleton(contentHash));
 	}
 
 	@Transactional
@@ -145,18 +254,247 @@ public class FileService {
 		}
 
 		fileByteDataRepository.delete(fileByteData);
+
+		deleteUnreferencedContent(Collections.singleton(fileByteData.getContent_hash()));
 	}
 
 	@Transactional
 	public void deleteAll() {
+		List<String> contentHashes = fileByteDataRepository.findAllContentHashes();
+
 		fileMetaDataRepository.deleteAll();
+
+		deleteUnreferencedContent(contentHashes);
 	}
 
 
-	public String getImageData(byte[] byteData) {
-		return Base64.getMimeEncoder().encodeToString(byteData);
+	public InputStream openContent(FileByteData fileByteData) throws IOException {
+		return openContent(fileByteData.getId(), fileByteData.getContent_hash());
 	}
 
+	public FileContent getContent(FileByteData fileByteData) throws IOException {
+		String hash = fileByteData.getContent_hash();
+
+		if (hash == null) {
+			byte[] data = getDatabaseContent(fileByteData.getId());
+
+			return new FileContent(null, data.length, fileByteData.getFile_content_type(), fileByteData.getFile_name(),
+					null, () -> new ByteArrayInputStream(data));
+		}
+
+		if (!blobStore.exists(hash)) {
+			throw new FileNotFoundException("content of file " + fileByteData.getId() + " not found");
+		}
+
+		long size = fileByteData.getContent_size() == null ? -1 : fileByteData.getContent_size();
+		Path path = blobStore.getPath(hash).orElse(null);
+
+		if (size < 0 && path != null) {
+			size = Files.size(path);
+		}
+
+		return new FileContent(hash, size, fileByteData.getFile_content_type(), fileByteData.getFile_name(),
+				path, () -> openContent(fileByteData));
+	}
+
+	// DOWNSCALED IMAGE, EMPTY WHEN THE FILE IS NOT AN IMAGE (OR ITS CONTENT IS NOT IN THE BlobStore YET)
+	public Optional<FileContent> getImageDerivative(FileByteData fileByteData, ImageDerivativeStore.Variant variant) throws IOException {
+		if (fileByteData.getContent_hash() == null || !isImage(fileByteData)) {
+			return Optional.empty();
+		}
+
+		return imageDerivativeStore.get(fileByteData.getContent_hash(), variant, fileByteData.getFile_name(), () -> openContent(fileByteData));
+	}
+
+	public boolean isImage(FileByteData fileByteData) {
+		return FileByteData.isImage(fileByteData.getFile_content_type());
+	}
+
+	// ONE ZIP ENTRY PER FILE ("<id>_<file name>"), EACH COPIED STRAIGHT FROM STORAGE TO THE OUTPUT, NOTHING IS BUFFERED AS A WHOLE.
+	// ALREADY COMPRESSED CONTENTS (IMAGES, VIDEOS, ARCHIVES, PDF) ARE NOT DEFLATED AGAIN, MISSING CONTENTS GET A .MISSING.txt ENTRY
+	public void writeZip(List<FileSummary> files, OutputStream outputStream) throws IOException {
+		ZipOutputStream zip = new ZipOutputStream(outputStream);
+
+		for (FileSummary file : files) {
+			if (file.getFile_byte_data_id() == null) {
+				continue;
+			}
+
+			String name = file.getId() + "_" + (file.getFile_name() == null ? "file" : file.getFile_name().replaceAll("[/\\\\]", "_"));
+
+			InputStream content;
+
+			try {
+				content = openContent(file.getFile_byte_data_id(), file.getContent_hash());
+			} catch (IOException e) {
+				zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+				zip.putNextEntry(new ZipEntry(name + ".MISSING.txt"));
+				zip.write(("content of file " + file.getId() + " not found").getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+				continue;
+			}
+
+			try (content) {
+				ZipEntry entry = new ZipEntry(name);
+
+				if (file.getTimestamp() != null) {
+					entry.setTimeLocal(file.getTimestamp());
+				}
+
+				zip.setLevel(isCompressed(file.getFile_content_type()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+				zip.putNextEntry(entry);
+				content.transferTo(zip);
+				zip.closeEntry();
+			}
+		}
+
+		zip.finish();
+		zip.flush();
+	}
+
+	// MOVES CONTENT OF ONE PRE-BlobStore ROW FROM THE data COLUMN TO THE BlobStore
+	@Transactional
+	public boolean migrateDatabaseContent(Long id) throws IOException {
+		FileByteData fileByteData = getFileByteDataById(id);
+		FileByteDataContent content = fileByteDataContentRepository.findById(id).orElse(null);
+
+		if (fileByteData == null || content == null || content.getData() == null) {
+			return false;
+		}
+
+		if (fileByteData.getContent_hash() == null) {
+			storeContent(fileByteData, new ByteArrayInputStream(content.getData()));
+			fileByteDataRepository.save(fileByteData);
+		}
+
+		content.setData(null);
+		fileByteDataContentRepository.save(content);
+
+		return true;
+	}
+
+	/*  Deletes blobs no row references that weren't put during the grace period: blobs of uploads that rolled back after
+	 *  blobStore.put(), and blobs deleteUnreferencedContent() kept because they had just been put again.
+	 *  Hashes are checked against the database in batches, run by BlobGarbageCollectionJob */
+	public int collectGarbage() throws IOException {
+		Instant notPutSince = Instant.now().minus(Duration.ofMinutes(gcGraceMinutes));
+		List<String> batch = new ArrayList<>(GC_BATCH_SIZE);
+		int[] deleted = {0};
+
+		blobStore.forEachHash(hash -> {
+			batch.add(hash);
+
+			if (batch.size() >= GC_BATCH_SIZE) {
+				deleted[0] += deleteUnreferencedContent(batch, notPutSince);
+				batch.clear();
+			}
+		});
+
+		return deleted[0] + deleteUnreferencedContent(batch, notPutSince);
+	}
+
+	@Transactional
+	public List<Long> getIdsWithDatabaseContent(Long after, Pageable pageable) {
+		return fileByteDataContentRepository.findIdsWithContent(PaginationUtils.getCursor(after), pageable);
+	}
+
+
+	private void storeContent(FileByteData fileByteData, InputStream content) throws IOException {
+		BlobStore.StoredBlob blob = blobStore.put(content);
+
+		fileByteData.setContent_hash(blob.getHash());
+		fileByteData.setContent_size(blob.getSize());
+	}
+
+	private static boolean isCompressed(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+
+		return contentType.equals("image/jpeg") || contentType.equals("image/png") || contentType.equals("image/gif") || contentType.equals("image/webp")
+				|| contentType.startsWith("video/") || contentType.startsWith("audio/") || contentType.equals("application/pdf")
+				|| contentType.contains("zip") || contentType.contains("compressed") || contentType.contains("rar");
+	}
+
+	private InputStream openContent(Long fileByteDataId, String contentHash) throws IOException {
+		if (contentHash != null) {
+			return blobStore.open(contentHash);
+		}
+
+		// NOT MIGRATED YET
+		return new ByteArrayInputStream(getDatabaseContent(fileByteDataId));
+	}
+
+	private byte[] getDatabaseContent(Long fileByteDataId) throws IOException {
+		Optional<FileByteDataContent> content = fileByteDataContentRepository.findById(fileByteDataId);
+
+		if (content.isEmpty() || content.get().getData() == null) {
+			throw new IOException("file " + fileByteDataId + " has no content");
+		}
+
+		return content.get().getData();
+	}
+
+	// BLOBS ARE SHARED BY ROWS WITH THE SAME CONTENT, ONLY DELETED WHEN NO ROW REFERENCES THEM ANYMORE.
+	// RUNS AFTER COMMIT, A ROLLED BACK DELETE MUST NOT LOSE THE CONTENT
+	private void deleteUnreferencedContent(Collection<String> contentHashes) {
+		Set<String> hashes = new HashSet<>(contentHashes);
+		hashes.remove(null);
+
+		if (hashes.isEmpty()) {
+			return;
+		}
+
+		Runnable cleanup = () -> {
+			List<String> hashList = new ArrayList<>(hashes);
+
+			for (int from = 0; from < hashList.size(); from += GC_BATCH_SIZE) {
+				List<String> batch = hashList.subList(from, Math.min(from + GC_BATCH_SIZE, hashList.size()));
+				deleteUnreferencedContent(batch, Instant.now().minus(Duration.ofMinutes(gcGraceMinutes)));
+			}
+		};
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					cleanup.run();
+				}
+			});
+		} else {
+			cleanup.run();
+		}
+	}
+
+	// THE COUNT ALONE IS NOT ENOUGH: AN UPLOAD MAY HAVE FOUND THE BLOB (AND SKIPPED STORING IT) WITHOUT A COMMITTED ROW YET,
+	// ITS put() MARKED THE BLOB, deleteIfNotPutSince() CHECKS THE MARK UNDER THE SAME LOCK AS THE PUT
+	private int deleteUnreferencedContent(List<String> hashes, Instant notPutSince) {
+		if (hashes.isEmpty()) {
+			return 0;
+		}
+
+		Set<String> referenced = new HashSet<>(fileByteDataRepository.findContentHashesIn(hashes));
+		int deleted = 0;
+
+		for (String hash : hashes) {
+			if (referenced.contains(hash)) {
+				continue;
+			}
+
+			try {
+				if (blobStore.deleteIfNotPutSince(hash, notPutSince)) {
+					imageDerivativeStore.delete(hash);
+					deleted++;
+				}
+			} catch (IOException e) {
+				log.warn("failed to delete file content " + hash + ": " + e.getMessage());
+			}
+		}
+
+		return deleted;
+	}
+
+
 	public ValidationResponse validate(FileMetaData file, Mapping mapping) {
 
 		if (file == null) {
@@ -237,7 +575,7 @@ public class FileService {
 				file.setVehicle_event(vehicleEvent.get());
 			}
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<FileMetaData>().validateStringFields(file);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(file);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -0,0 +1,343 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.utils.ValidationResponse;
+import com.example.demo.database.models.vehicle.FileByteData;
+import com.example.demo.storage.Sha256;
+import com.example.demo.storage.UploadSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/*  Resumable uploads: a session is created with the file size and SHA-256, chunks are PUT at their offsets in any order
+ *  (and re-sent after a failure), complete() verifies the checksum of the assembled file and moves it into the BlobStore
+ *  under that hash (same filesystem, the file is read once).
+ *  Sessions live on disk (<file-storage.directory>/uploads/<id>/), so they survive restarts,
+ *  sessions not completed within file-upload.session-ttl-hours are deleted */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileUploadSessionService {
+
+	private final static Pattern SHA256_PATTERN = Pattern.compile("[0-9a-f]{64}");
+	private final static Pattern ID_PATTERN = Pattern.compile("[0-9a-f\\-]{36}");
+	private final static String SESSION_FILE = "session.json";
+	private final static String CONTENT_FILE = "content.part";
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	private final FileService fileService;
+	private final ObjectMapper objectMapper;
+
+	@Value("${file-storage.directory:./file-storage}")
+	private String directory;
+
+	@Value("${file-upload.chunk-size:5MB}")
+	private DataSize defaultChunkSize;
+
+	// ONLY THE LAST CHUNK MAY BE SHORTER, ALSO LIMITS THE CHUNK COUNT (AND THE received_chunks BITMAP) OF A SESSION
+	@Value("${file-upload.min-chunk-size:1MB}")
+	private DataSize minChunkSize;
+
+	@Value("${file-upload.max-chunk-size:50MB}")
+	private DataSize maxChunkSize;
+
+	@Value("${file-upload.max-size:2GB}")
+	private DataSize maxSize;
+
+	@Value("${file-upload.session-ttl-hours:24}")
+	private long sessionTtlHours;
+
+	private Path uploadsDirectory;
+
+	// CHUNKS OF ONE SESSION ARE WRITTEN IN PARALLEL, complete() AND delete() WAIT FOR THEM
+	private final Map<String, SessionLock> sessionLocks = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService executor;
+
+
+	@PostConstruct
+	public void start() throws IOException {
+		uploadsDirectory = Paths.get(directory).toAbsolutePath().normalize().resolve("uploads");
+		Files.createDirectories(uploadsDirectory);
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "file-upload-session-cleanup");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		executor.scheduleWithFixedDelay(this::deleteExpiredSessions, 1, 1, TimeUnit.HOURS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+
+	public ValidationResponse validate(UploadSession session) {
+
+		if (session == null) {
+			return new ValidationResponse(false, "provided NULL entity");
+		}
+
+		if (!StringUtils.hasText(session.getFile_name()) || StringUtils.cleanPath(session.getFile_name()).isEmpty()) {
+			return new ValidationResponse(false, "'file_name' is required");
+		}
+
+		if (!StringUtils.hasText(session.getFile_content_type())) {
+			return new ValidationResponse(false, "'file_content_type' is required");
+		}
+
+		if (session.getSize() <= 0 || session.getSize() > maxSize.toBytes()) {
+			return new ValidationResponse(false, "'size' must be between 1 and " + maxSize.toBytes() + " bytes");
+		}
+
+		if (session.getSha256() == null || !SHA256_PATTERN.matcher(session.getSha256().toLowerCase()).matches()) {
+			return new ValidationResponse(false, "'sha256' must be a hex encoded SHA-256 of the file");
+		}
+
+		if (session.getChunk_size() != 0 && (session.getChunk_size() < minChunkSize.toBytes() || session.getChunk_size() > maxChunkSize.toBytes())) {
+			return new ValidationResponse(false, "'chunk_size' must be between " + minChunkSize.toBytes() + " and " + maxChunkSize.toBytes() + " bytes, or 0 for the default (" + defaultChunkSize.toBytes() + " bytes)");
+		}
+
+		return new ValidationResponse(true, "validation successful");
+	}
+
+	public ValidationResponse validateChunk(UploadSession session, long offset, long contentLength) {
+
+		if (offset < 0 || offset >= session.getSize() || offset % session.getChunk_size() != 0) {
+			return new ValidationResponse(false, "offset must be a multiple of chunk_size (" + session.getChunk_size() + ") within the file");
+		}
+
+		// -1 = UNKNOWN (CHUNKED TRANSFER ENCODING), CHECKED WHILE WRITING
+		if (contentLength >= 0 && contentLength != session.chunkLength(offset)) {
+			return new ValidationResponse(false, "chunk at offset " + offset + " must be " + session.chunkLength(offset) + " bytes long");
+		}
+
+		return new ValidationResponse(true, "validation successful");
+	}
+
+
+	public UploadSession create(UploadSession request) throws IOException {
+		UploadSession session = new UploadSession();
+		session.setId(UUID.randomUUID().toString());
+		session.setFile_name(StringUtils.cleanPath(request.getFile_name()));
+		session.setFile_content_type(request.getFile_content_type());
+		session.setSize(request.getSize());
+		session.setSha256(request.getSha256().toLowerCase());
+		session.setChunk_size(request.getChunk_size() > 0 ? request.getChunk_size() : defaultChunkSize.toBytes());
+		session.setCreated_at(System.currentTimeMillis());
+
+		Path sessionDirectory = uploadsDirectory.resolve(session.getId());
+		Files.createDirectories(sessionDirectory);
+		Files.createFile(sessionDirectory.resolve(CONTENT_FILE));
+
+		writeSession(session);
+
+		return session;
+	}
+
+	public UploadSession get(String id) throws IOException {
+		Path sessionFile = resolve(id).map(path -> path.resolve(SESSION_FILE)).orElse(null);
+
+		if (sessionFile == null || !Files.exists(sessionFile)) {
+			return null;
+		}
+
+		return objectMapper.readValue(sessionFile.toFile(), UploadSession.class);
+	}
+
+	// WRITES ONE CHUNK AT ITS OFFSET, A CHUNK RECEIVED BEFORE IS SIMPLY OVERWRITTEN
+	public UploadSession writeChunk(String id, long offset, InputStream content) throws IOException {
+		SessionLock lock = lock(id);
+		lock.content.readLock().lock();
+
+		try {
+			UploadSession session = get(id);
+
+			if (session == null) {
+				return null;
+			}
+
+			long length = session.chunkLength(offset);
+			Path contentFile = uploadsDirectory.resolve(session.getId()).resolve(CONTENT_FILE);
+
+			// EVERY CHUNK HAS ITS OWN RANGE OF THE FILE, NO SESSION LOCK WHILE THE BODY IS READ
+			try (FileChannel channel = FileChannel.open(contentFile, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				long position = offset;
+				long written = 0;
+				int read;
+
+				while ((read = content.read(buffer.array(), 0, buffer.capacity())) != -1) {
+					if (written + read > length) {
+						throw new IOException("chunk at offset " + offset + " is longer than " + length + " bytes");
+					}
+
+					buffer.position(0).limit(read);
+
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+
+					written += read;
+				}
+
+				if (written != length) {
+					throw new IOException("chunk at offset " + offset + " has " + written + " bytes, expected " + length);
+				}
+			}
+
+			synchronized (lock.session) {
+				// READ AGAIN, OTHER CHUNKS MAY HAVE BEEN MARKED IN THE MEANTIME
+				session = get(id);
+
+				if (session == null) {
+					return null;
+				}
+
+				session.markReceived(offset);
+				writeSession(session);
+
+				return session;
+			}
+		} finally {
+			lock.content.readLock().unlock();
+		}
+	}
+
+	// NULL WHEN THE ASSEMBLED FILE DOESN'T MATCH THE SHA-256, RECEIVED CHUNKS ARE RESET THEN (THE CORRUPT ONE IS UNKNOWN)
+	public FileByteData complete(String id) throws IOException {
+		SessionLock lock = lock(id);
+		lock.content.writeLock().lock();
+
+		try {
+			UploadSession session = get(id);
+
+			if (session == null || !session.isComplete()) {
+				return null;
+			}
+
+			Path contentFile = uploadsDirectory.resolve(session.getId()).resolve(CONTENT_FILE);
+
+			if (!session.getSha256().equals(Sha256.of(contentFile))) {
+				session.clearReceived();
+				writeSession(session);
+				return null;
+			}
+
+			FileByteData fileByteData = new FileByteData();
+			fileByteData.setFile_name(session.getFile_name());
+			fileByteData.setFile_content_type(session.getFile_content_type());
+
+			try {
+				fileByteData = fileService.save(fileByteData, contentFile, session.getSha256());
+			} catch (IOException | RuntimeException e) {
+				// THE CONTENT FILE MAY BE IN THE BlobStore ALREADY (DELETED AS GARBAGE LATER), THE CHUNKS HAVE TO BE SENT AGAIN
+				if (!Files.exists(contentFile)) {
+					Files.createFile(contentFile);
+					session.clearReceived();
+					writeSession(session);
+				}
+
+				throw e;
+			}
+
+			delete(id);
+
+			return fileByteData;
+		} finally {
+			lock.content.writeLock().unlock();
+		}
+	}
+
+	public void delete(String id) throws IOException {
+		SessionLock lock = lock(id);
+		lock.content.writeLock().lock();
+
+		try {
+			Path sessionDirectory = resolve(id).orElse(null);
+
+			if (sessionDirectory != null) {
+				FileSystemUtils.deleteRecursively(sessionDirectory);
+			}
+
+			sessionLocks.remove(id);
+		} finally {
+			lock.content.writeLock().unlock();
+		}
+	}
+
+
+	private void writeSession(UploadSession session) throws IOException {
+		Path sessionDirectory = uploadsDirectory.resolve(session.getId());
+		Path tempFile = sessionDirectory.resolve(SESSION_FILE + ".tmp");
+
+		// REPLACED ATOMICALLY, A CRASH NEVER LEAVES A HALF WRITTEN SESSION
+		objectMapper.writeValue(tempFile.toFile(), session);
+		Files.move(tempFile, sessionDirectory.resolve(SESSION_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Optional<Path> resolve(String id) {
+		// ID COMES FROM THE URL, NEVER LET IT ESCAPE THE UPLOADS DIRECTORY
+		if (id == null || !ID_PATTERN.matcher(id).matches()) {
+			return Optional.empty();
+		}
+
+		return Optional.of(uploadsDirectory.resolve(id));
+	}
+
+	private SessionLock lock(String id) {
+		return sessionLocks.computeIfAbsent(id, key -> new SessionLock());
+	}
+
+	private void deleteExpiredSessions() {
+		FileTime expiredBefore = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(sessionTtlHours));
+
+		try (DirectoryStream<Path> sessions = Files.newDirectoryStream(uploadsDirectory)) {
+			for (Path sessionDirectory : sessions) {
+				Path sessionFile = sessionDirectory.resolve(SESSION_FILE);
+
+				// LAST MODIFIED = LAST RECEIVED CHUNK, ACTIVE UPLOADS ARE KEPT
+				if (!Files.exists(sessionFile) || Files.getLastModifiedTime(sessionFile).compareTo(expiredBefore) < 0) {
+					delete(sessionDirectory.getFileName().toString());
+				}
+			}
+		} catch (Exception e) {
+			log.warn("failed to delete expired upload sessions: " + e.getMessage());
+		}
+	}
+
+
+	private static class SessionLock {
+		// READ: WRITING A CHUNK, WRITE: COMPLETING OR DELETING THE SESSION
+		private final ReadWriteLock content = new ReentrantReadWriteLock();
+
+		// session.json (received_chunks) UPDATES, NEVER HELD WHILE A CHUNK IS READ FROM THE NETWORK
+		private final Object session = new Object();
+	}
+}
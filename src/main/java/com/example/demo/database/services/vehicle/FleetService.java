@@ -9,11 +9,15 @@ import com.example.demo.database.repositories.OrganisationRepository;
 import com.example.demo.database.repositories.vehicle.FleetRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -24,12 +28,24 @@ public class FleetService {
 	private final VehicleRepository vehicleRepository;
 	private final OrganisationRepository organisationRepository;
 
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<Fleet> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Fleet> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Fleet> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Fleet getById(Long id) {
 		if (id == null) {
@@ -170,7 +186,7 @@ public class FleetService {
 			}
 
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Fleet>().validateStringFields(fleet);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(fleet);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
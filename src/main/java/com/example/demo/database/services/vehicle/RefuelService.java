@@ -8,13 +8,18 @@ import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.repositories.vehicle.FileMetaDataRepository;
 import com.example.demo.database.repositories.vehicle.RefuelRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -25,12 +30,27 @@ public class RefuelService {
 	private final FileMetaDataRepository fileMetaDataRepository;
 	private final VehicleRepository vehicleRepository;
 
+	private final VehicleStatisticsService vehicleStatisticsService;
+	private final UsageRollupService usageRollupService;
+
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<Refuel> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Refuel> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Refuel> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Refuel getById(Long id) {
 		if (id == null) {
@@ -44,9 +64,59 @@ public class RefuelService {
 		return refuel.get();
 	}
 
+	/*  Copy of the values the vehicle statistics and usage rollups are computed from, taken before the refuel is changed.
+	 *  PATCH changes the managed entity itself and validate() commits it already (open session in view), so the database
+	 *  can't tell the old values by the time save() runs: controllers take this copy before applying the changes */
+	@Transactional
+	public Refuel getOriginalById(Long id) {
+		Refuel refuel = getById(id);
+
+		if (refuel == null) {
+			return null;
+		}
+
+		// PATCH REPLACES THE VEHICLE, IT NEVER CHANGES THE REFERENCED ONE
+		Refuel original = new Refuel();
+		original.setId(refuel.getId());
+		original.setVehicle(refuel.getVehicle());
+		original.setTimestamp(refuel.getTimestamp());
+		original.setRefuel_amount(refuel.getRefuel_amount());
+		original.setPrice(refuel.getPrice());
+
+		return original;
+	}
+
+	// CREATE, OR UPDATE WITH A NEW INSTANCE (PUT): THE ROW IN THE DATABASE IS STILL THE ORIGINAL
 	@Transactional
 	public Refuel save(Refuel refuel) {
-		return repository.save(refuel);
+		return save(refuel, refuel.getId() == null ? null : getOriginalById(refuel.getId()));
+	}
+
+	// original: getOriginalById() BEFORE THE CHANGES, NULL FOR NEW ENTITIES
+	@Transactional
+	public Refuel save(Refuel refuel, Refuel original) {
+		Refuel savedRefuel = repository.save(refuel);
+
+		if (original == null) {
+			vehicleStatisticsService.refuelsAdded(List.of(savedRefuel));
+			usageRollupService.refuelsAdded(List.of(savedRefuel));
+		} else {
+			vehicleStatisticsService.refuelsChanged(List.of(original), List.of(savedRefuel));
+			usageRollupService.refuelsChanged(List.of(original), List.of(savedRefuel));
+		}
+
+		return savedRefuel;
+	}
+
+	@Transactional
+	public List<Refuel> saveAll(List<Refuel> entities) {
+		List<Refuel> savedRefuels = BatchUtils.saveInBatches(entities, repository::save, entityManager);
+
+		// ONLY USED BY /batch POST, ALL OF THEM ARE NEW
+		vehicleStatisticsService.refuelsAdded(savedRefuels);
+		usageRollupService.refuelsAdded(savedRefuels);
+
+		return savedRefuels;
 	}
 
 	@Transactional
@@ -64,7 +134,14 @@ public class RefuelService {
 //			fileRepository.delete(file);
 		});
 
+		Refuel original = getOriginalById(refuel.getId());
+
 		repository.delete(refuel);
+
+		if (original != null) {
+			vehicleStatisticsService.refuelsChanged(List.of(original), List.of());
+			usageRollupService.refuelsChanged(List.of(original), List.of());
+		}
 	}
 
 	@Transactional
@@ -80,6 +157,9 @@ public class RefuelService {
 		});
 
 		repository.deleteAll();
+
+		vehicleStatisticsService.refreshAll();
+		usageRollupService.rebuildAll();
 	}
 
 
@@ -135,7 +215,7 @@ public class RefuelService {
 			}
 
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Refuel>().validateStringFields(refuel);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(refuel);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
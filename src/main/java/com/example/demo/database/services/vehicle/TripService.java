@@ -6,13 +6,18 @@ import com.example.demo.database.models.vehicle.Trip;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.repositories.vehicle.TripRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -22,12 +27,27 @@ public class TripService {
 
 	private final VehicleRepository vehicleRepository;
 
+	private final VehicleStatisticsService vehicleStatisticsService;
+	private final UsageRollupService usageRollupService;
+
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<Trip> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<Trip> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Trip> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Trip getById(Long id) {
 		if (id == null) {
@@ -50,9 +70,58 @@ public class TripService {
 		return repository.findAllByVehicleId(id);
 	}
 
+	/*  Copy of the values the vehicle statistics and usage rollups are computed from, taken before the trip is changed.
+	 *  PATCH changes the managed entity itself and validate() commits it already (open session in view), so the database
+	 *  can't tell the old values by the time save() runs: controllers take this copy before applying the changes */
+	@Transactional
+	public Trip getOriginalById(Long id) {
+		Trip trip = getById(id);
+
+		if (trip == null) {
+			return null;
+		}
+
+		// PATCH REPLACES THE VEHICLE, IT NEVER CHANGES THE REFERENCED ONE
+		Trip original = new Trip();
+		original.setId(trip.getId());
+		original.setVehicle(trip.getVehicle());
+		original.setTimestamp(trip.getTimestamp());
+		original.setKilometres_driven(trip.getKilometres_driven());
+
+		return original;
+	}
+
+	// CREATE, OR UPDATE WITH A NEW INSTANCE (PUT): THE ROW IN THE DATABASE IS STILL THE ORIGINAL
 	@Transactional
 	public Trip save(Trip trip) {
-		return repository.save(trip);
+		return save(trip, trip.getId() == null ? null : getOriginalById(trip.getId()));
+	}
+
+	// original: getOriginalById() BEFORE THE CHANGES, NULL FOR NEW ENTITIES
+	@Transactional
+	public Trip save(Trip trip, Trip original) {
+		Trip savedTrip = repository.save(trip);
+
+		if (original == null) {
+			vehicleStatisticsService.tripsAdded(List.of(savedTrip));
+			usageRollupService.tripsAdded(List.of(savedTrip));
+		} else {
+			vehicleStatisticsService.tripsChanged(List.of(original), List.of(savedTrip));
+			usageRollupService.tripsChanged(List.of(original), List.of(savedTrip));
+		}
+
+		return savedTrip;
+	}
+
+	@Transactional
+	public List<Trip> saveAll(List<Trip> entities) {
+		List<Trip> savedTrips = BatchUtils.saveInBatches(entities, repository::save, entityManager);
+
+		// ONLY USED BY /batch POST, ALL OF THEM ARE NEW
+		vehicleStatisticsService.tripsAdded(savedTrips);
+		usageRollupService.tripsAdded(savedTrips);
+
+		return savedTrips;
 	}
 
 	@Transactional
@@ -65,12 +134,22 @@ public class TripService {
 			return;
 		}
 
+		Trip original = getOriginalById(trip.getId());
+
 		repository.delete(trip);
+
+		if (original != null) {
+			vehicleStatisticsService.tripsChanged(List.of(original), List.of());
+			usageRollupService.tripsChanged(List.of(original), List.of());
+		}
 	}
 
 	@Transactional
 	public void deleteAll() {
 		repository.deleteAll();
+
+		vehicleStatisticsService.refreshAll();
+		usageRollupService.rebuildAll();
 	}
 
 
@@ -115,7 +194,7 @@ public class TripService {
 			trip.setVehicle(vehicle.get());
 
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Trip>().validateStringFields(trip);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(trip);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -0,0 +1,205 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.*;
+import com.example.demo.database.repositories.vehicle.UsageRollupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/*  Daily usage rollups (distances, trips, refuels) per vehicle, the source of the /usage reports.
+ *  Only days are stored: a week or a month is at most 31 rows per vehicle, fleets and organisations are joined at query
+ *  time, so changes of fleet / organisation membership need no rollup maintenance.
+ *  Called by the entity services inside their write transactions with the rows before (removed) and after (added) the
+ *  write, like VehicleStatisticsService: each affected (vehicle, day) row changes by the difference, only the odometer
+ *  min / max of a day that lost a reading is recomputed from the readings of that day.
+ *  VehicleStatisticsInitializer rebuilds everything when the table is empty or when started with --rebuild-usage-rollups */
+@Service
+@RequiredArgsConstructor
+public class UsageRollupService {
+
+	private final UsageRollupRepository repository;
+
+	private final EntityManager entityManager;
+
+	// LOCK ORDER OF THE UPSERTS
+	private final static Comparator<UsageRollup.Key> KEY_ORDER =
+			Comparator.comparing(UsageRollup.Key::getVehicle_id).thenComparing(UsageRollup.Key::getDay);
+
+
+	public List<UsageBucket> getByVehicleId(Long vehicleId, UsageBucket.Size size, LocalDate from, LocalDate to) {
+		return toBuckets(repository.findBucketsByVehicleId(vehicleId, unit(size), from, to.plusDays(1)));
+	}
+
+	public List<UsageBucket> getByFleetId(Long fleetId, UsageBucket.Size size, LocalDate from, LocalDate to) {
+		return toBuckets(repository.findBucketsByFleetId(fleetId, unit(size), from, to.plusDays(1)));
+	}
+
+	public List<UsageBucket> getByOrganisationId(Long organisationId, UsageBucket.Size size, LocalDate from, LocalDate to) {
+		return toBuckets(repository.findBucketsByOrganisationId(organisationId, unit(size), from, to.plusDays(1)));
+	}
+
+	@Transactional
+	public boolean isEmpty() {
+		return repository.count() == 0;
+	}
+
+
+	@Transactional
+	public void distancesAdded(Collection<Distance> distances) {
+		distancesChanged(List.of(), distances);
+	}
+
+	// removed: COPIES OF THE ROWS BEFORE AN UPDATE / DELETE (getOriginalById() OF THE ENTITY SERVICES), added: SAVED ROWS
+	@Transactional
+	public void distancesChanged(Collection<Distance> removed, Collection<Distance> added) {
+		Map<UsageRollup.Key, List<Distance>> removedByDay = groupByVehicleDay(removed, Distance::getVehicle, Distance::getTimestamp);
+		Map<UsageRollup.Key, List<Distance>> addedByDay = groupByVehicleDay(added, Distance::getVehicle, Distance::getTimestamp);
+
+		if (!removedByDay.isEmpty()) {
+			// RECOMPUTED BY SQL, PENDING CHANGES OF THE CALLER MUST BE IN THE DATABASE FIRST
+			entityManager.flush();
+		}
+
+		for (UsageRollup.Key key : keys(removedByDay, addedByDay)) {
+			// THE MIN / MAX OF A DAY THAT LOST A READING CAN'T BE UN-APPLIED, THE RECOMPUTE COUNTS ITS SAVED READINGS TOO
+			if (removedByDay.containsKey(key)) {
+				LocalDateTime from = key.getDay().atStartOfDay();
+				repository.recomputeDistances(key.getVehicle_id(), from, from.plusDays(1));
+				continue;
+			}
+
+			IntSummaryStatistics kilometres = addedByDay.get(key).stream().mapToInt(Distance::getKilometres).summaryStatistics();
+
+			repository.addDistances(key.getVehicle_id(), key.getDay(), kilometres.getCount(), kilometres.getMin(), kilometres.getMax());
+		}
+	}
+
+	@Transactional
+	public void tripsAdded(Collection<Trip> trips) {
+		tripsChanged(List.of(), trips);
+	}
+
+	@Transactional
+	public void tripsChanged(Collection<Trip> removed, Collection<Trip> added) {
+		Map<UsageRollup.Key, List<Trip>> removedByDay = groupByVehicleDay(removed, Trip::getVehicle, Trip::getTimestamp);
+		Map<UsageRollup.Key, List<Trip>> addedByDay = groupByVehicleDay(added, Trip::getVehicle, Trip::getTimestamp);
+
+		for (UsageRollup.Key key : keys(removedByDay, addedByDay)) {
+			List<Trip> dayRemoved = removedByDay.getOrDefault(key, List.of());
+			List<Trip> dayAdded = addedByDay.getOrDefault(key, List.of());
+
+			repository.addTrips(key.getVehicle_id(), key.getDay(), dayAdded.size() - dayRemoved.size(),
+					sumLong(dayAdded, Trip::getKilometres_driven) - sumLong(dayRemoved, Trip::getKilometres_driven));
+		}
+	}
+
+	@Transactional
+	public void refuelsAdded(Collection<Refuel> refuels) {
+		refuelsChanged(List.of(), refuels);
+	}
+
+	@Transactional
+	public void refuelsChanged(Collection<Refuel> removed, Collection<Refuel> added) {
+		Map<UsageRollup.Key, List<Refuel>> removedByDay = groupByVehicleDay(removed, Refuel::getVehicle, Refuel::getTimestamp);
+		Map<UsageRollup.Key, List<Refuel>> addedByDay = groupByVehicleDay(added, Refuel::getVehicle, Refuel::getTimestamp);
+
+		for (UsageRollup.Key key : keys(removedByDay, addedByDay)) {
+			List<Refuel> dayRemoved = removedByDay.getOrDefault(key, List.of());
+			List<Refuel> dayAdded = addedByDay.getOrDefault(key, List.of());
+
+			repository.addRefuels(key.getVehicle_id(), key.getDay(), dayAdded.size() - dayRemoved.size(),
+					sumDouble(dayAdded, Refuel::getRefuel_amount) - sumDouble(dayRemoved, Refuel::getRefuel_amount),
+					sumDouble(dayAdded, Refuel::getPrice) - sumDouble(dayRemoved, Refuel::getPrice));
+		}
+	}
+
+	@Transactional
+	public void rebuildAll() {
+		entityManager.flush();
+
+		repository.deleteAllInBatch();
+		repository.recomputeAll();
+	}
+
+	@Transactional
+	public void deleteByVehicleIds(Collection<Long> vehicleIds) {
+		repository.deleteAllByVehicleIdIn(vehicleIds);
+	}
+
+	@Transactional
+	public void deleteAll() {
+		repository.deleteAllInBatch();
+	}
+
+
+	private static String unit(UsageBucket.Size size) {
+		return size.name().toLowerCase();
+	}
+
+	private static List<UsageBucket> toBuckets(List<Object[]> rows) {
+		List<UsageBucket> buckets = new ArrayList<>(rows.size());
+
+		for (Object[] row : rows) {
+			buckets.add(new UsageBucket(
+					((java.sql.Date) row[0]).toLocalDate(),
+					toLong(row[1]),
+					toLong(row[2]),
+					toLong(row[3]),
+					toLong(row[4]),
+					toLong(row[5]),
+					toDouble(row[6]),
+					toDouble(row[7])));
+		}
+
+		return buckets;
+	}
+
+	// SUM OF A bigint COLUMN IS numeric (BigDecimal), SUM OF NOTHING IS NULL
+	private static long toLong(Object value) {
+		return value == null ? 0 : ((Number) value).longValue();
+	}
+
+	private static double toDouble(Object value) {
+		return value == null ? 0 : ((Number) value).doubleValue();
+	}
+
+	private static Set<UsageRollup.Key> keys(Map<UsageRollup.Key, ?> removedByDay, Map<UsageRollup.Key, ?> addedByDay) {
+		Set<UsageRollup.Key> keys = new TreeSet<>(KEY_ORDER);
+		keys.addAll(removedByDay.keySet());
+		keys.addAll(addedByDay.keySet());
+
+		return keys;
+	}
+
+	// NULL VALUES OF OPTIONAL COLUMNS COUNT AS 0
+	private static <T> long sumLong(Collection<T> entities, Function<T, Integer> getValue) {
+		return entities.stream().map(getValue).filter(Objects::nonNull).mapToLong(Integer::longValue).sum();
+	}
+
+	private static <T> double sumDouble(Collection<T> entities, Function<T, Float> getValue) {
+		return entities.stream().map(getValue).filter(Objects::nonNull).mapToDouble(Float::doubleValue).sum();
+	}
+
+	/*  Sorted by vehicle and day: the upserts lock the rows in this order, so two batches touching the same days wait for
+	 *  each other instead of deadlocking (HashMap order differs between batches) */
+	private static <T> Map<UsageRollup.Key, List<T>> groupByVehicleDay(Collection<T> entities, Function<T, Vehicle> getVehicle, Function<T, LocalDateTime> getTimestamp) {
+		Map<UsageRollup.Key, List<T>> entitiesByDay = new TreeMap<>(KEY_ORDER);
+
+		for (T entity : entities) {
+			Vehicle vehicle = getVehicle.apply(entity);
+			LocalDateTime timestamp = getTimestamp.apply(entity);
+
+			if (vehicle != null && vehicle.getId() != null && timestamp != null) {
+				entitiesByDay.computeIfAbsent(new UsageRollup.Key(vehicle.getId(), timestamp.toLocalDate()), key -> new ArrayList<>()).add(entity);
+			}
+		}
+
+		return entitiesByDay;
+	}
+}
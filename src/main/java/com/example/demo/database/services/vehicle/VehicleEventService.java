@@ -7,13 +7,18 @@ import com.example.demo.database.models.vehicle.VehicleEvent;
 import com.example.demo.database.repositories.vehicle.FileMetaDataRepository;
 import com.example.demo.database.repositories.vehicle.VehicleEventRepository;
 import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -24,12 +29,26 @@ public class VehicleEventService {
 	private final FileMetaDataRepository fileMetaDataRepository;
 	private final VehicleRepository vehicleRepository;
 
+	private final VehicleStatisticsService vehicleStatisticsService;
+
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<VehicleEvent> getAll() {
 		return repository.findAll();
 	}
 
+	@Transactional
+	public List<VehicleEvent> getPage(Long after, Pageable pageable) {
+		return repository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<VehicleEvent> consumer) {
+		PaginationUtils.forEachDetached(repository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public VehicleEvent getById(Long id) {
 		if (id == null) {
@@ -52,9 +71,54 @@ public class VehicleEventService {
 		return repository.findAllByVehicleId(id);
 	}
 
+	/*  Copy of the values the vehicle statistics are computed from, taken before the event is changed.
+	 *  PATCH changes the managed entity itself and validate() commits it already (open session in view), so the database
+	 *  can't tell the old values by the time save() runs: controllers take this copy before applying the changes */
+	@Transactional
+	public VehicleEvent getOriginalById(Long id) {
+		VehicleEvent event = getById(id);
+
+		if (event == null) {
+			return null;
+		}
+
+		// PATCH REPLACES THE VEHICLE, IT NEVER CHANGES THE REFERENCED ONE
+		VehicleEvent original = new VehicleEvent();
+		original.setId(event.getId());
+		original.setVehicle(event.getVehicle());
+		original.setTimestamp(event.getTimestamp());
+
+		return original;
+	}
+
+	// CREATE, OR UPDATE WITH A NEW INSTANCE (PUT): THE ROW IN THE DATABASE IS STILL THE ORIGINAL
 	@Transactional
 	public VehicleEvent save(VehicleEvent event) {
-		return repository.save(event);
+		return save(event, event.getId() == null ? null : getOriginalById(event.getId()));
+	}
+
+	// original: getOriginalById() BEFORE THE CHANGES, NULL FOR NEW ENTITIES
+	@Transactional
+	public VehicleEvent save(VehicleEvent event, VehicleEvent original) {
+		VehicleEvent savedEvent = repository.save(event);
+
+		if (original == null) {
+			vehicleStatisticsService.vehicleEventsAdded(List.of(savedEvent));
+		} else {
+			vehicleStatisticsService.vehicleEventsChanged(List.of(original), List.of(savedEvent));
+		}
+
+		return savedEvent;
+	}
+
+	@Transactional
+	public List<VehicleEvent> saveAll(List<VehicleEvent> entities) {
+		List<VehicleEvent> savedVehicleEvents = BatchUtils.saveInBatches(entities, repository::save, entityManager);
+
+		// ONLY USED BY /batch POST, ALL OF THEM ARE NEW
+		vehicleStatisticsService.vehicleEventsAdded(savedVehicleEvents);
+
+		return savedVehicleEvents;
 	}
 
 	@Transactional
@@ -72,7 +136,13 @@ public class VehicleEventService {
 //			fileRepository.delete(file);
 		});
 
+		VehicleEvent original = getOriginalById(event.getId());
+
 		repository.delete(event);
+
+		if (original != null) {
+			vehicleStatisticsService.vehicleEventsChanged(List.of(original), List.of());
+		}
 	}
 
 	@Transactional
@@ -88,6 +158,8 @@ public class VehicleEventService {
 		});
 
 		repository.deleteAll();
+
+		vehicleStatisticsService.refreshAll();
 	}
 
 
@@ -135,7 +207,7 @@ public class VehicleEventService {
 
 
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<VehicleEvent>().validateStringFields(event);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(event);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
@@ -7,17 +7,24 @@ import com.example.demo.database.models.vehicle.Fleet;
 import com.example.demo.database.models.vehicle.Vehicle;
 import com.example.demo.database.repositories.OrganisationRepository;
 import com.example.demo.database.repositories.vehicle.*;
+import com.example.demo.utils.BatchUtils;
 import com.example.demo.utils.FieldReflectionUtils;
+import com.example.demo.utils.PaginationUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class VehicleService {
 
+	private final static int BULK_DELETE_CHUNK_SIZE = 1000;
+
 	private final VehicleRepository vehicleRepository;
 
 	private final DistanceRepository distanceRepository;
@@ -30,12 +37,27 @@ public class VehicleService {
 
 	private final OrganisationRepository organisationRepository;
 
+	private final VehicleStatisticsService vehicleStatisticsService;
+	private final UsageRollupService usageRollupService;
+
+	private final EntityManager entityManager;
+
 
 	@Transactional
 	public List<Vehicle> getAll() {
 		return vehicleRepository.findAll();
 	}
 
+	@Transactional
+	public List<Vehicle> getPage(Long after, Pageable pageable) {
+		return vehicleRepository.findPageAfterId(PaginationUtils.getCursor(after), pageable);
+	}
+
+	@Transactional
+	public void streamAll(Consumer<Vehicle> consumer) {
+		PaginationUtils.forEachDetached(vehicleRepository.streamAll(), entityManager, consumer);
+	}
+
 	@Transactional
 	public Vehicle getById(Long id) {
 		if (id == null) {
@@ -51,70 +73,60 @@ public class VehicleService {
 		return vehicle.get();
 	}
 
+	@Transactional
+	public boolean existsById(Long id) {
+		return id != null && vehicleRepository.existsById(id);
+	}
+
 	@Transactional
 	public Vehicle save(Vehicle vehicle) {
 		return vehicleRepository.save(vehicle);
 	}
 
+	@Transactional
+	public List<Vehicle> saveAll(List<Vehicle> entities) {
+		return BatchUtils.saveInBatches(entities, vehicleRepository::save, entityManager);
+	}
+
 	@Transactional
 	public void delete(Vehicle vehicle) {
 		if (vehicle == null || vehicle.getId() == null) {
 			return;
 		}
 
-		// FIRST DELETE/SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY
-
-		distanceRepository.findAllByVehicleId(vehicle.getId()).forEach(distance -> {
-			distance.setVehicle(null);
-			distanceRepository.save(distance);
-
-//			distanceRepository.delete(distance);
-		});
-
-		equipmentRepository.findAllByVehicleId(vehicle.getId()).forEach(equipment -> {
-			equipment.setVehicle(null);
-			equipmentRepository.save(equipment);
-
-//			equipmentRepository.delete(equipment);
-		});
-
-		fileMetaDataRepository.findAllByVehicleId(vehicle.getId()).forEach(file -> {
-			file.setVehicle(null);
-			fileMetaDataRepository.save(file);
-
-//			fileRepository.delete(file);
-		});
-
+		deleteAllById(List.of(vehicle.getId()));
+	}
 
-		if (vehicle.getFleets() != null) {
-			vehicle.getFleets().forEach(fleet -> {
-				fleet.getVehicles().remove(vehicle);
-				fleetRepository.save(fleet);
-			});
+	@Transactional
+	public int deleteAllById(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) {
+			return 0;
 		}
 
-		refuelRepository.findAllByVehicleId(vehicle.getId()).forEach(refuel -> {
-			refuel.setVehicle(null);
-			refuelRepository.save(refuel);
+		List<Long> idList = new ArrayList<>(new HashSet<>(ids));
+		int deletedCount = 0;
 
-//			refuelRepository.delete(refuel);
-		});
+		// IN-LISTS ARE SPLIT TO STAY UNDER THE JDBC BIND PARAMETER LIMIT, EACH CHUNK IS A CONSTANT NUMBER OF STATEMENTS
+		for (int from = 0; from < idList.size(); from += BULK_DELETE_CHUNK_SIZE) {
+			List<Long> chunk = idList.subList(from, Math.min(from + BULK_DELETE_CHUNK_SIZE, idList.size()));
 
-		tripRepository.findAllByVehicleId(vehicle.getId()).forEach(trip -> {
-			trip.setVehicle(null);
-			tripRepository.save(trip);
+			// FIRST SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY, ONE UPDATE PER TABLE
 
-//			tripRepository.delete(trip);
-		});
+			distanceRepository.detachFromVehicles(chunk);
+			equipmentRepository.detachFromVehicles(chunk);
+			fileMetaDataRepository.detachFromVehicles(chunk);
+			refuelRepository.detachFromVehicles(chunk);
+			tripRepository.detachFromVehicles(chunk);
+			vehicleEventRepository.detachFromVehicles(chunk);
 
-		vehicleEventRepository.findAllByVehicleId(vehicle.getId()).forEach(event -> {
-			event.setVehicle(null);
-			vehicleEventRepository.save(event);
+			vehicleRepository.deleteFleetLinks(chunk);
+			vehicleStatisticsService.deleteByVehicleIds(chunk);
+			usageRollupService.deleteByVehicleIds(chunk);
 
-//			eventRepository.delete(event);
-		});
+			deletedCount += vehicleRepository.deleteAllByIdIn(chunk);
+		}
 
-		vehicleRepository.delete(vehicle);
+		return deletedCount;
 	}
 
 	@Transactional
@@ -122,56 +134,18 @@ public class VehicleService {
 
 		// FIRST DELETE/SET NULL ALL ENTITIES THAT HAVE FOREIGN KEY OF CURRENT ENTITY
 
-		distanceRepository.findAll().forEach(distance -> {
-			distance.setVehicle(null);
-			distanceRepository.save(distance);
-
-//			distanceRepository.delete(distance);
-		});
-
-		equipmentRepository.findAll().forEach(equipment -> {
-			equipment.setVehicle(null);
-			equipmentRepository.save(equipment);
-
-//			equipmentRepository.delete(equipment);
-		});
-
-		fileMetaDataRepository.findAll().forEach(file -> {
-			file.setVehicle(null);
-			fileMetaDataRepository.save(file);
-
-//			fileRepository.delete(file);
-		});
-
-		fleetRepository.findAll().forEach(fleet -> {
-			fleet.getVehicles().clear();
-			fleetRepository.save(fleet);
-
-//			fleetRepository.delete(fleet);
-		});
-
-		refuelRepository.findAll().forEach(refuel -> {
-			refuel.setVehicle(null);
-			refuelRepository.save(refuel);
-
-//			refuelRepository.delete(refuel);
-		});
-
-		tripRepository.findAll().forEach(trip -> {
-			trip.setVehicle(null);
-			tripRepository.save(trip);
-
-//			tripRepository.delete(trip);
-		});
-
-		vehicleEventRepository.findAll().forEach(event -> {
-			event.setVehicle(null);
-			vehicleEventRepository.save(event);
+		distanceRepository.detachFromAllVehicles();
+		equipmentRepository.detachFromAllVehicles();
+		fileMetaDataRepository.detachFromAllVehicles();
+		refuelRepository.detachFromAllVehicles();
+		tripRepository.detachFromAllVehicles();
+		vehicleEventRepository.detachFromAllVehicles();
 
-//			eventRepository.delete(event);
-		});
+		vehicleRepository.deleteAllFleetLinks();
+		vehicleStatisticsService.deleteAll();
+		usageRollupService.deleteAll();
 
-		vehicleRepository.deleteAll();
+		vehicleRepository.deleteAllInBatch();
 	}
 
 
@@ -235,7 +209,7 @@ public class VehicleService {
 				vehicle.setOrganisation(organisation.get());
 			}
 
-			ValidationResponse stringFieldsValidation = new FieldReflectionUtils<Vehicle>().validateStringFields(vehicle);
+			ValidationResponse stringFieldsValidation = FieldReflectionUtils.validateStringFields(vehicle);
 
 			if (!stringFieldsValidation.isValid()) {
 				return stringFieldsValidation;
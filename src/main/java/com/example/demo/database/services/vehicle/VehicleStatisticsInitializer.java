@@ -0,0 +1,42 @@
+package com.example.demo.database.services.vehicle;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/*  Computes the statistics and the daily usage rollups of all vehicles from their distances, trips, refuels and events
+ *  when their table is empty (first start with VehicleStatisticsService / UsageRollupService), or on demand:
+ *      java -jar vedia-vehicles.jar --rebuild-vehicle-statistics --rebuild-usage-rollups */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VehicleStatisticsInitializer implements ApplicationRunner {
+
+	public final static String OPTION = "rebuild-vehicle-statistics";
+	public final static String USAGE_ROLLUPS_OPTION = "rebuild-usage-rollups";
+
+	private final VehicleStatisticsService vehicleStatisticsService;
+	private final UsageRollupService usageRollupService;
+
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (args.containsOption(OPTION) || vehicleStatisticsService.isEmpty()) {
+			log.info("computing vehicle statistics");
+
+			vehicleStatisticsService.refreshAll();
+
+			log.info("vehicle statistics computed");
+		}
+
+		if (args.containsOption(USAGE_ROLLUPS_OPTION) || usageRollupService.isEmpty()) {
+			log.info("computing usage rollups");
+
+			usageRollupService.rebuildAll();
+
+			log.info("usage rollups computed");
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.*;
+import com.example.demo.database.repositories.vehicle.VehicleStatisticsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/*  Per-vehicle aggregates (latest odometer, distance / trip / refuel totals, last vehicle event), one row per vehicle,
+ *  so pages and dashboards read one row instead of scanning the vehicle's history.
+ *  Called by the entity services inside their write transactions with the rows before (removed) and after (added) the write:
+ *  counts and sums of each affected vehicle change by the difference in one upsert, only the latest odometer and the last
+ *  event timestamp of a vehicle that lost a row are looked up again. Rows are created on the first write,
+ *  VehicleStatisticsInitializer computes all of them when the table is empty */
+@Service
+@RequiredArgsConstructor
+public class VehicleStatisticsService {
+
+	private final VehicleStatisticsRepository repository;
+
+	private final EntityManager entityManager;
+
+
+	@Transactional
+	public List<VehicleStatistics> getAll() {
+		return repository.findAll();
+	}
+
+	// VEHICLE WITHOUT ANY DISTANCE, TRIP, REFUEL OR EVENT HAS NO ROW YET -> ALL ZERO
+	@Transactional
+	public VehicleStatistics getByVehicleId(Long vehicleId) {
+		return repository.findById(vehicleId).orElseGet(() -> new VehicleStatistics(vehicleId));
+	}
+
+	@Transactional
+	public boolean isEmpty() {
+		return repository.count() == 0;
+	}
+
+
+	@Transactional
+	public void distancesAdded(Collection<Distance> distances) {
+		distancesChanged(List.of(), distances);
+	}
+
+	// removed: COPIES OF THE ROWS BEFORE AN UPDATE / DELETE (getOriginalById() OF THE ENTITY SERVICES), added: SAVED ROWS
+	@Transactional
+	public void distancesChanged(Collection<Distance> removed, Collection<Distance> added) {
+		Map<Long, List<Distance>> removedByVehicleId = groupByVehicleId(removed, Distance::getVehicle);
+		Map<Long, List<Distance>> addedByVehicleId = groupByVehicleId(added, Distance::getVehicle);
+
+		for (Long vehicleId : vehicleIds(removedByVehicleId, addedByVehicleId)) {
+			List<Distance> vehicleRemoved = removedByVehicleId.getOrDefault(vehicleId, List.of());
+			List<Distance> vehicleAdded = addedByVehicleId.getOrDefault(vehicleId, List.of());
+
+			long count = vehicleAdded.size() - vehicleRemoved.size();
+			long kilometres = sumLong(vehicleAdded, Distance::getKilometres) - sumLong(vehicleRemoved, Distance::getKilometres);
+
+			if (vehicleAdded.isEmpty()) {
+				repository.addDistanceTotals(vehicleId, count, kilometres);
+			} else {
+				Distance latest = Collections.max(vehicleAdded, Comparator.comparing(Distance::getTimestamp));
+				repository.addDistances(vehicleId, count, kilometres, latest.getKilometres(), latest.getTimestamp());
+			}
+
+			// THE REMOVED READING MAY HAVE BEEN THE LATEST ONE, LOOKED UP BY SQL, PENDING CHANGES MUST BE IN THE DATABASE FIRST
+			if (!vehicleRemoved.isEmpty()) {
+				entityManager.flush();
+				repository.refreshLatestOdometer(vehicleId);
+			}
+		}
+	}
+
+	@Transactional
+	public void tripsAdded(Collection<Trip> trips) {
+		tripsChanged(List.of(), trips);
+	}
+
+	@Transactional
+	public void tripsChanged(Collection<Trip> removed, Collection<Trip> added) {
+		Map<Long, List<Trip>> removedByVehicleId = groupByVehicleId(removed, Trip::getVehicle);
+		Map<Long, List<Trip>> addedByVehicleId = groupByVehicleId(added, Trip::getVehicle);
+
+		for (Long vehicleId : vehicleIds(removedByVehicleId, addedByVehicleId)) {
+			List<Trip> vehicleRemoved = removedByVehicleId.getOrDefault(vehicleId, List.of());
+			List<Trip> vehicleAdded = addedByVehicleId.getOrDefault(vehicleId, List.of());
+
+			repository.addTrips(vehicleId, vehicleAdded.size() - vehicleRemoved.size(),
+					sumLong(vehicleAdded, Trip::getKilometres_driven) - sumLong(vehicleRemoved, Trip::getKilometres_driven));
+		}
+	}
+
+	@Transactional
+	public void refuelsAdded(Collection<Refuel> refuels) {
+		refuelsChanged(List.of(), refuels);
+	}
+
+	@Transactional
+	public void refuelsChanged(Collection<Refuel> removed, Collection<Refuel> added) {
+		Map<Long, List<Refuel>> removedByVehicleId = groupByVehicleId(removed, Refuel::getVehicle);
+		Map<Long, List<Refuel>> addedByVehicleId = groupByVehicleId(added, Refuel::getVehicle);
+
+		for (Long vehicleId : vehicleIds(removedByVehicleId, addedByVehicleId)) {
+			List<Refuel> vehicleRemoved = removedByVehicleId.getOrDefault(vehicleId, List.of());
+			List<Refuel> vehicleAdded = addedByVehicleId.getOrDefault(vehicleId, List.of());
+
+			repository.addRefuels(vehicleId, vehicleAdded.size() - vehicleRemoved.size(),
+					sumDouble(vehicleAdded, Refuel::getRefuel_amount) - sumDouble(vehicleRemoved, Refuel::getRefuel_amount),
+					sumDouble(vehicleAdded, Refuel::getPrice) - sumDouble(vehicleRemoved, Refuel::getPrice));
+		}
+	}
+
+	@Transactional
+	public void vehicleEventsAdded(Collection<VehicleEvent> events) {
+		vehicleEventsChanged(List.of(), events);
+	}
+
+	@Transactional
+	public void vehicleEventsChanged(Collection<VehicleEvent> removed, Collection<VehicleEvent> added) {
+		Map<Long, List<VehicleEvent>> removedByVehicleId = groupByVehicleId(removed, VehicleEvent::getVehicle);
+		Map<Long, List<VehicleEvent>> addedByVehicleId = groupByVehicleId(added, VehicleEvent::getVehicle);
+
+		for (Long vehicleId : vehicleIds(removedByVehicleId, addedByVehicleId)) {
+			List<VehicleEvent> vehicleRemoved = removedByVehicleId.getOrDefault(vehicleId, List.of());
+			List<VehicleEvent> vehicleAdded = addedByVehicleId.getOrDefault(vehicleId, List.of());
+
+			long count = vehicleAdded.size() - vehicleRemoved.size();
+			Optional<LocalDateTime> lastTimestamp = vehicleAdded.stream().map(VehicleEvent::getTimestamp).filter(Objects::nonNull).max(Comparator.naturalOrder());
+
+			if (lastTimestamp.isEmpty()) {
+				repository.addVehicleEventCount(vehicleId, count);
+			} else {
+				repository.addVehicleEvents(vehicleId, count, lastTimestamp.get());
+			}
+
+			if (!vehicleRemoved.isEmpty()) {
+				entityManager.flush();
+				repository.refreshLastVehicleEvent(vehicleId);
+			}
+		}
+	}
+
+	@Transactional
+	public void refreshAll() {
+		entityManager.flush();
+		repository.recomputeAll();
+	}
+
+	@Transactional
+	public void deleteByVehicleIds(Collection<Long> vehicleIds) {
+		repository.deleteAllByVehicleIdIn(vehicleIds);
+	}
+
+	@Transactional
+	public void deleteAll() {
+		repository.deleteAllInBatch();
+	}
+
+
+	// ASCENDING LIKE groupByVehicleId()
+	private static Set<Long> vehicleIds(Map<Long, ?> removedByVehicleId, Map<Long, ?> addedByVehicleId) {
+		Set<Long> vehicleIds = new TreeSet<>(removedByVehicleId.keySet());
+		vehicleIds.addAll(addedByVehicleId.keySet());
+
+		return vehicleIds;
+	}
+
+	// NULL VALUES OF OPTIONAL COLUMNS COUNT AS 0
+	private static <T> long sumLong(Collection<T> entities, Function<T, Integer> getValue) {
+		return entities.stream().map(getValue).filter(Objects::nonNull).mapToLong(Integer::longValue).sum();
+	}
+
+	private static <T> double sumDouble(Collection<T> entities, Function<T, Float> getValue) {
+		return entities.stream().map(getValue).filter(Objects::nonNull).mapToDouble(Float::doubleValue).sum();
+	}
+
+	/*  Sorted by vehicle id: the upserts lock the rows in this order, so two batches touching the same vehicles wait for
+	 *  each other instead of deadlocking (HashMap order differs between batches of different sizes) */
+	private static <T> Map<Long, List<T>> groupByVehicleId(Collection<T> entities, Function<T, Vehicle> getVehicle) {
+		Map<Long, List<T>> entitiesByVehicleId = new TreeMap<>();
+
+		for (T entity : entities) {
+			Vehicle vehicle = getVehicle.apply(entity);
+
+			if (vehicle != null && vehicle.getId() != null) {
+				entitiesByVehicleId.computeIfAbsent(vehicle.getId(), vehicleId -> new ArrayList<>()).add(entity);
+			}
+		}
+
+		return entitiesByVehicleId;
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.demo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Verified JWT tokens -> user details, so an authenticated request doesn't parse the token or load the user again.
+// Entries are dropped when their token expires, the whole cache is invalidated when a transaction that saved or deleted
+// any user commits (password, role, organisation or username may have changed).
+// A request that loaded its user before such a commit can only cache it with the generation it read before the load,
+// every invalidation starts a new generation.
+@Component
+public class JwtAuthenticationCache {
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+
+    public UserDetails get(String token) {
+        Entry entry = entries.get(token);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(token, entry);
+            return null;
+        }
+
+        return entry.userDetails;
+    }
+
+    // READ BEFORE THE USER IS LOADED FROM THE DATABASE, PASSED TO put()
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(String token, UserDetails userDetails, long expiresAt, long loadedInGeneration) {
+        if (generation.get() != loadedInGeneration) {
+            return;
+        }
+
+        if (entries.size() >= maxSize) {
+            removeExpired();
+
+            // STILL FULL -> START OVER, ACTIVE TOKENS ARE CACHED AGAIN ON THEIR NEXT REQUEST
+            if (entries.size() >= maxSize) {
+                entries.clear();
+            }
+        }
+
+        Entry entry = new Entry(userDetails, expiresAt);
+        entries.put(token, entry);
+
+        // INVALIDATED BETWEEN THE CHECK ABOVE AND put(), THE CLEAR MAY HAVE RUN BEFORE IT
+        if (generation.get() != loadedInGeneration) {
+            entries.remove(token, entry);
+        }
+    }
+
+    // NEW GENERATION FIRST: A put() THAT STILL SEES THE OLD ONE IS EITHER CLEARED HERE OR REMOVES ITS OWN ENTRY
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    // CLEARED BEFORE THE COMMIT, A CONCURRENT REQUEST WOULD CACHE THE OLD USER AGAIN. WITHOUT A TRANSACTION: IMMEDIATELY
+    public void invalidateAllAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateAll();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateAll();
+            }
+        });
+    }
+
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    private static class Entry {
+        private final UserDetails userDetails;
+        private final long expiresAt;
+
+        private Entry(UserDetails userDetails, long expiresAt) {
+            this.userDetails = userDetails;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.security;
 
 import com.example.demo.database.services.UserService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -26,47 +27,71 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
+    @Autowired
+    private JwtAuthenticationCache jwtAuthenticationCache;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
 
         final String requestTokenHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwtToken = null;
-
         // JWT Token is in the form "Bearer token". Remove Bearer word and get only the Token
-        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
-
-            try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
-            } catch (IllegalArgumentException e) {
-                logger.info("Unable to get JWT Token");
-            } catch (ExpiredJwtException e) {
-                logger.info("JWT Token has expired");
+        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ") && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwtToken = requestTokenHeader.substring(7);
+
+            // Token verified before -> no parsing and no database lookup
+            UserDetails userDetails = jwtAuthenticationCache.get(jwtToken);
+
+            if (userDetails == null) {
+                userDetails = loadUserDetails(jwtToken);
+            }
+
+            if (userDetails != null) {
+                UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                // After setting the Authentication in the context, we specify that the current user is authenticated. So it passes the Spring Security Configurations successfully.
+                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
         }
 
+        chain.doFilter(request, response);
+    }
+
+    // parses and verifies the token once, caches the user until the token expires
+    private UserDetails loadUserDetails(String jwtToken) {
+        Claims claims;
+
+        try {
+            claims = jwtTokenUtil.getValidClaims(jwtToken);
+        } catch (IllegalArgumentException e) {
+            logger.info("Unable to get JWT Token");
+            return null;
+        } catch (ExpiredJwtException e) {
+            logger.info("JWT Token has expired");
+            return null;
+        }
 
-        // Once we get the token validate it.
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
-                UserDetails userDetails = this.userService.loadUserByUsername(username);
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
 
-                // if token is valid configure Spring Security to manually set authentication
-                if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+        // A USER SAVED WHILE THIS ONE IS LOADED INVALIDATES THE CACHE, THIS (POSSIBLY OLD) USER IS NOT CACHED THEN
+        long generation = jwtAuthenticationCache.generation();
 
-                    UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        try {
+            UserDetails userDetails = this.userService.loadUserByUsername(claims.getSubject());
 
-                    // After setting the Authentication in the context, we specify that the current user is authenticated. So it passes the Spring Security Configurations successfully.
-                    SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-                }
-            } catch (UsernameNotFoundException exception) {
-                logger.error(exception.getMessage());
+            if (!claims.getSubject().equals(userDetails.getUsername())) {
+                return null;
             }
-        }
 
-        chain.doFilter(request, response);
+            jwtAuthenticationCache.put(jwtToken, userDetails, claims.getExpiration().getTime(), generation);
+
+            return userDetails;
+        } catch (UsernameNotFoundException exception) {
+            logger.error(exception.getMessage());
+            return null;
+        }
     }
 }
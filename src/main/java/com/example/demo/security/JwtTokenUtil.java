@@ -65,6 +65,12 @@ public class JwtTokenUtil {
                 .signWith(SignatureAlgorithm.HS512, secret).compact();
     }
 
+    //parse and verify token once, signature and expiration are checked by the parser
+    //throws ExpiredJwtException / JwtException / IllegalArgumentException for invalid tokens
+    public Claims getValidClaims(String token) {
+        return getAllClaimsFromToken(token);
+    }
+
     //validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
         final String username = getUsernameFromToken(token);
@@ -0,0 +1,63 @@
+package com.example.demo.storage;
+
+import com.example.demo.database.services.vehicle.FileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*  Deletes file contents no file references anymore, every file-storage.gc.interval-hours (0 = never):
+ *  contents of uploads that were rolled back, and contents that were put again just before their last file was deleted */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobGarbageCollectionJob {
+
+    private final FileService fileService;
+
+    @Value("${file-storage.gc.interval-hours:24}")
+    private long intervalHours;
+
+    private ScheduledExecutorService executor;
+
+
+    @PostConstruct
+    public void start() {
+        if (intervalHours <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blob-gc");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(this::run, intervalHours, intervalHours, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+
+    public int run() {
+        try {
+            int deleted = fileService.collectGarbage();
+            log.info("file content garbage collection: deleted {} unreferenced contents", deleted);
+            return deleted;
+        } catch (Exception e) {
+            log.error("file content garbage collection failed", e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.demo.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*  Cold tier of the blob store: append-only pack files <file-storage.directory>/packs/pack-<n>.pack, every blob is stored
+ *  DEFLATE compressed (or as is, when compression doesn't pay off, e.g. JPEG / PDF / ZIP contents).
+ *  Each pack has an append-only index pack-<n>.idx, one line per blob: "<hash> <offset> <stored length> <size> <D|S>",
+ *  deleted blobs get a "- <hash>" line. Indexes are loaded into memory on startup, so a packed blob is read with one seek.
+ *  Pack data is forced to disk before its index line and the index line before the loose blob is deleted,
+ *  after a crash a blob is at worst both loose and packed. Space of deleted packed blobs is not reclaimed (no compaction) */
+@Slf4j
+@Component
+public class BlobPacks {
+
+    private final static Pattern PACK_PATTERN = Pattern.compile("pack-(\\d+)\\.pack");
+    private final static String TOMBSTONE = "-";
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    // STORED AS IS WHEN COMPRESSION SAVES LESS THAN 5 %
+    private final static double MIN_COMPRESSION_RATIO = 0.95;
+
+    @Value("${file-storage.directory:./file-storage}")
+    private String directory;
+
+    @Value("${file-storage.tiering.max-pack-size:1GB}")
+    private DataSize maxPackSize;
+
+    private Path packsDirectory;
+    private Path tempDirectory;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private int currentPack;
+
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        packsDirectory = root.resolve("packs");
+        tempDirectory = root.resolve("tmp");
+
+        Files.createDirectories(packsDirectory);
+        Files.createDirectories(tempDirectory);
+
+        for (int pack : listPacks()) {
+            loadIndex(pack);
+            currentPack = pack;
+        }
+    }
+
+
+    public boolean contains(String hash) {
+        return index.containsKey(hash);
+    }
+
+    public Set<String> getHashes() {
+        return new HashSet<>(index.keySet());
+    }
+
+    public InputStream open(String hash) throws IOException {
+        Entry entry = index.get(hash);
+
+        if (entry == null) {
+            throw new FileNotFoundException("blob " + hash + " not found in packs");
+        }
+
+        FileChannel channel = FileChannel.open(packPath(entry.pack), StandardOpenOption.READ);
+        channel.position(entry.offset);
+
+        InputStream stored = new BoundedInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE), entry.storedLength);
+
+        return entry.deflated ? new InflaterInputStream(stored) : stored;
+    }
+
+    // APPENDS A LOOSE BLOB, RETURNS BYTES IT TAKES IN THE PACK
+    public synchronized long append(String hash, Path looseFile) throws IOException {
+        Entry existing = index.get(hash);
+
+        if (existing != null) {
+            return existing.storedLength;
+        }
+
+        long size = Files.size(looseFile);
+        Path compressed = Files.createTempFile(tempDirectory, "pack-", ".tmp");
+
+        try {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+            try (InputStream in = Files.newInputStream(looseFile);
+                 OutputStream out = new DeflaterOutputStream(Files.newOutputStream(compressed), deflater, BUFFER_SIZE)) {
+                in.transferTo(out);
+            } finally {
+                deflater.end();
+            }
+
+            boolean deflated = Files.size(compressed) < size * MIN_COMPRESSION_RATIO;
+            Path source = deflated ? compressed : looseFile;
+
+            if (Files.exists(packPath(currentPack)) && Files.size(packPath(currentPack)) >= maxPackSize.toBytes()) {
+                currentPack++;
+            }
+
+            long offset;
+            long storedLength;
+
+            try (FileChannel pack = FileChannel.open(packPath(currentPack), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+
+                offset = pack.size();
+                storedLength = in.size();
+
+                long transferred = 0;
+                while (transferred < storedLength) {
+                    transferred += pack.transferFrom(in, offset + transferred, storedLength - transferred);
+                }
+
+                pack.force(true);
+            }
+
+            Entry entry = new Entry(currentPack, offset, storedLength, deflated);
+            appendIndexLine(currentPack, hash + " " + offset + " " + storedLength + " " + size + " " + (deflated ? "D" : "S"));
+            index.put(hash, entry);
+
+            return storedLength;
+        } finally {
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    public synchronized void delete(String hash) throws IOException {
+        Entry entry = index.remove(hash);
+
+        if (entry != null) {
+            appendIndexLine(entry.pack, TOMBSTONE + " " + hash);
+        }
+    }
+
+
+    // A LINE CUT OFF BY A CRASH (NO TRAILING NEWLINE) IS ENDED FIRST, OTHERWISE THE NEW LINE WOULD BE GLUED TO IT AND LOST TOO
+    private void appendIndexLine(int pack, String line) throws IOException {
+        try (FileChannel indexFile = FileChannel.open(indexPath(pack), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = indexFile.size();
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+
+            boolean cutOff = size > 0 && indexFile.read(lastByte, size - 1) == 1 && lastByte.get(0) != '\n';
+
+            indexFile.write(ByteBuffer.wrap(((cutOff ? "\n" : "") + line + "\n").getBytes(StandardCharsets.US_ASCII)), size);
+            indexFile.force(true);
+        }
+    }
+
+    private void loadIndex(int pack) throws IOException {
+        Path indexFile = indexPath(pack);
+
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.US_ASCII)) {
+            String[] parts = line.trim().split(" ");
+
+            try {
+                if (parts.length == 2 && parts[0].equals(TOMBSTONE)) {
+                    index.remove(parts[1]);
+                } else if (parts.length == 5) {
+                    index.put(parts[0], new Entry(pack, Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[4].equals("D")));
+                }
+            } catch (NumberFormatException e) {
+                // LINE CUT OFF BY A CRASH, ITS BLOB IS STILL LOOSE
+                log.warn("skipping invalid line in " + indexFile + ": " + line);
+            }
+        }
+    }
+
+    private List<Integer> listPacks() throws IOException {
+        try (Stream<Path> files = Files.list(packsDirectory)) {
+            return files.map(path -> PACK_PATTERN.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path packPath(int pack) {
+        return packsDirectory.resolve("pack-" + pack + ".pack");
+    }
+
+    private Path indexPath(int pack) {
+        return packsDirectory.resolve("pack-" + pack + ".idx");
+    }
+
+
+    private static class Entry {
+        private final int pack;
+        private final long offset;
+        private final long storedLength;
+        private final boolean deflated;
+
+        private Entry(int pack, long offset, long storedLength, boolean deflated) {
+            this.pack = pack;
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.deflated = deflated;
+        }
+    }
+
+    // READS AT MOST length BYTES OF THE UNDERLYING STREAM (ONE BLOB OUT OF A PACK)
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = super.read();
+
+            if (b != -1) {
+                remaining--;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+
+            if (read > 0) {
+                remaining -= read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/*  Content-addressed storage of file contents.
+ *  Content is referenced by the hex SHA-256 of its bytes, storing the same bytes twice returns the same reference
+ *  and keeps a single copy. Stored content is never modified, only deleted when no FileByteData references it anymore.
+ *  A put() of content that is already stored counts as storing it again, so the reference returned to an upload can't be
+ *  deleted before the upload commits its row: deletes skip content put after a given instant */
+public interface BlobStore {
+
+    // STREAMS THE CONTENT INTO THE STORE (NEVER HELD IN MEMORY AS A WHOLE)
+    StoredBlob put(InputStream content) throws IOException;
+
+    // MOVES A FILE THE CALLER HAS ALREADY HASHED (AND VERIFIED) INTO THE STORE WITHOUT READING IT AGAIN, THE FILE IS CONSUMED
+    StoredBlob putVerified(Path file, String hash) throws IOException;
+
+    InputStream open(String hash) throws IOException;
+
+    boolean exists(String hash);
+
+    // FALSE WHEN THE CONTENT WAS KEPT, BECAUSE IT WAS PUT (OR PUT AGAIN) AFTER notPutSince
+    boolean deleteIfNotPutSince(String hash, Instant notPutSince) throws IOException;
+
+    // HASHES OF ALL STORED CONTENTS, FOR GARBAGE COLLECTION
+    void forEachHash(Consumer<String> consumer) throws IOException;
+
+    // LOCAL FILE OF THE CONTENT, EMPTY FOR STORES THAT AREN'T BACKED BY THE LOCAL FILESYSTEM
+    default Optional<Path> getPath(String hash) {
+        return Optional.empty();
+    }
+
+
+    class StoredBlob {
+        private final String hash;
+        private final long size;
+
+        public StoredBlob(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*  Moves file contents not modified for file-storage.tiering.min-age-days into compressed packs,
+ *  every file-storage.tiering.interval-hours (0 = never), and logs how many bytes it reclaimed.
+ *  Loose copies of packed contents are deleted by the first run file-storage.tiering.loose-grace-minutes after packing */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobTieringJob {
+
+    private final FileSystemBlobStore blobStore;
+
+    @Value("${file-storage.tiering.min-age-days:30}")
+    private long minAgeDays;
+
+    @Value("${file-storage.tiering.interval-hours:24}")
+    private long intervalHours;
+
+    @Value("${file-storage.tiering.loose-grace-minutes:60}")
+    private long looseGraceMinutes;
+
+    private ScheduledExecutorService executor;
+
+
+    @PostConstruct
+    public void start() {
+        if (intervalHours <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blob-tiering");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(this::run, intervalHours, intervalHours, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+
+    public TieringReport run() {
+        try {
+            TieringReport report = blobStore.packColdBlobs(Duration.ofDays(minAgeDays), Duration.ofMinutes(looseGraceMinutes));
+            log.info("file content tiering: " + report);
+            return report;
+        } catch (Exception e) {
+            log.error("file content tiering failed", e);
+            return new TieringReport();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.storage;
+
+import com.example.demo.database.services.vehicle.FileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*  Moves contents of files uploaded before the BlobStore out of the database:
+ *      java -jar vedia-vehicles.jar --migrate-file-blobs
+ *  Every row is migrated in its own transaction (only one file content in memory at a time), so the command can be
+ *  interrupted and started again, migrated rows are skipped. The application keeps running after the migration.
+ *  PostgreSQL keeps @Lob contents as large objects, run vacuumlo afterwards to reclaim their space */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatabaseBlobMigrationRunner implements ApplicationRunner {
+
+    public final static String OPTION = "migrate-file-blobs";
+
+    private final static int PAGE_SIZE = 100;
+
+    private final FileService fileService;
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+
+        log.info("migrating file contents from the database to the blob store");
+
+        long migrated = 0;
+        long failed = 0;
+        Long after = null;
+        List<Long> ids;
+
+        while (!(ids = fileService.getIdsWithDatabaseContent(after, PageRequest.of(0, PAGE_SIZE))).isEmpty()) {
+            for (Long id : ids) {
+                try {
+                    if (fileService.migrateDatabaseContent(id)) {
+                        migrated++;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("failed to migrate content of file " + id, e);
+                }
+            }
+
+            after = ids.get(ids.size() - 1);
+        }
+
+        log.info("file content migration finished, migrated: {}, failed: {}", migrated, failed);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/*  Content of one file as it is served: metadata for the HTTP headers and either a local file
+ *  (sent with zero-copy) or a stream (contents not stored as plain local files) */
+public class FileContent {
+
+    @FunctionalInterface
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private final String hash;
+    private final long size;
+    private final String contentType;
+    private final String fileName;
+    private final Path path;
+    private final StreamOpener streamOpener;
+
+    public FileContent(String hash, long size, String contentType, String fileName, Path path, StreamOpener streamOpener) {
+        this.hash = hash;
+        this.size = size;
+        this.contentType = contentType;
+        this.fileName = fileName;
+        this.path = path;
+        this.streamOpener = streamOpener;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    // NULL WHEN THE CONTENT IS NOT A PLAIN LOCAL FILE
+    public Path getPath() {
+        return path;
+    }
+
+    public InputStream open() throws IOException {
+        return streamOpener.open();
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.demo.storage;
+
+import com.example.demo.utils.StripedLocks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/*  BlobStore on the local filesystem: <file-storage.directory>/<first 2 hash chars>/<hash>
+ *  Content is first written to a temp file while the hash is computed, then moved to its final path.
+ *  The move is atomic, so readers never see a partially written blob, and when the blob already exists
+ *  the temp file is just deleted (deduplication) and the modification time of the blob is set to now: it is the put time
+ *  deleteIfNotPutSince() checks, under the same per-hash lock as the put.
+ *  Blobs not modified for a while can be moved into compressed pack files (see BlobPacks) by packColdBlobs(),
+ *  reads fall back to the packs transparently */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileSystemBlobStore implements BlobStore {
+
+    private final static Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${file-storage.directory:./file-storage}")
+    private String directory;
+
+    private final BlobPacks packs;
+
+    // put(), deleteIfNotPutSince() AND THE END OF PACKING OF THE SAME HASH NEVER RUN AT THE SAME TIME
+    private final StripedLocks hashLocks = new StripedLocks(64);
+
+    // PACKED BLOBS WHOSE LOOSE COPY IS STILL KEPT -> PACKING TIME. IN MEMORY ONLY, AFTER A RESTART NO DOWNLOAD HOLDS A PATH
+    private final Map<String, Instant> packedAt = new ConcurrentHashMap<>();
+
+    private Path root;
+    private Path tempDirectory;
+
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        tempDirectory = root.resolve("tmp");
+
+        // SAME FILESYSTEM AS THE BLOBS, SO THE FINAL MOVE CAN BE ATOMIC
+        Files.createDirectories(tempDirectory);
+    }
+
+
+    @Override
+    public StoredBlob put(InputStream content) throws IOException {
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+
+        try {
+            MessageDigest digest = Sha256.newDigest();
+            long size = 0;
+
+            try (InputStream in = new DigestInputStream(content, digest);
+                 OutputStream out = Files.newOutputStream(tempFile)) {
+
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            String hash = Sha256.toHex(digest.digest());
+            store(tempFile, hash);
+
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // THE FILE MUST BE ON THE SAME FILESYSTEM AS THE STORE (UNDER file-storage.directory) FOR THE MOVE TO BE ATOMIC
+    @Override
+    public StoredBlob putVerified(Path file, String hash) throws IOException {
+        long size = Files.size(file);
+
+        try {
+            store(file, hash);
+
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        try {
+            return Files.newInputStream(resolve(hash));
+        } catch (NoSuchFileException e) {
+            // COLD (OR JUST BEING PACKED)
+            if (packs.contains(hash)) {
+                return packs.open(hash);
+            }
+
+            throw new FileNotFoundException("blob " + hash + " not found");
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(resolve(hash)) || packs.contains(hash);
+    }
+
+    @Override
+    public boolean deleteIfNotPutSince(String hash, Instant notPutSince) throws IOException {
+        Path path = resolve(hash);
+
+        try (StripedLocks.Held hashLock = hashLocks.lock(hash)) {
+            try {
+                if (Files.getLastModifiedTime(path).toInstant().isAfter(notPutSince)) {
+                    return false;
+                }
+            } catch (NoSuchFileException e) {
+                // ONLY PACKED: NOT PUT SINCE IT WAS PACKED, SO OLDER THAN THE TIERING MIN AGE
+            }
+
+            Files.deleteIfExists(path);
+            packs.delete(hash);
+            packedAt.remove(hash);
+
+            return true;
+        }
+    }
+
+    @Override
+    public void forEachHash(Consumer<String> consumer) throws IOException {
+        try (Stream<Path> files = Files.find(root, 2, (path, attributes) -> attributes.isRegularFile()
+                && HASH_PATTERN.matcher(path.getFileName().toString()).matches())) {
+
+            files.forEach(path -> consumer.accept(path.getFileName().toString()));
+        }
+
+        for (String hash : packs.getHashes()) {
+            if (!Files.exists(resolve(hash))) {
+                consumer.accept(hash);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> getPath(String hash) {
+        Path path = resolve(hash);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+
+    /*  Moves loose blobs not put for minAge into packs. Blobs are immutable and content addressed, only the end of packing
+     *  has to see deletes and puts of the same blob that happened while it was being packed.
+     *  A download may have resolved the loose path (getPath()) just before its blob was packed, so the loose copy of a packed
+     *  blob is only deleted by a run at least looseGracePeriod after packing (any run after a restart) */
+    public TieringReport packColdBlobs(Duration minAge, Duration looseGracePeriod) throws IOException {
+        FileTime packBefore = FileTime.from(Instant.now().minus(minAge));
+        TieringReport report = new TieringReport();
+
+        try (Stream<Path> files = Files.find(root, 2, (path, attributes) -> attributes.isRegularFile()
+                && HASH_PATTERN.matcher(path.getFileName().toString()).matches()
+                && attributes.lastModifiedTime().compareTo(packBefore) < 0)) {
+
+            Iterator<Path> iterator = files.iterator();
+
+            while (iterator.hasNext()) {
+                Path looseFile = iterator.next();
+                String hash = looseFile.getFileName().toString();
+
+                try {
+                    if (!packs.contains(hash)) {
+                        long size = Files.size(looseFile);
+                        long storedLength = packs.append(hash, looseFile);
+
+                        // NOT LOCKED WHILE COMPRESSING, THE BLOB MAY HAVE BEEN DELETED MEANWHILE
+                        try (StripedLocks.Held hashLock = hashLocks.lock(hash)) {
+                            if (!Files.exists(looseFile)) {
+                                packs.delete(hash);
+                                continue;
+                            }
+
+                            packedAt.put(hash, Instant.now());
+                        }
+
+                        report.add(size, storedLength);
+                    }
+
+                    deleteLooseCopy(hash, looseFile, packBefore, looseGracePeriod);
+                } catch (IOException e) {
+                    log.warn("failed to pack blob " + hash + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return report;
+    }
+
+
+    private void deleteLooseCopy(String hash, Path looseFile, FileTime packBefore, Duration gracePeriod) throws IOException {
+        Instant packed = packedAt.get(hash);
+
+        if (packed != null && packed.plus(gracePeriod).isAfter(Instant.now())) {
+            return;
+        }
+
+        try (StripedLocks.Held hashLock = hashLocks.lock(hash)) {
+            // PUT AGAIN: STAYS LOOSE WITH ITS NEW PUT TIME UNTIL IT IS COLD AGAIN
+            if (Files.exists(looseFile) && Files.getLastModifiedTime(looseFile).compareTo(packBefore) < 0) {
+                Files.delete(looseFile);
+            }
+
+            packedAt.remove(hash);
+        }
+    }
+
+    // MOVES THE FILE TO THE PATH OF THE HASH, OR LEAVES IT WHEN THE BLOB IS ALREADY LOOSE (THE CALLER DELETES IT).
+    // EITHER WAY THE BLOB'S MODIFICATION TIME BECOMES THE PUT TIME deleteIfNotPutSince() CHECKS
+    private void store(Path file, String hash) throws IOException {
+        Path target = resolve(hash);
+
+        try (StripedLocks.Held hashLock = hashLocks.lock(hash)) {
+            if (!Files.exists(target)) {
+                // ALSO WHEN IT IS PACKED: THE NEW LOOSE COPY CARRIES THE PUT TIME, TIERING PACKS IT AGAIN (AS A NO-OP) LATER
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        }
+    }
+
+    private Path resolve(String hash) {
+        // HASH IS THE ONLY PART OF THE PATH THAT COMES FROM THE DATABASE, NEVER LET IT ESCAPE THE ROOT
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new IllegalArgumentException("invalid blob hash: " + hash);
+        }
+
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.demo.storage;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/*  Writes file content to an HTTP response without buffering it in memory:
+ *  - ETag is the content hash (contents never change), If-None-Match -> 304
+ *  - single byte Range (and If-Range) -> 206, unsatisfiable range -> 416, multiple ranges are answered with the whole file
+ *  - local files are sent by Tomcat's sendfile when the connector supports it (kernel copies file -> socket),
+ *    otherwise with FileChannel.transferTo, other content is copied through a fixed size buffer */
+public class HttpContentSender {
+
+    private final static String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private final static String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private final static String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private final static String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+
+    public static void send(HttpServletRequest request, HttpServletResponse response, FileContent content, boolean attachment) throws IOException {
+        String eTag = content.getHash() == null ? null : "\"" + content.getHash() + "\"";
+        long size = content.getSize();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // METADATA MAY BE RE-LINKED TO OTHER CONTENT, CLIENTS REVALIDATE WITH THE ETAG
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.ETAG, eTag);
+
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        response.setContentType(content.getContentType() == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : content.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (attachment ? ContentDisposition.attachment() : ContentDisposition.inline())
+                .filename(content.getFileName(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        long start = 0;
+        long end = size - 1;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+
+        if (rangeHeader != null && isRangeApplicable(request.getHeader(HttpHeaders.IF_RANGE), eTag)) {
+            List<HttpRange> ranges;
+
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+
+                try {
+                    start = range.getRangeStart(size);
+                    end = range.getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    start = size;
+                }
+
+                if (start >= size || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length <= 0) {
+            return;
+        }
+
+        if (content.getPath() != null) {
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+                request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, content.getPath().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+                request.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(content.getPath(), StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+
+                while (position <= end) {
+                    long transferred = channel.transferTo(position, end + 1 - position, out);
+
+                    if (transferred <= 0) {
+                        throw new IOException("file ended before the expected size");
+                    }
+
+                    position += transferred;
+                }
+            }
+
+            return;
+        }
+
+        try (InputStream in = content.open()) {
+            in.skipNBytes(start);
+            copy(in, response.getOutputStream(), length);
+        }
+    }
+
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+            if (read == -1) {
+                throw new IOException("content ended before the expected size");
+            }
+
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+
+            if (candidate.equals("*") || candidate.equals(eTag) || candidate.equals("W/" + eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // If-Range WITH ANOTHER (OR A DATE) VALIDATOR -> CONTENT MAY HAVE CHANGED, SEND IT WHOLE
+    private static boolean isRangeApplicable(String ifRange, String eTag) {
+        return ifRange == null || (eTag != null && ifRange.trim().equals(eTag));
+    }
+}
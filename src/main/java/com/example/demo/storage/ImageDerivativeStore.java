@@ -0,0 +1,186 @@
+package com.example.demo.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/*  Downscaled copies (thumbnail, preview) of image contents, generated on first request and kept on disk:
+ *  <file-storage.directory>/derivatives/<first 2 hash chars>/<hash>-<variant>.(jpg|png|none)
+ *  Keyed by the content hash, so a derivative never gets stale and is shared by all files with the same content.
+ *  Large images are decoded with source subsampling (only ~2x the target size is ever decoded),
+ *  contents that can't be decoded get a .none marker so they are not decoded again on every request */
+@Slf4j
+@Component
+public class ImageDerivativeStore {
+
+    public enum Variant {
+        THUMBNAIL(200), PREVIEW(1024);
+
+        private final int maxSize;
+
+        Variant(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public String fileSuffix() {
+            return "-" + name().toLowerCase();
+        }
+    }
+
+    private final static Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${file-storage.directory:./file-storage}")
+    private String directory;
+
+    private Path root;
+
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath().normalize().resolve("derivatives");
+        Files.createDirectories(root);
+    }
+
+
+    // EMPTY WHEN THE CONTENT IS NOT A (SUPPORTED) IMAGE
+    public Optional<FileContent> get(String hash, Variant variant, String fileName, FileContent.StreamOpener source) throws IOException {
+        Path jpg = resolve(hash, variant, "jpg");
+        Path png = resolve(hash, variant, "png");
+        Path none = resolve(hash, variant, "none");
+
+        if (!Files.exists(jpg) && !Files.exists(png) && !Files.exists(none)) {
+            create(hash, variant, source);
+        }
+
+        if (Files.exists(jpg)) {
+            return Optional.of(toContent(hash, variant, jpg, MediaType.IMAGE_JPEG_VALUE, fileName));
+        }
+
+        if (Files.exists(png)) {
+            return Optional.of(toContent(hash, variant, png, MediaType.IMAGE_PNG_VALUE, fileName));
+        }
+
+        return Optional.empty();
+    }
+
+    public void delete(String hash) throws IOException {
+        for (Variant variant : Variant.values()) {
+            for (String extension : new String[]{"jpg", "png", "none"}) {
+                Files.deleteIfExists(resolve(hash, variant, extension));
+            }
+        }
+    }
+
+
+    // CONCURRENT FIRST REQUESTS MAY BOTH GENERATE, THE RESULT IS THE SAME AND THE MOVE IS ATOMIC
+    private void create(String hash, Variant variant, FileContent.StreamOpener source) throws IOException {
+        BufferedImage image;
+
+        try (InputStream in = source.open()) {
+            image = decode(in, variant.maxSize);
+        } catch (IOException | RuntimeException e) {
+            log.warn("failed to decode image " + hash + ": " + e.getMessage());
+            image = null;
+        }
+
+        Files.createDirectories(resolve(hash, variant, "none").getParent());
+
+        if (image == null) {
+            Files.write(resolve(hash, variant, "none"), new byte[0]);
+            return;
+        }
+
+        boolean alpha = image.getColorModel().hasAlpha();
+        String extension = alpha ? "png" : "jpg";
+
+        BufferedImage scaled = scale(image, variant.maxSize, alpha);
+
+        Path tempFile = Files.createTempFile(root, hash + variant.fileSuffix(), ".tmp");
+
+        try {
+            ImageIO.write(scaled, alpha ? "png" : "jpeg", tempFile.toFile());
+            Files.move(tempFile, resolve(hash, variant, extension), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static BufferedImage decode(InputStream in, int maxSize) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(in)) {
+            if (imageInputStream == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(imageInputStream, true, true);
+
+                int largerSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, largerSide / (maxSize * 2));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxSize, boolean alpha) {
+        double ratio = Math.min(1.0, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return scaled;
+    }
+
+    private FileContent toContent(String hash, Variant variant, Path path, String contentType, String fileName) throws IOException {
+        return new FileContent(hash + variant.fileSuffix(), Files.size(path), contentType, variant.name().toLowerCase() + "_" + fileName,
+                path, () -> Files.newInputStream(path));
+    }
+
+    private Path resolve(String hash, Variant variant, String extension) {
+        // HASH COMES FROM THE DATABASE, NEVER LET IT ESCAPE THE ROOT
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new IllegalArgumentException("invalid content hash: " + hash);
+        }
+
+        return root.resolve(hash.substring(0, 2)).resolve(hash + variant.fileSuffix() + "." + extension);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// FAILS THE READ AS SOON AS MORE THAN maxSize BYTES WERE READ, FOR REQUEST BODIES WITHOUT A (TRUSTED) Content-Length
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long count;
+
+    public SizeLimitedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+
+        if (b != -1) {
+            count(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+
+        if (read > 0) {
+            count(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+
+    private void count(long read) throws SizeLimitExceededException {
+        count += read;
+
+        if (count > maxSize) {
+            throw new SizeLimitExceededException(maxSize);
+        }
+    }
+
+
+    // AN IOException, SO THE READERS CLEAN UP (TEMP FILES) LIKE FOR ANY OTHER FAILED READ
+    public static class SizeLimitExceededException extends IOException {
+
+        private final long maxSize;
+
+        public SizeLimitExceededException(long maxSize) {
+            super("more than " + maxSize + " bytes");
+            this.maxSize = maxSize;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.storage;
+
+// RESULT OF ONE FileSystemBlobStore.packColdBlobs() RUN
+public class TieringReport {
+
+    private long blobs;
+    private long originalBytes;
+    private long packedBytes;
+
+
+    public void add(long originalSize, long packedSize) {
+        blobs++;
+        originalBytes += originalSize;
+        packedBytes += packedSize;
+    }
+
+    public long getBlobs() {
+        return blobs;
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes;
+    }
+
+    public long getPackedBytes() {
+        return packedBytes;
+    }
+
+    public long getReclaimedBytes() {
+        return originalBytes - packedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "packed " + blobs + " blobs, " + originalBytes + " -> " + packedBytes + " bytes, reclaimed " + getReclaimedBytes() + " bytes";
+    }
+}
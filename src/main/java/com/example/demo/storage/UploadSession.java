@@ -0,0 +1,98 @@
+package com.example.demo.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/*  State of a resumable (chunked) upload, kept as session.json next to the partially assembled file.
+ *  File is split into chunk_size chunks (last one may be shorter), received_chunks is the bitmap of chunks written so far.
+ *  Serialized as the upload status too, missing_ranges tells the client which byte ranges (still) have to be sent,
+ *  each one is a run of consecutive missing chunks */
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UploadSession {
+
+    private String id;
+
+    private String file_name;
+
+    private String file_content_type;
+
+    private long size;
+
+    // HEX SHA-256 OF THE WHOLE FILE, VERIFIED ON COMPLETE
+    private String sha256;
+
+    private long chunk_size;
+
+    private long[] received_chunks = new long[0];
+
+    private long created_at;
+
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public long getChunk_count() {
+        return chunk_size <= 0 ? 0 : (size + chunk_size - 1) / chunk_size;
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public List<Range> getMissing_ranges() {
+        BitSet received = BitSet.valueOf(received_chunks);
+        List<Range> missingRanges = new ArrayList<>();
+        long chunkCount = getChunk_count();
+
+        for (int start = received.nextClearBit(0); start < chunkCount; ) {
+            int nextReceived = received.nextSetBit(start);
+            long end = nextReceived < 0 ? chunkCount : Math.min(nextReceived, chunkCount);
+            long offset = start * chunk_size;
+
+            missingRanges.add(new Range(offset, Math.min(end * chunk_size, size) - offset));
+            start = received.nextClearBit((int) end);
+        }
+
+        return missingRanges;
+    }
+
+    public long missingChunkCount() {
+        return getChunk_count() - BitSet.valueOf(received_chunks).cardinality();
+    }
+
+    @JsonIgnore
+    public boolean isComplete() {
+        return missingChunkCount() == 0;
+    }
+
+    // LENGTH OF THE CHUNK STARTING AT offset
+    public long chunkLength(long offset) {
+        return Math.min(chunk_size, size - offset);
+    }
+
+    public void markReceived(long offset) {
+        BitSet received = BitSet.valueOf(received_chunks);
+        received.set((int) (offset / chunk_size));
+        received_chunks = received.toLongArray();
+    }
+
+    public void clearReceived() {
+        received_chunks = new long[0];
+    }
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Range {
+
+        private long offset;
+
+        private long length;
+    }
+}
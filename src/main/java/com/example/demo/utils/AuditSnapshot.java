@@ -0,0 +1,164 @@
+package com.example.demo.utils;
+
+import com.example.demo.database.models.utils.AuditIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Transient;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/*  Field values of an entity captured before an update, for event history logs.
+ *  Capturing copies only references / ids (no strings are built), diff() lists only the changed fields as compact JSON:
+ *  {"id":1,"changes":{"name":["old name","new name"],"fleets":[[1,2],[2]]}}
+ *  Related entities are recorded by id, uninitialized lazy collections are skipped (they are never loaded for logging).
+ *  Static, @Transient and @AuditIgnore fields are left out */
+public class AuditSnapshot {
+
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+
+    private final static Object NOT_LOADED = new Object();
+
+    private final static ClassValue<Field[]> AUDITED_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Transient.class) || field.isAnnotationPresent(AuditIgnore.class)) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                fields.add(field);
+            }
+
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private final static ClassValue<Field> ID_FIELD = new ClassValue<>() {
+        @Override
+        protected Field computeValue(Class<?> type) {
+            for (Field field : AUDITED_FIELDS.get(type)) {
+                if (field.isAnnotationPresent(Id.class)) {
+                    return field;
+                }
+            }
+
+            return null;
+        }
+    };
+
+
+    private final Class<?> type;
+    private final Object[] values;
+
+    private AuditSnapshot(Class<?> type, Object[] values) {
+        this.type = type;
+        this.values = values;
+    }
+
+
+    public static AuditSnapshot of(Object entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        Field[] fields = AUDITED_FIELDS.get(entity.getClass());
+        Object[] values = new Object[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = normalize(get(fields[i], entity));
+        }
+
+        return new AuditSnapshot(entity.getClass(), values);
+    }
+
+    public String diff(Object newEntity) {
+        AuditSnapshot newSnapshot = of(newEntity);
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Map<String, Object> diff = new LinkedHashMap<>();
+
+        if (newSnapshot == null || newSnapshot.type != type) {
+            diff.put("error", "entity is missing or of another type");
+        } else {
+            Field[] fields = AUDITED_FIELDS.get(type);
+            Field idField = ID_FIELD.get(type);
+
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] == idField) {
+                    diff.put("id", newSnapshot.values[i]);
+                }
+
+                Object oldValue = values[i];
+                Object newValue = newSnapshot.values[i];
+
+                if (oldValue != NOT_LOADED && newValue != NOT_LOADED && !Objects.equals(oldValue, newValue)) {
+                    changes.put(fields[i].getName(), Arrays.asList(toJsonValue(oldValue), toJsonValue(newValue)));
+                }
+            }
+        }
+
+        diff.put("changes", changes);
+
+        try {
+            return objectMapper.writeValueAsString(diff);
+        } catch (JsonProcessingException e) {
+            return diff.toString();
+        }
+    }
+
+
+    private static Object normalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value instanceof Collection) {
+            if (!Hibernate.isInitialized(value)) {
+                return NOT_LOADED;
+            }
+
+            // SORTED, SO SETS WITH THE SAME ELEMENTS ARE EQUAL
+            Set<Object> elements = new TreeSet<>(Comparator.comparing(String::valueOf));
+            for (Object element : (Collection<?>) value) {
+                elements.add(normalize(element));
+            }
+            return new ArrayList<>(elements);
+        }
+
+        if (value instanceof HibernateProxy) {
+            return ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+        }
+
+        if (value.getClass().isAnnotationPresent(Entity.class)) {
+            Field idField = ID_FIELD.get(value.getClass());
+            return idField == null ? null : get(idField, value);
+        }
+
+        return value;
+    }
+
+    private static Object toJsonValue(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof List) {
+            return value;
+        }
+
+        return value.toString();
+    }
+
+    private static Object get(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
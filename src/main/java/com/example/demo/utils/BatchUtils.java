@@ -0,0 +1,34 @@
+package com.example.demo.utils;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/*  Helpers for saving many entities in one transaction.
+ *  Entities saved this way use pooled sequence IDs, so Hibernate can queue the INSERTs and send them
+ *  to the database in JDBC batches of JDBC_BATCH_SIZE (see hibernate.jdbc.batch_size in application.properties) */
+public class BatchUtils {
+
+    // MUST MATCH spring.jpa.properties.hibernate.jdbc.batch_size, ALSO USED AS SEQUENCE allocationSize
+    public final static int JDBC_BATCH_SIZE = 50;
+
+
+    public static <T> List<T> saveInBatches(List<T> entities, UnaryOperator<T> save, EntityManager entityManager) {
+        List<T> savedEntities = new ArrayList<>(entities.size());
+
+        for (int i = 0; i < entities.size(); i++) {
+            savedEntities.add(save.apply(entities.get(i)));
+
+            // SEND FULL BATCH AND DROP IT FROM THE PERSISTENCE CONTEXT, SO MEMORY DOES NOT GROW WITH REQUEST SIZE
+            if ((i + 1) % JDBC_BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+
+        entityManager.flush();
+
+        return savedEntities;
+    }
+}
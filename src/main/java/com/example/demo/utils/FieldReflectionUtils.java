@@ -1,67 +1,83 @@
 package com.example.demo.utils;
 
 import com.example.demo.database.models.utils.ValidationResponse;
-import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.List;
-
-public class FieldReflectionUtils<T>{
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/*  String field checks shared by all entities.
+ *  The accessible String fields of a class are looked up once and cached per class (STRING_FIELDS),
+ *  so the passes below don't call getDeclaredFields() / setAccessible() and allocate nothing while scanning */
+public class FieldReflectionUtils {
+
+    private final static ClassValue<Field[]> STRING_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            Field[] stringFields = Arrays.stream(type.getDeclaredFields())
+                    .filter(field -> field.getType().equals(String.class) && !Modifier.isStatic(field.getModifiers()))
+                    .toArray(Field[]::new);
+
+            for (Field field : stringFields) {
+                field.setAccessible(true);
+            }
 
-    public FieldReflectionUtils() {}
+            return stringFields;
+        }
+    };
 
+    private FieldReflectionUtils() {}
 
-    public T getEntityWithEmptyStringValuesAsNull(T entity) {
 
-        List<Field> stringFields = new ArrayList<>();
+    public static <T> T getEntityWithEmptyStringValuesAsNull(T entity) {
+        for (Field field : STRING_FIELDS.get(entity.getClass())) {
+            String fieldParameter = getString(field, entity);
 
-        Field[] allFields = entity.getClass().getDeclaredFields();
-        for (Field field : allFields) {
-            if (field.getType().equals(String.class)) {
-                stringFields.add(field);
+            if (fieldParameter != null && fieldParameter.isEmpty()) {
+                setString(field, entity, null);
             }
         }
 
-        for (Field field : stringFields) {
-            field.setAccessible(true);
-            Object fieldParameter = ReflectionUtils.getField(field, entity);
+        return entity;
+    }
+
+    public static ValidationResponse validateStringFields(Object entity) {
+        String emptyField = findEmptyStringField(entity);
 
-            if (fieldParameter instanceof String) {
-                if (((String) fieldParameter).length() <= 0) {
-                    field.setAccessible(true);
-                    ReflectionUtils.setField(field, entity, null);
-                }
-            }
+        if (emptyField != null) {
+            return new ValidationResponse(false, "'" + emptyField + "' cannot be empty");
         }
 
-        return entity;
+        return new ValidationResponse(true, "validation successful");
     }
 
-    public ValidationResponse validateStringFields(T entity) {
-
-        List<Field> stringFields = new ArrayList<>();
+    // NAME OF THE FIRST EMPTY ("") STRING FIELD, NULL IF THERE IS NONE
+    public static String findEmptyStringField(Object entity) {
+        for (Field field : STRING_FIELDS.get(entity.getClass())) {
+            String fieldParameter = getString(field, entity);
 
-        Field[] allFields = entity.getClass().getDeclaredFields();
-        for (Field field : allFields) {
-            if (field.getType().equals(String.class)) {
-                stringFields.add(field);
+            if (fieldParameter != null && fieldParameter.isEmpty()) {
+                return field.getName();
             }
         }
 
-        for (Field field : stringFields) {
-            field.setAccessible(true);
-            Object fieldParameter = ReflectionUtils.getField(field, entity);
+        return null;
+    }
 
-            if (fieldParameter != null) {
-                if (fieldParameter instanceof String) {
-                    if (((String) fieldParameter).length() <= 0) {
-                        return new ValidationResponse(false, "'" + field.getName() + "' cannot be empty");
-                    }
-                }
-            }
+
+    private static String getString(Field field, Object entity) {
+        try {
+            return (String) field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        return new ValidationResponse(true, "validation successful");
+    private static void setString(Field field, Object entity, String value) {
+        try {
+            field.set(entity, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
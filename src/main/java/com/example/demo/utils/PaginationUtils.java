@@ -0,0 +1,102 @@
+package com.example.demo.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/*  Keyset (cursor) pagination and streaming helpers for /api2 collection endpoints.
+ *  Pages are requested with ?limit=N&after=ID, the cursor for the next page is returned in the NEXT_CURSOR_HEADER.
+ *  Pages never skip or repeat rows that existed when the first page was read, but ids are not assigned in commit order:
+ *  pooled sequences (allocationSize > 1) hand out id blocks per instance, and even IDENTITY / single-step sequence ids are
+ *  taken before their transaction commits. A row inserted during a walk can land behind the returned cursor and is only
+ *  seen by the next walk from the start (an export, not a change feed).
+ *  Without parameters the whole table is streamed as one JSON array, row by row, from a scrolling query */
+public class PaginationUtils {
+
+    public final static int DEFAULT_LIMIT = 100;
+    public final static int MAX_LIMIT = 1000;
+
+    // MUST BE A CONSTANT STRING, USED IN @QueryHint OF STREAMING REPOSITORY QUERIES
+    public final static String STREAM_FETCH_SIZE = "500";
+
+    // PERSISTENCE CONTEXT IS CLEARED EVERY N STREAMED ROWS, SO MEMORY STAYS CONSTANT
+    public final static int STREAM_CLEAR_INTERVAL = 500;
+
+    public final static String NEXT_CURSOR_HEADER = "X-Next-After";
+
+
+    public static Pageable getPageable(Integer limit) {
+        if (limit == null) {
+            return PageRequest.of(0, DEFAULT_LIMIT);
+        }
+
+        return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    public static Long getCursor(Long after) {
+        // GENERATED IDS (IDENTITY AND SEQUENCES) ARE POSITIVE, THE FIRST PAGE STARTS AFTER 0
+        return after == null ? 0L : after;
+    }
+
+    public static <T> void forEachDetached(Stream<T> stream, EntityManager entityManager, Consumer<T> consumer) {
+        try (stream) {
+            Iterator<T> iterator = stream.iterator();
+            int count = 0;
+
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+
+                if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    public static <T> ResponseEntity<StreamingResponseBody> page(ObjectMapper objectMapper, List<T> page, Pageable pageable, Function<T, Long> idGetter) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+
+        // FULL PAGE -> THERE MIGHT BE MORE ROWS AFTER THE LAST ONE
+        if (!page.isEmpty() && page.size() >= pageable.getPageSize()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(idGetter.apply(page.get(page.size() - 1))));
+        }
+
+        return response.body(outputStream -> objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(outputStream, page));
+    }
+
+    public static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+
+                try {
+                    source.accept(entity -> {
+                        try {
+                            objectMapper.writeValue(generator, entity);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                generator.writeEndArray();
+            }
+        });
+    }
+}
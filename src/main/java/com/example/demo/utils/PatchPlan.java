@@ -0,0 +1,147 @@
+package com.example.demo.utils;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.json.JsonParseException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/*  Precompiled PATCH plan of one entity class.
+ *  Built once: every patchable field gets a setter MethodHandle and a converter for its type,
+ *  so applying a PATCH is one map lookup per key, no reflection lookups and no intermediate JSON strings.
+ *  Keys that are not in the plan (unknown fields, id, fields of non patchable types) are ignored */
+public class PatchPlan<T> {
+
+    private final Class<T> entityClass;
+
+    private final Map<String, FieldApplier> appliers = new HashMap<>();
+
+
+    public PatchPlan(Class<T> entityClass, ObjectMapper objectMapper, Class<?>... patchableTypes) {
+        this.entityClass = entityClass;
+
+        List<Class<?>> types = Arrays.asList(patchableTypes);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || !types.contains(field.getType()) || appliers.containsKey(field.getName())) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+
+                MethodHandle setter;
+
+                try {
+                    setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot create PATCH setter for " + entityClass.getSimpleName() + "." + field.getName(), e);
+                }
+
+                appliers.put(field.getName(), new FieldApplier(setter, getConverter(field, objectMapper)));
+            }
+        }
+    }
+
+
+    public T apply(T entity, Map<String, Object> changes) throws JsonParseException {
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            FieldApplier applier = appliers.get(change.getKey());
+
+            if (applier != null) {
+                Object value = change.getValue() == null ? null : applier.converter.convert(change.getValue());
+
+                try {
+                    applier.setter.invokeExact((Object) entity, value);
+                } catch (Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            }
+        }
+
+        return entity;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+
+    private static Converter getConverter(Field field, ObjectMapper objectMapper) {
+        Class<?> type = field.getType();
+
+        if (type.equals(String.class)) {
+            return Object::toString;
+        }
+
+        if (type.equals(LocalDateTime.class)) {
+            return value -> {
+                try {
+                    return DateUtils.stringToLocalDateTime(value.toString());
+                } catch (Exception e) {
+                    throw new JsonParseException(new Throwable(e.getMessage()));
+                }
+            };
+        }
+
+        if (type.equals(Boolean.class)) {
+            return value -> value instanceof Boolean ? value : Boolean.valueOf(value.toString());
+        }
+
+        if (type.equals(Integer.class)) {
+            return value -> {
+                try {
+                    return value instanceof Integer ? value : Integer.parseInt(value.toString());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(new Throwable("Integer value: '" + value + "' json parsing error: " + e.getMessage()));
+                }
+            };
+        }
+
+        if (type.equals(Float.class)) {
+            return value -> {
+                try {
+                    // ALSO ACCEPTS "1 234,5"
+                    return value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString().replaceAll(",", ".").replaceAll(" ", ""));
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(new Throwable("Float value: '" + value + "' json parsing error: " + e.getMessage()));
+                }
+            };
+        }
+
+        // RELATED ENTITIES AND COLLECTIONS OF THEM, CONVERTED STRAIGHT FROM THE PARSED JSON TREE
+        JavaType javaType = objectMapper.constructType(field.getGenericType());
+        String typeName = type.equals(Set.class) ? field.getName() + " Set" : type.getSimpleName();
+
+        return value -> {
+            try {
+                return objectMapper.convertValue(value, javaType);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException(new Throwable(typeName + " json parsing error: " + e.getMessage()));
+            }
+        };
+    }
+
+
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(Object value) throws JsonParseException;
+    }
+
+    private static class FieldApplier {
+        private final MethodHandle setter;
+        private final Converter converter;
+
+        private FieldApplier(MethodHandle setter, Converter converter) {
+            this.setter = setter;
+            this.converter = converter;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.utils;
+
+import com.example.demo.database.models.Organisation;
+import com.example.demo.database.models.user.User;
+import com.example.demo.database.models.vehicle.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*  PATCH plans of all entities, built once at startup and shared by the RestControllers.
+ *  Patchable types per entity are the ones the PATCH endpoints have always accepted,
+ *  e.g. User.role or any id can't be changed with PATCH */
+@Component
+public class PatchPlans {
+
+    private final Map<Class<?>, PatchPlan<?>> plans = new HashMap<>();
+
+
+    public PatchPlans(ObjectMapper objectMapper) {
+        add(new PatchPlan<>(Organisation.class, objectMapper, String.class, LocalDateTime.class));
+        add(new PatchPlan<>(User.class, objectMapper, String.class, LocalDateTime.class, Organisation.class));
+
+        add(new PatchPlan<>(Vehicle.class, objectMapper, String.class, LocalDateTime.class, Boolean.class, Organisation.class, Set.class));
+        add(new PatchPlan<>(Fleet.class, objectMapper, String.class, LocalDateTime.class, Organisation.class, Set.class));
+        add(new PatchPlan<>(Distance.class, objectMapper, String.class, LocalDateTime.class, Integer.class, Vehicle.class));
+        add(new PatchPlan<>(Trip.class, objectMapper, String.class, LocalDateTime.class, Integer.class, Vehicle.class));
+        add(new PatchPlan<>(Refuel.class, objectMapper, String.class, LocalDateTime.class, Float.class, Vehicle.class));
+        add(new PatchPlan<>(VehicleEvent.class, objectMapper, String.class, LocalDateTime.class, Vehicle.class));
+        add(new PatchPlan<>(Equipment.class, objectMapper, String.class, LocalDateTime.class, Vehicle.class, EquipmentType.class));
+        add(new PatchPlan<>(EquipmentType.class, objectMapper, String.class, LocalDateTime.class));
+        add(new PatchPlan<>(FileMetaData.class, objectMapper, String.class, LocalDateTime.class, FileByteData.class, Vehicle.class, Refuel.class, VehicleEvent.class));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    public <T> PatchPlan<T> get(Class<T> entityClass) {
+        return (PatchPlan<T>) plans.get(entityClass);
+    }
+
+    private void add(PatchPlan<?> plan) {
+        plans.put(plan.getEntityClass(), plan);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.utils;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*  Fixed number of locks shared by any number of keys (key hash -> stripe).
+ *  Keys in different stripes never wait for each other, keys in the same stripe wait even if they are different,
+ *  so memory stays constant while contention stays low with enough stripes.
+ *  Locks are held with try-with-resources: try (StripedLocks.Held held = locks.lock(key)) { ... } */
+public class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+
+    public StripedLocks(int stripes) {
+        this.stripes = new ReentrantLock[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+
+    public Held lock(Object key) {
+        ReentrantLock lock = stripes[stripe(key)];
+        lock.lock();
+
+        return lock::unlock;
+    }
+
+    // STRIPES ARE ALWAYS LOCKED IN ASCENDING ORDER, SO TWO CALLERS LOCKING OVERLAPPING KEYS CAN'T DEADLOCK
+    public Held lockAll(Collection<?> keys) {
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+
+        for (Object key : keys) {
+            stripeIndexes.add(stripe(key));
+        }
+
+        for (int stripe : stripeIndexes) {
+            stripes[stripe].lock();
+        }
+
+        return () -> {
+            for (int stripe : stripeIndexes.descendingSet()) {
+                stripes[stripe].unlock();
+            }
+        };
+    }
+
+
+    private int stripe(Object key) {
+        // MIX HIGH BITS INTO THE LOW ONES, THE STRIPE IS TAKEN FROM THE LOW BITS
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= (hash >>> 16);
+
+        return Math.floorMod(hash, stripes.length);
+    }
+
+
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
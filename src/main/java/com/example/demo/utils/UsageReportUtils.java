@@ -0,0 +1,54 @@
+package com.example.demo.utils;
+
+import com.example.demo.database.models.vehicle.UsageBucket;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/*  Request parameters of the /usage reports: ?bucket=day|week|month&from=YYYY-MM-DD&to=YYYY-MM-DD (both inclusive).
+ *  Without parameters the report has daily buckets of the last DEFAULT_DAYS days, ending today.
+ *  Week and month buckets start on their first day (monday, 1st), the first and last bucket only sum the days inside the range */
+public class UsageReportUtils {
+
+    public final static int DEFAULT_DAYS = 30;
+
+    // TEN YEARS OF DAILY ROWS PER VEHICLE, THE REPORT QUERY SCANS ALL OF THEM
+    public final static int MAX_DAYS = 3660;
+
+
+    public static UsageBucket.Size getSize(String bucket) {
+        if (bucket == null || bucket.isBlank()) {
+            return UsageBucket.Size.DAY;
+        }
+
+        for (UsageBucket.Size size : UsageBucket.Size.values()) {
+            if (size.name().equalsIgnoreCase(bucket.trim())) {
+                return size;
+            }
+        }
+
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bucket must be one of: day, week, month");
+    }
+
+    public static LocalDate getTo(LocalDate to) {
+        return to == null ? LocalDate.now() : to;
+    }
+
+    public static LocalDate getFrom(LocalDate from, LocalDate to) {
+        if (from == null) {
+            return to.minusDays(DEFAULT_DAYS - 1);
+        }
+
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "range must not be longer than " + MAX_DAYS + " days");
+        }
+
+        return from;
+    }
+}
@@ -0,0 +1,10 @@
+-- ENTITIES SAVED IN BATCHES USE POOLED SEQUENCE IDS, EXISTING bigserial SEQUENCES MUST STEP BY THE SAME allocationSize (BatchUtils.JDBC_BATCH_SIZE)
+-- ON A NEW DATABASE THE SEQUENCES DON'T EXIST YET, HIBERNATE CREATES THEM WITH THE RIGHT INCREMENT
+ALTER SEQUENCE IF EXISTS organisation_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS equipment_type_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS refuel_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS trip_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS vehicle_event_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS vehicle_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS event_history_log_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS distance_id_seq INCREMENT BY 50;
@@ -0,0 +1,206 @@
+package com.example.demo.api.rest_controllers.vehicle;
+
+import com.example.demo.database.models.user.User;
+import com.example.demo.database.models.utils.JwtResponse;
+import com.example.demo.database.models.vehicle.*;
+import com.example.demo.database.repositories.vehicle.TripRepository;
+import com.example.demo.database.services.vehicle.TripService;
+import com.example.demo.database.services.vehicle.VehicleStatisticsService;
+import com.example.demo.database.services.vehicle.VehicleTestFixtures;
+import com.example.demo.utils.Constants;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// REAL DATABASE AND OPEN SESSION IN VIEW: ANY QUERY AFTER A CHANGE OF THE MANAGED TRIP WOULD FLUSH IT
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(PER_CLASS)
+class TripRestControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private TripRepository tripRepository;
+
+	@Autowired
+	private VehicleStatisticsService vehicleStatisticsService;
+
+	@Autowired
+	private VehicleTestFixtures fixtures;
+
+
+	private final String URL = Constants.JSON_API + "/trips";
+	private final String AUTHENTICATE =  Constants.JSON_API + "/authenticate";
+
+	private final static LocalDate DAY = LocalDate.of(2020, 1, 1);
+
+
+	@Value("${tests.username}")
+	private String REAL_USER;
+
+	@Value("${tests.password}")
+	private String REAL_PASSWORD;
+
+
+	private String JWT_TOKEN = "";
+
+
+
+	@BeforeEach
+	public void getJWT_Token() throws Exception {
+		if (JWT_TOKEN.length() <= 0) {
+
+			User validUser = new User();
+			validUser.setUsername(REAL_USER);
+			validUser.setPassword(REAL_PASSWORD);
+
+			MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+					.post(AUTHENTICATE)
+					.content(objectMapper.writeValueAsString(validUser))
+					.contentType(MediaType.APPLICATION_JSON)
+					.accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().is(200))
+					.andExpect(jsonPath("$.jwt_token").exists())
+					.andReturn();
+
+			JwtResponse jwtResponse = objectMapper.readValue(result.getResponse().getContentAsString(), JwtResponse.class);
+			JWT_TOKEN = jwtResponse.getJwt_token();
+		}
+	}
+
+	@AfterAll
+	public void cleanUp() {
+		fixtures.cleanUp();
+	}
+
+
+	@Test
+	public void testPatchById_VehicleChanged_StatisticsAndRollupsOfBothVehicles() throws Exception {
+		Vehicle oldVehicle = fixtures.createVehicle("trip_patch_old_vehicle");
+		Vehicle newVehicle = fixtures.createVehicle("trip_patch_new_vehicle");
+
+		Trip trip = tripService.save(tripOf(oldVehicle, 42));
+
+		patch(trip.getId(), Map.of("vehicle", Map.of("id", newVehicle.getId())), HttpStatus.OK);
+
+		VehicleStatistics oldStatistics = vehicleStatisticsService.getByVehicleId(oldVehicle.getId());
+		VehicleStatistics newStatistics = vehicleStatisticsService.getByVehicleId(newVehicle.getId());
+
+		assertEquals(0, oldStatistics.getTrip_count());
+		assertEquals(0, oldStatistics.getTrip_kilometres());
+		assertEquals(1, newStatistics.getTrip_count());
+		assertEquals(42, newStatistics.getTrip_kilometres());
+
+		assertEquals(0, fixtures.usageOn(oldVehicle, DAY).getTrip_count());
+		assertEquals(1, fixtures.usageOn(newVehicle, DAY).getTrip_count());
+		assertEquals(42, fixtures.usageOn(newVehicle, DAY).getTrip_kilometres());
+	}
+
+	@Test
+	public void testPatchById_TimestampChanged_RollupsOfBothDays() throws Exception {
+		Vehicle vehicle = fixtures.createVehicle("trip_patch_timestamp_vehicle");
+
+		Trip trip = tripService.save(tripOf(vehicle, 42));
+
+		patch(trip.getId(), Map.of("timestamp", DAY.plusDays(2) + "T10:00", "kilometres_driven", 50), HttpStatus.OK);
+
+		assertEquals(0, fixtures.usageOn(vehicle, DAY).getTrip_count());
+		assertEquals(0, fixtures.usageOn(vehicle, DAY).getTrip_kilometres());
+		assertEquals(1, fixtures.usageOn(vehicle, DAY.plusDays(2)).getTrip_count());
+		assertEquals(50, fixtures.usageOn(vehicle, DAY.plusDays(2)).getTrip_kilometres());
+
+		assertEquals(1, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getTrip_count());
+		assertEquals(50, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getTrip_kilometres());
+	}
+
+	@Test
+	public void testPatchById_Rejected_RowAndStatisticsUnchanged() throws Exception {
+		Vehicle vehicle = fixtures.createVehicle("trip_patch_rejected_vehicle");
+
+		Trip trip = tripService.save(tripOf(vehicle, 42));
+
+		// EMPTY STRINGS ARE REJECTED BY validate()
+		patch(trip.getId(), Map.of("kilometres_driven", 99, "origin", ""), HttpStatus.BAD_REQUEST);
+
+		Trip tripFromDatabase = tripRepository.findById(trip.getId()).orElseThrow();
+
+		assertEquals(42, tripFromDatabase.getKilometres_driven());
+		assertNull(tripFromDatabase.getOrigin());
+
+		assertEquals(1, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getTrip_count());
+		assertEquals(42, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getTrip_kilometres());
+
+		assertEquals(1, fixtures.usageOn(vehicle, DAY).getTrip_count());
+		assertEquals(42, fixtures.usageOn(vehicle, DAY).getTrip_kilometres());
+	}
+
+	@Test
+	public void testPatchList_RejectedElement_RollupsUnchanged() throws Exception {
+		Vehicle vehicle = fixtures.createVehicle("trip_patch_list_rejected_vehicle");
+
+		Trip rejectedTrip = tripService.save(tripOf(vehicle, 42));
+		Trip patchedTrip = tripService.save(tripOf(vehicle, 10));
+
+		List<Map<String, Object>> changesList = List.of(
+				Map.of("id", rejectedTrip.getId(), "timestamp", DAY.plusDays(1) + "T10:00", "origin", ""),
+				Map.of("id", patchedTrip.getId(), "kilometres_driven", 15));
+
+		this.mockMvc.perform(MockMvcRequestBuilders
+				.patch(URL).header("Authorization", "Bearer " + JWT_TOKEN)
+				.content(objectMapper.writeValueAsString(changesList))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().is(HttpStatus.MULTI_STATUS.value()))
+				.andExpect(jsonPath("$[0].http_status").value("BAD_REQUEST"))
+				.andExpect(jsonPath("$[1].http_status").value("OK"))
+				.andDo(print());
+
+		assertEquals(2, fixtures.usageOn(vehicle, DAY).getTrip_count());
+		assertEquals(57, fixtures.usageOn(vehicle, DAY).getTrip_kilometres());
+		assertEquals(0, fixtures.usageOn(vehicle, DAY.plusDays(1)).getTrip_count());
+	}
+
+
+	private void patch(Long id, Map<String, Object> changes, HttpStatus expectedStatus) throws Exception {
+		this.mockMvc.perform(MockMvcRequestBuilders
+				.patch(URL + "/" + id).header("Authorization", "Bearer " + JWT_TOKEN)
+				.content(objectMapper.writeValueAsString(changes))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().is(expectedStatus.value()))
+				.andDo(print());
+	}
+
+	private Trip tripOf(Vehicle vehicle, int kilometres) {
+		return VehicleTestFixtures.tripOf(null, vehicle, DAY.atTime(10, 0), kilometres);
+	}
+}
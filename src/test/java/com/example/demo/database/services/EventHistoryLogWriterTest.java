@@ -0,0 +1,72 @@
+package com.example.demo.database.services;
+
+import com.example.demo.database.models.EventHistoryLog;
+import com.example.demo.database.repositories.EventHistoryLogRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// flush(true) DOESN'T WAIT FOR THE BACKOFF, EVERY CALL IS ONE ATTEMPT
+class EventHistoryLogWriterTest {
+
+	@Test
+	public void testFlush_SaveFailsOnce_BatchRetried() {
+		EventHistoryLogRepository repository = Mockito.mock(EventHistoryLogRepository.class);
+		Mockito.when(repository.saveAll(Mockito.anyList()))
+				.thenThrow(new DataAccessResourceFailureException("database down"))
+				.thenReturn(List.of());
+
+		EventHistoryLogWriter writer = newWriter(repository, 5);
+		writer.write(new EventHistoryLog());
+		writer.write(new EventHistoryLog());
+
+		flush(writer);
+		flush(writer);
+
+		assertEquals(0, writer.getDroppedLogCount());
+
+		// NOTHING LEFT TO RETRY
+		flush(writer);
+
+		Mockito.verify(repository, Mockito.times(2)).saveAll(Mockito.anyList());
+	}
+
+	@Test
+	public void testFlush_SaveAlwaysFails_DroppedAndCountedAfterMaxRetries() {
+		EventHistoryLogRepository repository = Mockito.mock(EventHistoryLogRepository.class);
+		Mockito.when(repository.saveAll(Mockito.anyList())).thenThrow(new DataAccessResourceFailureException("database down"));
+
+		EventHistoryLogWriter writer = newWriter(repository, 2);
+		writer.write(new EventHistoryLog());
+
+		flush(writer);
+		flush(writer);
+
+		assertEquals(0, writer.getDroppedLogCount());
+
+		flush(writer);
+
+		assertEquals(1, writer.getDroppedLogCount());
+		Mockito.verify(repository, Mockito.times(3)).saveAll(Mockito.anyList());
+	}
+
+
+	private EventHistoryLogWriter newWriter(EventHistoryLogRepository repository, int maxRetries) {
+		EventHistoryLogWriter writer = new EventHistoryLogWriter(repository);
+		ReflectionTestUtils.setField(writer, "flushIntervalMs", 1000L);
+		ReflectionTestUtils.setField(writer, "queueCapacity", 100);
+		ReflectionTestUtils.setField(writer, "overflowPolicy", EventHistoryLogWriter.OverflowPolicy.DROP);
+		ReflectionTestUtils.setField(writer, "maxRetries", maxRetries);
+
+		return writer;
+	}
+
+	private void flush(EventHistoryLogWriter writer) {
+		ReflectionTestUtils.invokeMethod(writer, "flush", true);
+	}
+}
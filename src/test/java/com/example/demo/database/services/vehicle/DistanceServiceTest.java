@@ -0,0 +1,243 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.utils.Mapping;
+import com.example.demo.database.models.vehicle.Distance;
+import com.example.demo.database.models.vehicle.OdometerIngestReport;
+import com.example.demo.database.models.vehicle.OdometerReading;
+import com.example.demo.database.models.vehicle.Vehicle;
+import com.example.demo.database.repositories.vehicle.DistanceRepository;
+import com.example.demo.utils.StripedLocks;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@SpringBootTest
+@TestInstance(PER_CLASS)
+class DistanceServiceTest {
+
+	@Autowired
+	private DistanceService distanceService;
+
+	@Autowired
+	private DistanceRepository distanceRepository;
+
+	@Autowired
+	private VehicleStatisticsService vehicleStatisticsService;
+
+	@Autowired
+	private VehicleTestFixtures fixtures;
+
+
+	private final static int THREADS = 8;
+	private final static int READINGS_PER_THREAD = 25;
+
+	private final static LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+
+
+	@AfterAll
+	public void cleanUp() {
+		fixtures.cleanUp();
+	}
+
+
+	@Test
+	public void testConcurrentWritesForSameVehicle_KilometresStayMonotonic() throws Exception {
+		Long vehicleId = fixtures.createVehicle("distance_lock_test_vehicle").getId();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> writers = new ArrayList<>();
+
+		for (int thread = 0; thread < THREADS; thread++) {
+			Random random = new Random(thread);
+
+			writers.add(executor.submit(() -> {
+				start.await();
+
+				for (int i = 0; i < READINGS_PER_THREAD; i++) {
+					// KILOMETRES FOLLOW TIME WITH NOISE, SO CLOSE READINGS OF DIFFERENT THREADS CONFLICT
+					int minutes = random.nextInt(THREADS * READINGS_PER_THREAD * 10);
+					validateAndSave(distanceOf(vehicleId, START.plusMinutes(minutes), minutes + 1 + random.nextInt(50)));
+				}
+
+				return null;
+			}));
+		}
+
+		start.countDown();
+
+		for (Future<?> writer : writers) {
+			writer.get(60, TimeUnit.SECONDS);
+		}
+
+		executor.shutdown();
+
+		List<Distance> distances = distanceRepository.findAllByVehicleId(vehicleId);
+		distances.sort(Comparator.comparing(Distance::getTimestamp));
+
+		assertFalse(distances.isEmpty());
+
+		for (int i = 1; i < distances.size(); i++) {
+			Distance older = distances.get(i - 1);
+			Distance newer = distances.get(i);
+
+			assertNotEquals(older.getTimestamp(), newer.getTimestamp(), "duplicate timestamp: " + newer);
+			assertTrue(older.getKilometres() <= newer.getKilometres(), "'" + older + "' saved before '" + newer + "'");
+		}
+	}
+
+	@Test
+	public void testLockVehicle_OtherVehiclesDontWait() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> sameVehicle;
+
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distanceOf(1L, START, 1))) {
+			Future<?> otherVehicle = executor.submit(() -> distanceService.lockVehicle(distanceOf(2L, START, 1)).close());
+			otherVehicle.get(5, TimeUnit.SECONDS);
+
+			sameVehicle = executor.submit(() -> distanceService.lockVehicle(distanceOf(1L, START, 1)).close());
+			assertThrows(TimeoutException.class, () -> sameVehicle.get(200, TimeUnit.MILLISECONDS));
+		}
+
+		sameVehicle.get(5, TimeUnit.SECONDS);
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void testIngest_OutOfOrderReadings_CheckedInTimestampOrder() {
+		Vehicle vehicle = fixtures.createVehicle("distance_ingest_order_vehicle");
+
+		fixtures.saveDistance(vehicle, START.plusHours(1), 100);
+		fixtures.saveDistance(vehicle, START.plusHours(5), 500);
+
+		OdometerIngestReport report = ingest(
+				readingOf(1, vehicle, START.plusHours(4), 400),
+				readingOf(2, vehicle, START.plusHours(2), 200),
+				readingOf(3, vehicle, START.plusHours(7), 700),
+				readingOf(4, vehicle, START.plusHours(3), 300),
+				readingOf(5, vehicle, START.plusHours(6), 600));
+
+		assertEquals(5, report.getInserted());
+		assertEquals(0, report.getDuplicates());
+		assertTrue(report.getRejected().isEmpty());
+
+		assertEquals(List.of(100, 200, 300, 400, 500, 600, 700), kilometres(vehicle));
+		assertEquals(700, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getLatest_odometer());
+	}
+
+	@Test
+	public void testIngest_DuplicatesSkipped() {
+		Vehicle vehicle = fixtures.createVehicle("distance_ingest_duplicates_vehicle");
+
+		fixtures.saveDistance(vehicle, START.plusHours(1), 100);
+
+		OdometerIngestReport report = ingest(
+				readingOf(1, vehicle, START.plusHours(1), 100),
+				readingOf(2, vehicle, START.plusHours(2), 200),
+				readingOf(3, vehicle, START.plusHours(2), 200));
+
+		assertEquals(1, report.getInserted());
+		assertEquals(2, report.getDuplicates());
+		assertTrue(report.getRejected().isEmpty());
+
+		assertEquals(List.of(100, 200), kilometres(vehicle));
+	}
+
+	@Test
+	public void testIngest_InvalidReadingsRejectedByLine() {
+		Vehicle vehicle = fixtures.createVehicle("distance_ingest_rejected_vehicle");
+
+		fixtures.saveDistance(vehicle, START.plusHours(2), 200);
+		fixtures.saveDistance(vehicle, START.plusHours(4), 400);
+
+		OdometerIngestReport report = ingest(
+				// LOWER THAN THE EXISTING READING BEFORE IT
+				readingOf(1, vehicle, START.plusHours(3), 150),
+				// HIGHER THAN THE EXISTING READING AFTER IT
+				readingOf(2, vehicle, START.plusHours(1), 250),
+				// SAME TIMESTAMP AS AN EXISTING READING, OTHER KILOMETRES
+				readingOf(3, vehicle, START.plusHours(4), 450),
+				readingOf(4, vehicle, START.plusHours(5), 500),
+				// LOWER THAN THE READING ACCEPTED FROM LINE 4
+				readingOf(5, vehicle, START.plusHours(6), 480),
+				readingOf(6, null, START.plusHours(7), 700),
+				readingOf(7, vehicle, START.plusHours(8), 0));
+
+		assertEquals(1, report.getInserted());
+		assertEquals(0, report.getDuplicates());
+
+		List<Integer> rejectedLines = new ArrayList<>();
+		report.getRejected().forEach(rejected -> rejectedLines.add(rejected.getLine()));
+
+		assertEquals(List.of(1, 2, 3, 5, 6, 7), rejectedLines);
+		assertEquals(List.of(200, 400, 500), kilometres(vehicle));
+	}
+
+
+	// SAME STEPS AS THE DISTANCE CONTROLLERS
+	private void validateAndSave(Distance distance) {
+		try (StripedLocks.Held vehicleLock = distanceService.lockVehicle(distance)) {
+			if (distanceService.validate(distance, Mapping.POST).isValid()) {
+				distanceService.save(distance);
+			}
+		}
+	}
+
+	// SAME STEPS AS THE INGEST ENDPOINT
+	private OdometerIngestReport ingest(OdometerReading... readings) {
+		OdometerIngestReport report = new OdometerIngestReport();
+		report.setReceived(readings.length);
+
+		Set<Long> vehicleIds = new HashSet<>();
+		Arrays.stream(readings).forEach(reading -> vehicleIds.add(reading.getVehicle_id()));
+
+		try (StripedLocks.Held vehicleLocks = distanceService.lockVehicles(vehicleIds)) {
+			distanceService.ingest(new ArrayList<>(Arrays.asList(readings)), report);
+		}
+
+		return report;
+	}
+
+	private OdometerReading readingOf(int line, Vehicle vehicle, LocalDateTime timestamp, int kilometres) {
+		OdometerReading reading = new OdometerReading();
+		reading.setLine(line);
+		reading.setVehicle_id(vehicle == null ? null : vehicle.getId());
+		reading.setTimestamp(timestamp);
+		reading.setKilometres(kilometres);
+
+		return reading;
+	}
+
+	private List<Integer> kilometres(Vehicle vehicle) {
+		List<Distance> distances = distanceRepository.findAllByVehicleId(vehicle.getId());
+		distances.sort(Comparator.comparing(Distance::getTimestamp));
+
+		List<Integer> kilometres = new ArrayList<>();
+		distances.forEach(distance -> kilometres.add(distance.getKilometres()));
+
+		return kilometres;
+	}
+
+	private Distance distanceOf(Long vehicleId, LocalDateTime timestamp, int kilometres) {
+		Vehicle vehicle = new Vehicle();
+		vehicle.setId(vehicleId);
+
+		Distance distance = new Distance();
+		distance.setVehicle(vehicle);
+		distance.setTimestamp(timestamp);
+		distance.setKilometres(kilometres);
+
+		return distance;
+	}
+}
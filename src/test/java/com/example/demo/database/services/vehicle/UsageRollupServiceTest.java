@@ -0,0 +1,171 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@SpringBootTest
+@TestInstance(PER_CLASS)
+class UsageRollupServiceTest {
+
+	@Autowired
+	private UsageRollupService usageRollupService;
+
+	@Autowired
+	private DistanceService distanceService;
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private RefuelService refuelService;
+
+	@Autowired
+	private VehicleTestFixtures fixtures;
+
+
+	// WEDNESDAY, THE WEEK STARTS ON 2019-12-30
+	private final static LocalDate DAY = LocalDate.of(2020, 1, 1);
+
+
+
+	@AfterAll
+	public void cleanUp() {
+		fixtures.cleanUp();
+	}
+
+
+	@Test
+	public void testSave_NewRows_AddedToTheirDays() {
+		Vehicle vehicle = fixtures.createVehicle("rollup_new_rows_vehicle");
+
+		fixtures.saveDistance(vehicle, DAY.atTime(8, 0), 100);
+		fixtures.saveDistance(vehicle, DAY.atTime(18, 0), 130);
+		fixtures.saveTrip(vehicle, DAY.atTime(9, 0), 20);
+		fixtures.saveTrip(vehicle, DAY.atTime(17, 0), 10);
+		fixtures.saveTrip(vehicle, DAY.plusDays(1).atTime(9, 0), null);
+		fixtures.saveRefuel(vehicle, DAY.plusDays(1).atTime(12, 0), 30.5f, 50.25f);
+
+		UsageBucket firstDay = fixtures.usageOn(vehicle, DAY);
+		UsageBucket secondDay = fixtures.usageOn(vehicle, DAY.plusDays(1));
+
+		assertEquals(2, firstDay.getDistance_count());
+		assertEquals(30, firstDay.getOdometer_kilometres());
+		assertEquals(2, firstDay.getTrip_count());
+		assertEquals(30, firstDay.getTrip_kilometres());
+		assertEquals(0, firstDay.getRefuel_count());
+
+		assertEquals(0, secondDay.getDistance_count());
+		assertEquals(1, secondDay.getTrip_count());
+		assertEquals(0, secondDay.getTrip_kilometres());
+		assertEquals(1, secondDay.getRefuel_count());
+		assertEquals(30.5, secondDay.getFuel_amount(), 0.001);
+		assertEquals(50.25, secondDay.getRefuel_cost(), 0.001);
+	}
+
+	@Test
+	public void testSave_UpdatedAndDeletedRows_ChangeTheirDays() {
+		Vehicle vehicle = fixtures.createVehicle("rollup_update_vehicle");
+
+		fixtures.saveDistance(vehicle, DAY.atTime(8, 0), 100);
+		Distance lastReading = fixtures.saveDistance(vehicle, DAY.atTime(18, 0), 130);
+		Distance onlyReading = fixtures.saveDistance(vehicle, DAY.plusDays(1).atTime(8, 0), 150);
+		Trip trip = fixtures.saveTrip(vehicle, DAY.atTime(9, 0), 20);
+		Refuel refuel = fixtures.saveRefuel(vehicle, DAY.atTime(12, 0), 30.5f, 50.25f);
+
+		// NEW INSTANCE WITH THE SAME ID, LIKE PUT
+		tripService.save(VehicleTestFixtures.tripOf(trip.getId(), vehicle, DAY.plusDays(1).atTime(9, 0), 25));
+
+		distanceService.delete(distanceService.getById(lastReading.getId()));
+		distanceService.delete(distanceService.getById(onlyReading.getId()));
+		refuelService.delete(refuelService.getById(refuel.getId()));
+
+		UsageBucket firstDay = fixtures.usageOn(vehicle, DAY);
+		UsageBucket secondDay = fixtures.usageOn(vehicle, DAY.plusDays(1));
+
+		// THE ODOMETER MAX OF THE FIRST DAY IS RECOMPUTED FROM ITS REMAINING READING
+		assertEquals(1, firstDay.getDistance_count());
+		assertEquals(0, firstDay.getOdometer_kilometres());
+		assertEquals(0, firstDay.getTrip_count());
+		assertEquals(0, firstDay.getTrip_kilometres());
+		assertEquals(0, firstDay.getRefuel_count());
+		assertEquals(0.0, firstDay.getFuel_amount(), 0.001);
+
+		assertEquals(0, secondDay.getDistance_count());
+		assertEquals(0, secondDay.getOdometer_kilometres());
+		assertEquals(1, secondDay.getTrip_count());
+		assertEquals(25, secondDay.getTrip_kilometres());
+	}
+
+	@Test
+	public void testOdometerKilometres_DayWeekAndMonthBuckets() {
+		Vehicle vehicle = fixtures.createVehicle("rollup_odometer_vehicle");
+
+		fixtures.saveDistance(vehicle, DAY.atTime(8, 0), 100);
+		fixtures.saveDistance(vehicle, DAY.atTime(18, 0), 120);
+		fixtures.saveDistance(vehicle, DAY.plusDays(1).atTime(8, 0), 150);
+		// NO READINGS ON 2020-01-03
+		fixtures.saveDistance(vehicle, DAY.plusDays(3).atTime(8, 0), 200);
+		fixtures.saveDistance(vehicle, DAY.plusDays(5).atTime(8, 0), 260);
+		fixtures.saveDistance(vehicle, LocalDate.of(2020, 2, 1).atTime(8, 0), 300);
+
+		Map<LocalDate, Long> days = odometerKilometres(vehicle, UsageBucket.Size.DAY, DAY, DAY.plusDays(5));
+
+		assertEquals(20, days.get(DAY));
+		assertEquals(30, days.get(DAY.plusDays(1)));
+		assertEquals(50, days.get(DAY.plusDays(3)));
+		assertEquals(60, days.get(DAY.plusDays(5)));
+
+		Map<LocalDate, Long> weeks = odometerKilometres(vehicle, UsageBucket.Size.WEEK, DAY, DAY.plusDays(5));
+
+		assertEquals(Map.of(LocalDate.of(2019, 12, 30), 100L, LocalDate.of(2020, 1, 6), 60L), weeks);
+
+		Map<LocalDate, Long> months = odometerKilometres(vehicle, UsageBucket.Size.MONTH, DAY, LocalDate.of(2020, 2, 29));
+
+		assertEquals(Map.of(DAY, 160L, LocalDate.of(2020, 2, 1), 40L), months);
+
+		// THE FIRST DAY OF THE RANGE ONLY COUNTS FROM ITS OWN FIRST READING
+		assertEquals(0, odometerKilometres(vehicle, UsageBucket.Size.DAY, DAY.plusDays(1), DAY.plusDays(1)).get(DAY.plusDays(1)));
+	}
+
+	@Test
+	public void testRebuildAll_SameAsDeltas() {
+		Vehicle vehicle = fixtures.createVehicle("rollup_rebuild_vehicle");
+
+		fixtures.saveDistance(vehicle, DAY.atTime(8, 0), 100);
+		Distance distance = fixtures.saveDistance(vehicle, DAY.atTime(18, 0), 130);
+		fixtures.saveDistance(vehicle, DAY.plusDays(1).atTime(8, 0), 150);
+		fixtures.saveTrip(vehicle, DAY.atTime(9, 0), 20);
+		fixtures.saveRefuel(vehicle, DAY.plusDays(1).atTime(12, 0), 30.5f, 50.25f);
+		distanceService.delete(distanceService.getById(distance.getId()));
+
+		List<UsageBucket> fromDeltas = usageRollupService.getByVehicleId(vehicle.getId(), UsageBucket.Size.DAY, DAY, DAY.plusDays(1));
+
+		usageRollupService.rebuildAll();
+
+		List<UsageBucket> rebuilt = usageRollupService.getByVehicleId(vehicle.getId(), UsageBucket.Size.DAY, DAY, DAY.plusDays(1));
+
+		assertEquals(2, rebuilt.size());
+		assertEquals(fromDeltas, rebuilt);
+	}
+
+
+	private Map<LocalDate, Long> odometerKilometres(Vehicle vehicle, UsageBucket.Size size, LocalDate from, LocalDate to) {
+		Map<LocalDate, Long> kilometres = new HashMap<>();
+
+		for (UsageBucket bucket : usageRollupService.getByVehicleId(vehicle.getId(), size, from, to)) {
+			kilometres.put(bucket.getStart(), bucket.getOdometer_kilometres());
+		}
+
+		return kilometres;
+	}
+}
@@ -0,0 +1,117 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.Fleet;
+import com.example.demo.database.models.vehicle.Vehicle;
+import com.example.demo.database.repositories.vehicle.FleetRepository;
+import com.example.demo.database.repositories.vehicle.VehicleRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@TestInstance(PER_CLASS)
+class VehicleServiceTest {
+
+	@Autowired
+	private VehicleService vehicleService;
+
+	@Autowired
+	private VehicleRepository vehicleRepository;
+
+	@Autowired
+	private FleetRepository fleetRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+
+	private Statistics statistics;
+
+	private Fleet fleet;
+
+	private final List<Vehicle> createdVehicles = new ArrayList<>();
+
+
+
+	@BeforeAll
+	public void init() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		fleet = new Fleet();
+		fleet.setName("statement_count_test_fleet");
+		fleet = fleetRepository.save(fleet);
+	}
+
+	@AfterAll
+	public void cleanUp() {
+		// VEHICLE OWNS THE JOIN TABLE, SO REMOVING VEHICLES ALSO REMOVES THEIR FLEET ROWS
+		vehicleRepository.deleteAll(createdVehicles);
+		fleetRepository.deleteById(fleet.getId());
+	}
+
+
+	@Test
+	public void testGetById_StatementCountDoesNotGrowWithFleetSize() {
+		Vehicle vehicle = addVehiclesToFleet(1).get(0);
+
+		long statementsWithSmallFleet = countStatementsForGetById(vehicle.getId());
+
+		addVehiclesToFleet(50);
+
+		long statementsWithLargeFleet = countStatementsForGetById(vehicle.getId());
+
+		assertEquals(statementsWithSmallFleet, statementsWithLargeFleet);
+		assertEquals(1, statementsWithLargeFleet);
+	}
+
+	@Test
+	public void testGetById_FleetsLoadedWithoutTheirVehicles() {
+		Vehicle vehicle = addVehiclesToFleet(1).get(0);
+
+		Vehicle vehicleFromDatabase = vehicleService.getById(vehicle.getId());
+
+		// DETACHED HERE, FLEETS MUST ALREADY BE LOADED BY THE ENTITY GRAPH
+		assertEquals(1, vehicleFromDatabase.getFleets().size());
+		assertEquals(fleet.getId(), vehicleFromDatabase.getFleets().iterator().next().getId());
+	}
+
+
+	private long countStatementsForGetById(Long id) {
+		statistics.clear();
+
+		vehicleService.getById(id);
+
+		return statistics.getPrepareStatementCount();
+	}
+
+	private List<Vehicle> addVehiclesToFleet(int amount) {
+		List<Vehicle> vehicles = new ArrayList<>();
+
+		for (int i = 0; i < amount; i++) {
+			Vehicle vehicle = new Vehicle();
+			vehicle.setName("statement_count_test_vehicle_" + i);
+			vehicle.setFleets(new HashSet<>(Set.of(fleet)));
+
+			vehicles.add(vehicle);
+		}
+
+		List<Vehicle> savedVehicles = vehicleRepository.saveAll(vehicles);
+		createdVehicles.addAll(savedVehicles);
+
+		return savedVehicles;
+	}
+}
@@ -0,0 +1,200 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@SpringBootTest
+@TestInstance(PER_CLASS)
+class VehicleStatisticsServiceTest {
+
+	@Autowired
+	private VehicleStatisticsService vehicleStatisticsService;
+
+	@Autowired
+	private VehicleService vehicleService;
+
+	@Autowired
+	private DistanceService distanceService;
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private RefuelService refuelService;
+
+	@Autowired
+	private VehicleEventService vehicleEventService;
+
+	@Autowired
+	private VehicleTestFixtures fixtures;
+
+
+	private final static LocalDateTime START = LocalDateTime.of(2020, 1, 1, 10, 0);
+
+
+
+	@AfterAll
+	public void cleanUp() {
+		fixtures.cleanUp();
+	}
+
+
+	@Test
+	public void testSave_NewRows_AddedToTotals() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_new_rows_vehicle");
+
+		fixtures.saveDistance(vehicle, START, 100);
+		fixtures.saveDistance(vehicle, START.plusHours(1), 150);
+		fixtures.saveTrip(vehicle, START, 42);
+		fixtures.saveTrip(vehicle, START.plusDays(1), null);
+		fixtures.saveRefuel(vehicle, START, 30.5f, 50.25f);
+		fixtures.saveVehicleEvent(vehicle, START.plusDays(2));
+		fixtures.saveVehicleEvent(vehicle, START);
+
+		VehicleStatistics statistics = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+
+		assertEquals(150, statistics.getLatest_odometer());
+		assertEquals(START.plusHours(1), statistics.getLatest_odometer_timestamp());
+		assertEquals(2, statistics.getDistance_count());
+		assertEquals(250, statistics.getTotal_kilometres());
+		assertEquals(2, statistics.getTrip_count());
+		assertEquals(42, statistics.getTrip_kilometres());
+		assertEquals(1, statistics.getRefuel_count());
+		assertEquals(30.5, statistics.getTotal_fuel(), 0.001);
+		assertEquals(50.25, statistics.getTotal_refuel_cost(), 0.001);
+		assertEquals(2, statistics.getVehicle_event_count());
+		assertEquals(START.plusDays(2), statistics.getLast_vehicle_event_timestamp());
+	}
+
+	@Test
+	public void testSave_UpdatedRows_ChangeTotalsByDifference() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_update_vehicle");
+		Vehicle otherVehicle = fixtures.createVehicle("statistics_update_other_vehicle");
+
+		fixtures.saveDistance(vehicle, START, 100);
+		Distance latest = fixtures.saveDistance(vehicle, START.plusHours(1), 150);
+		Trip trip = fixtures.saveTrip(vehicle, START, 42);
+		Refuel refuel = fixtures.saveRefuel(vehicle, START, 30.5f, 50.25f);
+
+		// NEW INSTANCES WITH THE SAME ID, LIKE PUT
+		Distance updatedDistance = new Distance(latest);
+		updatedDistance.setTimestamp(START.minusHours(1));
+		updatedDistance.setKilometres(90);
+		distanceService.save(updatedDistance);
+
+		tripService.save(VehicleTestFixtures.tripOf(trip.getId(), otherVehicle, START, 50));
+		refuelService.save(VehicleTestFixtures.refuelOf(refuel.getId(), vehicle, START, 20.0f, 30.0f));
+
+		VehicleStatistics statistics = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+		VehicleStatistics otherStatistics = vehicleStatisticsService.getByVehicleId(otherVehicle.getId());
+
+		// THE LATEST READING MOVED BEFORE THE OTHER ONE
+		assertEquals(100, statistics.getLatest_odometer());
+		assertEquals(START, statistics.getLatest_odometer_timestamp());
+		assertEquals(2, statistics.getDistance_count());
+		assertEquals(190, statistics.getTotal_kilometres());
+
+		assertEquals(0, statistics.getTrip_count());
+		assertEquals(0, statistics.getTrip_kilometres());
+		assertEquals(1, otherStatistics.getTrip_count());
+		assertEquals(50, otherStatistics.getTrip_kilometres());
+
+		assertEquals(1, statistics.getRefuel_count());
+		assertEquals(20.0, statistics.getTotal_fuel(), 0.001);
+		assertEquals(30.0, statistics.getTotal_refuel_cost(), 0.001);
+	}
+
+	@Test
+	public void testDelete_LatestRows_LookedUpAgain() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_delete_vehicle");
+
+		fixtures.saveDistance(vehicle, START, 100);
+		Distance latestDistance = fixtures.saveDistance(vehicle, START.plusHours(1), 150);
+		Trip trip = fixtures.saveTrip(vehicle, START, 42);
+		Refuel refuel = fixtures.saveRefuel(vehicle, START, 30.5f, 50.25f);
+		fixtures.saveVehicleEvent(vehicle, START);
+		VehicleEvent latestEvent = fixtures.saveVehicleEvent(vehicle, START.plusDays(1));
+
+		distanceService.delete(distanceService.getById(latestDistance.getId()));
+		tripService.delete(tripService.getById(trip.getId()));
+		refuelService.delete(refuelService.getById(refuel.getId()));
+		vehicleEventService.delete(vehicleEventService.getById(latestEvent.getId()));
+
+		VehicleStatistics statistics = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+
+		assertEquals(100, statistics.getLatest_odometer());
+		assertEquals(START, statistics.getLatest_odometer_timestamp());
+		assertEquals(1, statistics.getDistance_count());
+		assertEquals(100, statistics.getTotal_kilometres());
+		assertEquals(0, statistics.getTrip_count());
+		assertEquals(0, statistics.getTrip_kilometres());
+		assertEquals(0, statistics.getRefuel_count());
+		assertEquals(0.0, statistics.getTotal_fuel(), 0.001);
+		assertEquals(1, statistics.getVehicle_event_count());
+		assertEquals(START, statistics.getLast_vehicle_event_timestamp());
+	}
+
+	@Test
+	public void testDelete_OnlyRows_LatestValuesCleared() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_delete_only_rows_vehicle");
+
+		Distance distance = fixtures.saveDistance(vehicle, START, 100);
+		VehicleEvent event = fixtures.saveVehicleEvent(vehicle, START);
+
+		distanceService.delete(distanceService.getById(distance.getId()));
+		vehicleEventService.delete(vehicleEventService.getById(event.getId()));
+
+		VehicleStatistics statistics = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+
+		assertNull(statistics.getLatest_odometer());
+		assertNull(statistics.getLatest_odometer_timestamp());
+		assertEquals(0, statistics.getDistance_count());
+		assertEquals(0, statistics.getVehicle_event_count());
+		assertNull(statistics.getLast_vehicle_event_timestamp());
+	}
+
+	@Test
+	public void testDeleteVehicle_RowDeleted() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_vehicle_delete_vehicle");
+
+		fixtures.saveDistance(vehicle, START, 100);
+		fixtures.saveTrip(vehicle, START, 42);
+
+		vehicleService.delete(vehicle);
+
+		assertTrue(vehicleStatisticsService.getAll().stream().noneMatch(statistics -> statistics.getVehicle_id().equals(vehicle.getId())));
+		assertEquals(0, vehicleStatisticsService.getByVehicleId(vehicle.getId()).getDistance_count());
+	}
+
+	@Test
+	public void testRefreshAll_SameAsDeltas() {
+		Vehicle vehicle = fixtures.createVehicle("statistics_refresh_all_vehicle");
+
+		fixtures.saveDistance(vehicle, START, 100);
+		Distance distance = fixtures.saveDistance(vehicle, START.plusHours(1), 150);
+		fixtures.saveTrip(vehicle, START, 42);
+		fixtures.saveRefuel(vehicle, START, 30.5f, 50.25f);
+		fixtures.saveVehicleEvent(vehicle, START);
+		distanceService.delete(distanceService.getById(distance.getId()));
+
+		VehicleStatistics fromDeltas = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+
+		vehicleStatisticsService.refreshAll();
+
+		VehicleStatistics recomputed = vehicleStatisticsService.getByVehicleId(vehicle.getId());
+
+		fromDeltas.setUpdated_at(null);
+		recomputed.setUpdated_at(null);
+
+		assertEquals(fromDeltas, recomputed);
+	}
+}
@@ -0,0 +1,161 @@
+package com.example.demo.database.services.vehicle;
+
+import com.example.demo.database.models.vehicle.*;
+import com.example.demo.database.repositories.vehicle.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*  Vehicles and their readings for tests that run against the real database.
+ *  Every test class gets its own instance (prototype), cleanUp() in its @AfterAll deletes what the instance created,
+ *  plus the rows saved for its vehicles in other ways (PATCH, ingest), their statistics and usage rollups */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+public class VehicleTestFixtures {
+
+	@Autowired
+	private VehicleStatisticsService vehicleStatisticsService;
+
+	@Autowired
+	private UsageRollupService usageRollupService;
+
+	@Autowired
+	private DistanceService distanceService;
+
+	@Autowired
+	private TripService tripService;
+
+	@Autowired
+	private RefuelService refuelService;
+
+	@Autowired
+	private VehicleEventService vehicleEventService;
+
+	@Autowired
+	private VehicleRepository vehicleRepository;
+
+	@Autowired
+	private DistanceRepository distanceRepository;
+
+	@Autowired
+	private TripRepository tripRepository;
+
+	@Autowired
+	private RefuelRepository refuelRepository;
+
+	@Autowired
+	private VehicleEventRepository vehicleEventRepository;
+
+
+	private final List<Long> createdVehicleIds = new ArrayList<>();
+
+	// ROWS OF DELETED VEHICLES HAVE NO VEHICLE ANYMORE, THEY ARE CLEANED UP BY ID
+	private final List<Long> createdDistanceIds = new ArrayList<>();
+	private final List<Long> createdTripIds = new ArrayList<>();
+	private final List<Long> createdRefuelIds = new ArrayList<>();
+	private final List<Long> createdVehicleEventIds = new ArrayList<>();
+
+
+
+	public void cleanUp() {
+		distanceRepository.deleteAll(distanceRepository.findAllById(createdDistanceIds));
+		tripRepository.deleteAll(tripRepository.findAllById(createdTripIds));
+		refuelRepository.deleteAll(refuelRepository.findAllById(createdRefuelIds));
+		vehicleEventRepository.deleteAll(vehicleEventRepository.findAllById(createdVehicleEventIds));
+
+		for (Long vehicleId : createdVehicleIds) {
+			distanceRepository.deleteAll(distanceRepository.findAllByVehicleId(vehicleId));
+			tripRepository.deleteAll(tripRepository.findAllByVehicleId(vehicleId));
+			refuelRepository.deleteAll(refuelRepository.findAllByVehicleId(vehicleId));
+			vehicleEventRepository.deleteAll(vehicleEventRepository.findAllByVehicleId(vehicleId));
+		}
+
+		vehicleStatisticsService.deleteByVehicleIds(createdVehicleIds);
+		usageRollupService.deleteByVehicleIds(createdVehicleIds);
+		vehicleRepository.deleteAll(vehicleRepository.findAllById(createdVehicleIds));
+	}
+
+
+	public Vehicle createVehicle(String name) {
+		Vehicle vehicle = new Vehicle();
+		vehicle.setName(name);
+		vehicle = vehicleRepository.save(vehicle);
+		createdVehicleIds.add(vehicle.getId());
+
+		return vehicle;
+	}
+
+	public Distance saveDistance(Vehicle vehicle, LocalDateTime timestamp, int kilometres) {
+		Distance distance = new Distance();
+		distance.setVehicle(vehicle);
+		distance.setTimestamp(timestamp);
+		distance.setKilometres(kilometres);
+
+		distance = distanceService.save(distance);
+		createdDistanceIds.add(distance.getId());
+
+		return distance;
+	}
+
+	public Trip saveTrip(Vehicle vehicle, LocalDateTime timestamp, Integer kilometres) {
+		Trip trip = tripService.save(tripOf(null, vehicle, timestamp, kilometres));
+		createdTripIds.add(trip.getId());
+
+		return trip;
+	}
+
+	public Refuel saveRefuel(Vehicle vehicle, LocalDateTime timestamp, Float amount, Float price) {
+		Refuel refuel = refuelService.save(refuelOf(null, vehicle, timestamp, amount, price));
+		createdRefuelIds.add(refuel.getId());
+
+		return refuel;
+	}
+
+	public VehicleEvent saveVehicleEvent(Vehicle vehicle, LocalDateTime timestamp) {
+		VehicleEvent event = new VehicleEvent();
+		event.setName("test_event");
+		event.setVehicle(vehicle);
+		event.setTimestamp(timestamp);
+
+		event = vehicleEventService.save(event);
+		createdVehicleEventIds.add(event.getId());
+
+		return event;
+	}
+
+	// DAYS WITHOUT A ROLLUP ROW ARE NOT IN THE REPORT
+	public UsageBucket usageOn(Vehicle vehicle, LocalDate day) {
+		return usageRollupService.getByVehicleId(vehicle.getId(), UsageBucket.Size.DAY, day, day).stream()
+				.findFirst()
+				.orElseGet(() -> new UsageBucket(day, 0, 0, 0, 0, 0, 0, 0));
+	}
+
+
+	// id: NULL FOR A NEW TRIP, AN EXISTING ONE FOR A NEW INSTANCE WITH THE SAME ID (LIKE PUT)
+	public static Trip tripOf(Long id, Vehicle vehicle, LocalDateTime timestamp, Integer kilometres) {
+		Trip trip = new Trip();
+		trip.setId(id);
+		trip.setVehicle(vehicle);
+		trip.setTimestamp(timestamp);
+		trip.setKilometres_driven(kilometres);
+
+		return trip;
+	}
+
+	public static Refuel refuelOf(Long id, Vehicle vehicle, LocalDateTime timestamp, Float amount, Float price) {
+		Refuel refuel = new Refuel();
+		refuel.setId(id);
+		refuel.setVehicle(vehicle);
+		refuel.setTimestamp(timestamp);
+		refuel.setRefuel_amount(amount);
+		refuel.setPrice(price);
+
+		return refuel;
+	}
+}
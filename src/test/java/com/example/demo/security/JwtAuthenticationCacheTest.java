@@ -0,0 +1,55 @@
+package com.example.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtAuthenticationCacheTest {
+
+	private final static long IN_AN_HOUR = System.currentTimeMillis() + 3600 * 1000;
+
+
+	@Test
+	public void testPut_SameGeneration_Cached() {
+		JwtAuthenticationCache cache = newCache();
+		UserDetails user = userDetails("cached_user");
+
+		cache.put("token", user, IN_AN_HOUR, cache.generation());
+
+		assertSame(user, cache.get("token"));
+	}
+
+	@Test
+	public void testPut_LoadedBeforeInvalidation_NotCached() {
+		JwtAuthenticationCache cache = newCache();
+
+		// THE USER IS LOADED, THEN A TRANSACTION THAT CHANGED IT COMMITS BEFORE THE REQUEST CACHES IT
+		long generation = cache.generation();
+		cache.invalidateAll();
+
+		cache.put("token", userDetails("old_user"), IN_AN_HOUR, generation);
+
+		assertNull(cache.get("token"));
+
+		cache.put("token", userDetails("new_user"), IN_AN_HOUR, cache.generation());
+
+		assertEquals("new_user", cache.get("token").getUsername());
+	}
+
+
+	private JwtAuthenticationCache newCache() {
+		JwtAuthenticationCache cache = new JwtAuthenticationCache();
+		ReflectionTestUtils.setField(cache, "maxSize", 100);
+
+		return cache;
+	}
+
+	private UserDetails userDetails(String username) {
+		return new User(username, "password", List.of());
+	}
+}
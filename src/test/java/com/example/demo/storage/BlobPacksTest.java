@@ -0,0 +1,117 @@
+package com.example.demo.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// PACKS ARE RE-OPENED WITH A NEW INSTANCE (LIKE AFTER A RESTART) TO CHECK WHAT THE INDEX FILES KEEP
+class BlobPacksTest {
+
+	@TempDir
+	Path directory;
+
+
+	@Test
+	public void testAppend_CompressibleAndIncompressible_ReadBackAfterRestart() throws IOException {
+		byte[] text = "odometer 123456 km\n".repeat(1000).getBytes(StandardCharsets.US_ASCII);
+		byte[] random = new byte[20000];
+		new Random(1).nextBytes(random);
+
+		BlobPacks packs = openPacks();
+		String textHash = append(packs, text);
+		String randomHash = append(packs, random);
+
+		assertArrayEquals(text, read(packs, textHash));
+		assertArrayEquals(random, read(packs, randomHash));
+
+		BlobPacks reopened = openPacks();
+
+		assertArrayEquals(text, read(reopened, textHash));
+		assertArrayEquals(random, read(reopened, randomHash));
+	}
+
+	@Test
+	public void testDelete_TombstoneKeptAfterRestart() throws IOException {
+		BlobPacks packs = openPacks();
+		String deletedHash = append(packs, "deleted".getBytes(StandardCharsets.US_ASCII));
+		String keptHash = append(packs, "kept".getBytes(StandardCharsets.US_ASCII));
+
+		packs.delete(deletedHash);
+
+		assertFalse(packs.contains(deletedHash));
+
+		BlobPacks reopened = openPacks();
+
+		assertFalse(reopened.contains(deletedHash));
+		assertArrayEquals("kept".getBytes(StandardCharsets.US_ASCII), read(reopened, keptHash));
+
+		// PACKED AGAIN AFTER THE TOMBSTONE
+		append(reopened, "deleted".getBytes(StandardCharsets.US_ASCII));
+
+		assertArrayEquals("deleted".getBytes(StandardCharsets.US_ASCII), read(openPacks(), deletedHash));
+	}
+
+	@Test
+	public void testAppend_IndexLineCutOffByCrash_NextLineNotLost() throws IOException {
+		BlobPacks packs = openPacks();
+		String firstHash = append(packs, "first".getBytes(StandardCharsets.US_ASCII));
+		String cutOffHash = append(packs, "cut off".getBytes(StandardCharsets.US_ASCII));
+
+		// CRASH WHILE WRITING THE SECOND LINE: ITS LAST FIELDS AND THE NEWLINE NEVER REACHED THE DISK
+		Path index = directory.resolve("packs").resolve("pack-0.idx");
+		byte[] lines = Files.readAllBytes(index);
+		Files.write(index, Arrays.copyOf(lines, lines.length - 4));
+
+		BlobPacks restarted = openPacks();
+
+		assertTrue(restarted.contains(firstHash));
+		assertFalse(restarted.contains(cutOffHash));
+
+		String nextHash = append(restarted, "next".getBytes(StandardCharsets.US_ASCII));
+
+		List<String> indexLines = Files.readAllLines(index, StandardCharsets.US_ASCII);
+		assertTrue(indexLines.get(indexLines.size() - 1).startsWith(nextHash + " "), "own line: " + indexLines);
+
+		BlobPacks reopened = openPacks();
+
+		assertArrayEquals("first".getBytes(StandardCharsets.US_ASCII), read(reopened, firstHash));
+		assertArrayEquals("next".getBytes(StandardCharsets.US_ASCII), read(reopened, nextHash));
+	}
+
+
+	private BlobPacks openPacks() throws IOException {
+		BlobPacks packs = new BlobPacks();
+		ReflectionTestUtils.setField(packs, "directory", directory.toString());
+		ReflectionTestUtils.setField(packs, "maxPackSize", DataSize.ofMegabytes(1));
+		packs.init();
+
+		return packs;
+	}
+
+	private String append(BlobPacks packs, byte[] content) throws IOException {
+		Path looseFile = Files.write(Files.createTempFile(directory, "loose-", ".tmp"), content);
+		String hash = Sha256.of(looseFile);
+
+		packs.append(hash, looseFile);
+
+		return hash;
+	}
+
+	private byte[] read(BlobPacks packs, String hash) throws IOException {
+		try (InputStream in = packs.open(hash)) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demo.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemBlobStoreTest {
+
+	private final static byte[] CONTENT = "odometer 123456 km\n".repeat(100).getBytes(StandardCharsets.US_ASCII);
+
+	@TempDir
+	Path directory;
+
+
+	@Test
+	public void testPackColdBlobs_LooseCopyKeptForGracePeriod() throws IOException {
+		FileSystemBlobStore blobStore = openBlobStore();
+		String hash = blobStore.put(new ByteArrayInputStream(CONTENT)).getHash();
+		Path looseFile = blobStore.getPath(hash).orElseThrow();
+
+		Files.setLastModifiedTime(looseFile, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+		TieringReport report = blobStore.packColdBlobs(Duration.ofDays(1), Duration.ofHours(1));
+
+		// A DOWNLOAD MAY STILL SEND THE LOOSE FILE
+		assertEquals(1, report.getBlobs());
+		assertTrue(Files.exists(looseFile));
+
+		blobStore.packColdBlobs(Duration.ofDays(1), Duration.ZERO);
+
+		assertFalse(Files.exists(looseFile));
+		assertTrue(blobStore.exists(hash));
+
+		try (InputStream in = blobStore.open(hash)) {
+			assertArrayEquals(CONTENT, in.readAllBytes());
+		}
+	}
+
+
+	private FileSystemBlobStore openBlobStore() throws IOException {
+		BlobPacks packs = new BlobPacks();
+		ReflectionTestUtils.setField(packs, "directory", directory.toString());
+		ReflectionTestUtils.setField(packs, "maxPackSize", DataSize.ofMegabytes(1));
+		packs.init();
+
+		FileSystemBlobStore blobStore = new FileSystemBlobStore(packs);
+		ReflectionTestUtils.setField(blobStore, "directory", directory.toString());
+		blobStore.init();
+
+		return blobStore;
+	}
+}
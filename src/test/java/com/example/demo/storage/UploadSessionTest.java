@@ -0,0 +1,52 @@
+package com.example.demo.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadSessionTest {
+
+	@Test
+	public void testMissingRanges_ConsecutiveChunksMerged() {
+		// 10 CHUNKS, THE LAST ONE IS 50 BYTES
+		UploadSession session = sessionOf(950, 100);
+
+		session.markReceived(200);
+		session.markReceived(300);
+		session.markReceived(700);
+
+		assertEquals(List.of(
+				new UploadSession.Range(0, 200),
+				new UploadSession.Range(400, 300),
+				new UploadSession.Range(800, 150)), session.getMissing_ranges());
+		assertEquals(7, session.missingChunkCount());
+		assertFalse(session.isComplete());
+	}
+
+	@Test
+	public void testMissingRanges_AllReceived_Empty() {
+		UploadSession session = sessionOf(250, 100);
+
+		session.markReceived(0);
+		session.markReceived(100);
+		session.markReceived(200);
+
+		assertTrue(session.getMissing_ranges().isEmpty());
+		assertTrue(session.isComplete());
+
+		session.clearReceived();
+
+		assertEquals(List.of(new UploadSession.Range(0, 250)), session.getMissing_ranges());
+	}
+
+
+	private UploadSession sessionOf(long size, long chunkSize) {
+		UploadSession session = new UploadSession();
+		session.setSize(size);
+		session.setChunk_size(chunkSize);
+
+		return session;
+	}
+}